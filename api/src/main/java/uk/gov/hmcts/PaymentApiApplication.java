@@ -16,6 +16,7 @@ import org.springframework.cloud.client.circuitbreaker.EnableCircuitBreaker;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import uk.gov.hmcts.payment.api.logging.Markers;
 import org.springframework.hateoas.client.LinkDiscoverer;
 import org.springframework.http.MediaType;
@@ -29,6 +30,7 @@ import java.util.concurrent.TimeUnit;
 @EnableCaching
 @EnableFeignClients
 @EnableAsync
+@EnableScheduling
 @SpringBootApplication
 @EnableCircuitBreaker
 public class PaymentApiApplication {
@@ -57,9 +59,6 @@ public class PaymentApiApplication {
     public CacheManager cacheManager() {
         SimpleCacheManager cacheManager = new SimpleCacheManager();
         cacheManager.setCaches(Arrays.asList(
-            new CaffeineCache("feesDtoMap", Caffeine.newBuilder()
-                .expireAfterWrite(1440, TimeUnit.MINUTES)
-                    .build()),
             new CaffeineCache("sites", Caffeine.newBuilder()
                 .expireAfterWrite(48, TimeUnit.HOURS)
                 .build())
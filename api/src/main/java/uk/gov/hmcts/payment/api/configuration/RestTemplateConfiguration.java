@@ -17,6 +17,9 @@ public class RestTemplateConfiguration {
     @Value("${iac.read.timeout}")
     private String iacReadTimeout;
 
+    @Value("${iac.supplementary.info.concurrency:4}")
+    private int iacConcurrency;
+
     @Bean(name = {"paymentsHttpClient", "serviceTokenParserHttpClient", "userTokenParserHttpClient"})
     public CloseableHttpClient paymentsHttpClient() {
         return HttpClients.custom()
@@ -31,7 +34,13 @@ public class RestTemplateConfiguration {
 
     @Bean (value = "restTemplateIacSupplementaryInfo")
     public RestTemplate restTemplateIacSupplementaryInfo() {
-        var factory = new HttpComponentsClientHttpRequestFactory();
+        /* enough connections for every concurrent supplementary details chunk */
+        int maxConnections = Math.max(5, iacConcurrency);
+        var factory = new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+            .useSystemProperties()
+            .setMaxConnPerRoute(maxConnections)
+            .setMaxConnTotal(maxConnections * 2)
+            .build());
         factory.setConnectTimeout(Integer.parseInt(iacConnectTimeout));
         factory.setReadTimeout((Integer.parseInt(iacReadTimeout)));
         return new RestTemplate(factory);
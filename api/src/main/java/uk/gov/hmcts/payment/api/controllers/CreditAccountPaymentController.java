@@ -51,6 +51,8 @@ public class CreditAccountPaymentController {
 
     private static final String FAILED = "failed";
 
+    private static final String SUCCESS = "success";
+
 
     private final CreditAccountPaymentService<PaymentFeeLink, String> creditAccountPaymentService;
     private final CreditAccountDtoMapper creditAccountDtoMapper;
@@ -156,6 +158,11 @@ public class CreditAccountPaymentController {
 
         PaymentFeeLink paymentFeeLink = creditAccountPaymentService.create(payment, fees, paymentGroupReference);
 
+        if (payment.getPaymentStatus().getName().equals(SUCCESS)) {
+            /* the account balance has changed, so it must be read from Liberata again */
+            accountService.invalidate(creditAccountPaymentRequest.getAccountNumber());
+        }
+
         if (payment.getPaymentStatus().getName().equals(FAILED)) {
             LOG.info("CreditAccountPayment Response 403(FORBIDDEN) for ccdCaseNumber : {} PaymentStatus : {}", payment.getCcdCaseNumber(), payment.getPaymentStatus().getName());
             return new ResponseEntity<>(creditAccountDtoMapper.toCreateCreditAccountPaymentResponse(paymentFeeLink), HttpStatus.FORBIDDEN);
@@ -1,21 +1,32 @@
 package uk.gov.hmcts.payment.api.controllers;
 
+import com.google.common.collect.Lists;
 import io.swagger.annotations.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import uk.gov.hmcts.payment.api.dto.FeePayApportionBackfillProgress;
 import uk.gov.hmcts.payment.api.dto.Reference;
 import uk.gov.hmcts.payment.api.model.PaymentFeeLink;
 import uk.gov.hmcts.payment.api.service.DelegatingPaymentService;
+import uk.gov.hmcts.payment.api.service.FeePayApportionBackfillService;
 import uk.gov.hmcts.payment.api.service.FeePayApportionService;
 import uk.gov.hmcts.payment.api.service.PaymentService;
-import uk.gov.hmcts.payment.api.servicebus.TopicClientProxy;
 import uk.gov.hmcts.payment.api.util.ReferenceUtil;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 @RestController
 @Api(tags = {"Maintenance Jobs"})
@@ -24,25 +35,36 @@ public class MaintenanceJobsController {
 
     private static final Logger LOG = LoggerFactory.getLogger(MaintenanceJobsController.class);
 
+    private static final int DEFAULT_STATUS_UPDATE_CHUNK_SIZE = 100;
+
+    private static final int DEFAULT_STATUS_UPDATE_CONCURRENCY = 4;
+
     private final PaymentService<PaymentFeeLink, String> paymentService;
 
     private final DelegatingPaymentService<PaymentFeeLink, String> delegatingPaymentService;
 
     private final FeePayApportionService feePayApportionService;
 
+    private final FeePayApportionBackfillService feePayApportionBackfillService;
+
     @Autowired
     private ReferenceUtil referenceUtil;
 
-    @Autowired
-    private TopicClientProxy topicClientProxy;
+    @Value("${card.payments.status.update.chunk.size:" + DEFAULT_STATUS_UPDATE_CHUNK_SIZE + "}")
+    private int statusUpdateChunkSize = DEFAULT_STATUS_UPDATE_CHUNK_SIZE;
+
+    @Value("${card.payments.status.update.concurrency:" + DEFAULT_STATUS_UPDATE_CONCURRENCY + "}")
+    private int statusUpdateConcurrency = DEFAULT_STATUS_UPDATE_CONCURRENCY;
 
     @Autowired
     public MaintenanceJobsController(PaymentService<PaymentFeeLink, String> paymentService,
                                      DelegatingPaymentService<PaymentFeeLink, String> delegatingPaymentService,
-                                     FeePayApportionService feePayApportionService) {
+                                     FeePayApportionService feePayApportionService,
+                                     FeePayApportionBackfillService feePayApportionBackfillService) {
         this.paymentService = paymentService;
         this.delegatingPaymentService = delegatingPaymentService;
         this.feePayApportionService = feePayApportionService;
+        this.feePayApportionBackfillService = feePayApportionBackfillService;
     }
 
     @ApiOperation(value = "Update payment status", notes = "Updates the payment status on all gov pay pending card payments")
@@ -50,30 +72,99 @@ public class MaintenanceJobsController {
         @ApiResponse(code = 200, message = "Reports sent")
     })
     @PatchMapping(value = "/jobs/card-payments-status-update")
-    @Transactional
     public void updatePaymentsStatus() {
 
         List<Reference> referenceList = paymentService.listInitiatedStatusPaymentsReferences();
 
         LOG.warn("Found {} references that require an status update", referenceList.size());
 
-        /* We ask the topic client proxy to keep the reuse the connection to the service bus for the whole batch */
-        if(topicClientProxy != null && !referenceList.isEmpty()) {
-            topicClientProxy.setKeepClientAlive(true);
+        /* Each reference is retrieved in its own transaction (see retrieveWithCallBack), so a slow or failing
+           gov pay call only holds a connection for that one payment and does not roll back the rest of the job */
+        ExecutorService executor = statusUpdateConcurrency > 1 && referenceList.size() > 1
+            ? Executors.newFixedThreadPool(Math.min(statusUpdateConcurrency, referenceList.size()))
+            : null;
+
+        long updated = 0;
+        long failed = 0;
+        try {
+            List<List<Reference>> chunks = Lists.partition(referenceList, Math.max(1, statusUpdateChunkSize));
+            for (int i = 0; i < chunks.size(); i++) {
+                List<Reference> chunk = chunks.get(i);
+                long start = System.currentTimeMillis();
+
+                List<StatusUpdateOutcome> outcomes = updateChunk(chunk, executor);
+                long chunkUpdated = outcomes.stream().filter(StatusUpdateOutcome.UPDATED::equals).count();
+                long chunkFailed = outcomes.stream().filter(StatusUpdateOutcome.FAILED::equals).count();
+
+                long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                LOG.info("Status update chunk {}/{}: {} references in {} ms ({} per second), {} updated, {} failed",
+                    i + 1, chunks.size(), chunk.size(), elapsed, chunk.size() * 1000L / elapsed, chunkUpdated, chunkFailed);
+
+                updated += chunkUpdated;
+                failed += chunkFailed;
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
         }
 
-        long count = referenceList
-            .stream()
-            .map(Reference::getReference)
-            .map(delegatingPaymentService::retrieveWithCallBack)
-            .filter(p -> p != null && p.getPayments() != null && p.getPayments().get(0) != null && p.getPayments().get(0).getStatus() != null)
-            .count();
+        LOG.warn("{} payment references were successfully updated", updated);
+        if (failed > 0) {
+            LOG.warn("{} payment references failed to update", failed);
+        }
+    }
 
-        LOG.warn("{} payment references were successfully updated", count);
+    @ApiOperation(value = "Back-fill fee pay apportionment", notes = "Starts apportioning, in the background, the payments of cases that have unapportioned fees. Pass the last case number reported by a previous run to resume from it")
+    @ApiResponses(value = {
+        @ApiResponse(code = 202, message = "Back-fill started"),
+        @ApiResponse(code = 409, message = "Back-fill already running")
+    })
+    @PostMapping(value = "/jobs/fee-pay-apportion-backfill")
+    public ResponseEntity<FeePayApportionBackfillProgress> startFeePayApportionBackfill(
+        @RequestParam(name = "after", required = false) String after) {
+        boolean started = feePayApportionBackfillService.start(after);
+        return new ResponseEntity<>(feePayApportionBackfillService.getProgress(), started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT);
+    }
 
-        if(topicClientProxy != null) {
-            topicClientProxy.setKeepClientAlive(false);
-            topicClientProxy.close();
+    @ApiOperation(value = "Fee pay apportionment back-fill progress", notes = "Progress and throughput of the current or last back-fill run")
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Back-fill progress")
+    })
+    @GetMapping(value = "/jobs/fee-pay-apportion-backfill")
+    public FeePayApportionBackfillProgress getFeePayApportionBackfillProgress() {
+        return feePayApportionBackfillService.getProgress();
+    }
+
+    private List<StatusUpdateOutcome> updateChunk(List<Reference> chunk, ExecutorService executor) {
+        if (executor == null) {
+            return chunk.stream()
+                .map(reference -> updateStatus(reference.getReference()))
+                .collect(Collectors.toList());
+        }
+
+        List<CompletableFuture<StatusUpdateOutcome>> futures = chunk.stream()
+            .map(reference -> CompletableFuture.supplyAsync(() -> updateStatus(reference.getReference()), executor))
+            .collect(Collectors.toList());
+
+        return futures.stream()
+            .map(CompletableFuture::join)
+            .collect(Collectors.toList());
+    }
+
+    private StatusUpdateOutcome updateStatus(String reference) {
+        try {
+            PaymentFeeLink p = delegatingPaymentService.retrieveWithCallBack(reference);
+            return p != null && p.getPayments() != null && p.getPayments().get(0) != null && p.getPayments().get(0).getStatus() != null
+                ? StatusUpdateOutcome.UPDATED
+                : StatusUpdateOutcome.UNCHANGED;
+        } catch (Exception e) {
+            LOG.error("Status update failed for payment reference {}", reference, e);
+            return StatusUpdateOutcome.FAILED;
         }
     }
+
+    private enum StatusUpdateOutcome {
+        UPDATED, UNCHANGED, FAILED
+    }
 }
@@ -1,5 +1,8 @@
 package uk.gov.hmcts.payment.api.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import io.swagger.annotations.*;
 import org.ff4j.FF4j;
 import org.joda.time.LocalDateTime;
@@ -7,6 +10,7 @@ import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
@@ -16,6 +20,7 @@ import uk.gov.hmcts.payment.api.contract.PaymentDto;
 import uk.gov.hmcts.payment.api.contract.PaymentsResponse;
 import uk.gov.hmcts.payment.api.contract.UpdatePaymentRequest;
 import uk.gov.hmcts.payment.api.dto.PaymentSearchCriteria;
+import uk.gov.hmcts.payment.api.dto.PaymentSearchCursor;
 import uk.gov.hmcts.payment.api.dto.mapper.PaymentDtoMapper;
 import uk.gov.hmcts.payment.api.model.*;
 import uk.gov.hmcts.payment.api.service.CallbackService;
@@ -26,8 +31,13 @@ import uk.gov.hmcts.payment.api.util.PaymentMethodType;
 import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentException;
 import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentNotFoundException;
 import uk.gov.hmcts.payment.api.validators.PaymentValidator;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import static org.springframework.web.bind.annotation.RequestMethod.PATCH;
@@ -38,6 +48,7 @@ import static org.springframework.web.bind.annotation.RequestMethod.PATCH;
 public class PaymentController {
 
     private static final Logger LOG = LoggerFactory.getLogger(PaymentController.class);
+    private static final int APPORTION_LOOKUP_BATCH_SIZE = 1000;
     private final PaymentService<PaymentFeeLink, String> paymentService;
     private final CallbackService callbackService;
     private final PaymentStatusRepository paymentStatusRepository;
@@ -51,6 +62,12 @@ public class PaymentController {
     @Autowired
     private IacService iacService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${reconciliation.payments.stream.chunk.size:500}")
+    private int streamChunkSize;
+
     @Autowired
     public PaymentController(PaymentService<PaymentFeeLink, String> paymentService,
                              PaymentStatusRepository paymentStatusRepository, CallbackService callbackService,
@@ -173,6 +190,71 @@ public class PaymentController {
 
     }
 
+    @ApiOperation(value = "Stream payments for Reconciliation for between dates", notes = "Streams payments ordered by date updated. Accepts the same filters as /reconciliation-payments. " +
+        "When page_size is supplied and the page is full, the response carries a continuation_token which can be passed back to fetch the next page. " +
+        "IAC supplementary details are not included in the streamed response.")
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Payments retrieved"),
+        @ApiResponse(code = 400, message = "Bad request")
+    })
+    @GetMapping(value = "/reconciliation-payments/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PaymentExternalAPI
+    public void streamPaymentsWithApportion(@RequestParam(name = "start_date", required = false) Optional<String> startDateTimeString,
+                                            @RequestParam(name = "end_date", required = false) Optional<String> endDateTimeString,
+                                            @RequestParam(name = "payment_method", required = false) Optional<String> paymentMethodType,
+                                            @RequestParam(name = "service_name", required = false) Optional<String> serviceType,
+                                            @RequestParam(name = "ccd_case_number", required = false) String ccdCaseNumber,
+                                            @RequestParam(name = "pba_number", required = false) String pbaNumber,
+                                            @RequestParam(name = "page_size", required = false) Integer pageSize,
+                                            @RequestParam(name = "continuation_token", required = false) String continuationToken,
+                                            HttpServletResponse response) throws IOException {
+
+        validatePullRequest(startDateTimeString, endDateTimeString, paymentMethodType, serviceType);
+        if (pageSize != null && pageSize <= 0) {
+            throw new PaymentException("page_size must be greater than zero");
+        }
+        PaymentSearchCursor after = continuationToken != null ? PaymentSearchCursor.decode(continuationToken) : null;
+
+        Date fromDateTime = getFromDateTime(startDateTimeString);
+
+        Date toDateTime = getToDateTime(endDateTimeString, fromDateTime);
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        AtomicInteger count = new AtomicInteger();
+        AtomicReference<Payment> last = new AtomicReference<>();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("payments");
+
+            paymentService.streamByCriteria(
+                getSearchCriteria(paymentMethodType, serviceType, ccdCaseNumber, pbaNumber, fromDateTime, toDateTime),
+                after, pageSize, streamChunkSize,
+                payments -> {
+                    final List<PaymentDto> paymentDtos = new ArrayList<>(payments.size());
+                    populatePaymentDtos(paymentDtos, payments);
+                    try {
+                        for (PaymentDto paymentDto : paymentDtos) {
+                            objectMapper.writeValue(generator, paymentDto);
+                        }
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count.addAndGet(payments.size());
+                    last.set(payments.get(payments.size() - 1));
+                });
+
+            generator.writeEndArray();
+            if (pageSize != null && count.get() == pageSize) {
+                generator.writeStringField("continuation_token", PaymentSearchCursor.after(last.get()).encode());
+            }
+            generator.writeEndObject();
+        }
+        LOG.info("No of payments streamed for Liberata Pull : {}", count.get());
+    }
+
     @ApiOperation(value = "Update payment status by payment reference", notes = "Update payment status by payment reference")
     @ApiResponses(value = {
         @ApiResponse(code = 204, message = "No content"),
@@ -274,10 +356,11 @@ public class PaymentController {
 
         LOG.info("BSP Feature ON : No of Payments retrieved for Liberata Pull : {}", payments.size());
         LOG.info("Apportion feature flag in liberata API: {}", apportionFeature);
+        ApportionedFees apportionedFees = apportionFeature ? loadApportionedFees(payments) : ApportionedFees.EMPTY;
         for (final Payment payment: payments) {
             final String paymentReference = paymentFeeLink.getPaymentReference();
             //Apportion logic added for pulling allocation amount
-            populateApportionedFees(paymentDtos, paymentFeeLink, apportionFeature, payment, paymentReference);
+            populateApportionedFees(paymentDtos, paymentFeeLink, apportionFeature, payment, paymentReference, apportionedFees);
         }
     }
 
@@ -288,26 +371,25 @@ public class PaymentController {
 
         LOG.info("BSP Feature ON : No of Payments retrieved for Liberata Pull : {}", payments.size());
         LOG.info("Apportion feature flag in liberata API: {}", apportionFeature);
+        ApportionedFees apportionedFees = apportionFeature ? loadApportionedFees(filteredPayments) : ApportionedFees.EMPTY;
         for (final Payment payment: filteredPayments) {
             final String paymentReference = payment.getPaymentLink() != null ? payment.getPaymentLink().getPaymentReference() : null;
             //Apportion logic added for pulling allocation amount
-            populateApportionedFees(paymentDtos, payment.getPaymentLink(), apportionFeature, payment, paymentReference);
+            populateApportionedFees(paymentDtos, payment.getPaymentLink(), apportionFeature, payment, paymentReference, apportionedFees);
         }
     }
 
-    private void populateApportionedFees(List<PaymentDto> paymentDtos, PaymentFeeLink paymentFeeLink, boolean apportionFeature, Payment payment, String paymentReference) {
-        boolean apportionCheck = payment.getPaymentChannel() != null
-            && !payment.getPaymentChannel().getName().equalsIgnoreCase(paymentService.getServiceNameByCode("DIGITAL_BAR"));
-        LOG.info("Apportion check value in liberata API: {}", apportionCheck);
+    private void populateApportionedFees(List<PaymentDto> paymentDtos, PaymentFeeLink paymentFeeLink, boolean apportionFeature,
+                                         Payment payment, String paymentReference, ApportionedFees apportionedFees) {
+        boolean apportionCheck = isApportionCheck(payment);
         List<PaymentFee> fees = paymentFeeLink.getFees();
         boolean isPaymentAfterApportionment = false;
         if (apportionCheck && apportionFeature) {
-            LOG.info("Apportion check and feature passed");
-            final List<FeePayApportion> feePayApportionList = paymentService.findByPaymentId(payment.getId());
-            if(feePayApportionList != null && !feePayApportionList.isEmpty()) {
-                LOG.info("Apportion details available in PaymentController");
+            final List<FeePayApportion> feePayApportionList = apportionedFees.apportionsByPaymentId
+                .getOrDefault(payment.getId(), Collections.emptyList());
+            if(!feePayApportionList.isEmpty()) {
                 fees = new ArrayList<>();
-                getApportionedDetails(fees, feePayApportionList);
+                getApportionedDetails(fees, feePayApportionList, apportionedFees.feesById);
                 isPaymentAfterApportionment = true;
             }
         }
@@ -316,24 +398,49 @@ public class PaymentController {
         paymentDtos.add(paymentDto);
     }
 
+    private boolean isApportionCheck(Payment payment) {
+        return payment.getPaymentChannel() != null
+            && !payment.getPaymentChannel().getName().equalsIgnoreCase(paymentService.getServiceNameByCode("DIGITAL_BAR"));
+    }
 
+    /**
+     * Loads the apportionments of all the given payments and the fees they refer to with set based queries,
+     * one pair of queries per {@value #APPORTION_LOOKUP_BATCH_SIZE} payments, instead of one lookup per payment and fee.
+     */
+    private ApportionedFees loadApportionedFees(List<Payment> payments) {
+        List<Integer> paymentIds = payments.stream()
+            .filter(this::isApportionCheck)
+            .map(Payment::getId)
+            .collect(Collectors.toList());
+
+        Map<Integer, List<FeePayApportion>> apportionsByPaymentId = new HashMap<>();
+        Map<Integer, PaymentFee> feesById = new HashMap<>();
+        for (List<Integer> paymentIdsBatch : Lists.partition(paymentIds, APPORTION_LOOKUP_BATCH_SIZE)) {
+            List<FeePayApportion> apportions = paymentService.findByPaymentIdIn(paymentIdsBatch);
+            Set<Integer> feeIds = new HashSet<>();
+            for (FeePayApportion feePayApportion : apportions) {
+                apportionsByPaymentId.computeIfAbsent(feePayApportion.getPaymentId(), id -> new ArrayList<>()).add(feePayApportion);
+                feeIds.add(feePayApportion.getFeeId());
+            }
+            if (!feeIds.isEmpty()) {
+                paymentFeeRepository.findByIdIn(feeIds).forEach(fee -> feesById.put(fee.getId(), fee));
+            }
+        }
+        LOG.info("Apportion details loaded for {} of {} payments", apportionsByPaymentId.size(), paymentIds.size());
+        return new ApportionedFees(apportionsByPaymentId, feesById);
+    }
 
-    private void getApportionedDetails(List<PaymentFee> fees, List<FeePayApportion> feePayApportionList) {
-        LOG.info("Getting Apportionment Details!!!");
+    private void getApportionedDetails(List<PaymentFee> fees, List<FeePayApportion> feePayApportionList, Map<Integer, PaymentFee> feesById) {
         for (FeePayApportion feePayApportion : feePayApportionList)
         {
-            Optional<PaymentFee> apportionedFee = paymentFeeRepository.findById(feePayApportion.getFeeId());
-            if(apportionedFee.isPresent())
+            PaymentFee fee = feesById.get(feePayApportion.getFeeId());
+            if(fee != null)
             {
-                LOG.info("Apportioned fee is present");
-                PaymentFee fee = apportionedFee.get();
                 if(feePayApportion.getApportionAmount() != null) {
-                    LOG.info("Apportioned Amount is available!!!");
                     BigDecimal allocatedAmount = feePayApportion.getApportionAmount()
                         .add(feePayApportion.getCallSurplusAmount() != null
                             ? feePayApportion.getCallSurplusAmount()
                             : BigDecimal.valueOf(0));
-                    LOG.info("Allocated amount in PaymentController: {}", allocatedAmount);
                     fee.setAllocatedAmount(allocatedAmount);
                     fee.setDateApportioned(feePayApportion.getDateCreated());
                 }
@@ -342,6 +449,20 @@ public class PaymentController {
         }
     }
 
+    private static final class ApportionedFees {
+
+        private static final ApportionedFees EMPTY = new ApportionedFees(Collections.emptyMap(), Collections.emptyMap());
+
+        private final Map<Integer, List<FeePayApportion>> apportionsByPaymentId;
+
+        private final Map<Integer, PaymentFee> feesById;
+
+        private ApportionedFees(Map<Integer, List<FeePayApportion>> apportionsByPaymentId, Map<Integer, PaymentFee> feesById) {
+            this.apportionsByPaymentId = apportionsByPaymentId;
+            this.feesById = feesById;
+        }
+    }
+
     private List<Payment> getFilteredListBasedOnBulkScanToggleFeature(PaymentFeeLink paymentFeeLink) {
         List<Payment> payments = paymentFeeLink.getPayments();
         payments = getPayments(payments);
@@ -1,34 +1,22 @@
 package uk.gov.hmcts.payment.api.controllers;
 
-import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
-
-import java.security.SecureRandom;
-import java.time.LocalDateTime;
+import uk.gov.hmcts.payment.api.util.ReferenceGenerator;
 
 public class PaymentReference {
 
-    private static PaymentReference obj = null;
+    private static final PaymentReference INSTANCE = new PaymentReference();
+
+    private final ReferenceGenerator referenceGenerator = ReferenceGenerator.getInstance();
 
     private PaymentReference() {
     }
 
     public static PaymentReference getInstance() {
-        if (obj == null) {
-            obj = new PaymentReference();
-        }
-
-        return obj;
+        return INSTANCE;
     }
 
     public String getNext() {
-        SecureRandom random = new SecureRandom();
-
-        DateTime dateTime = new DateTime(DateTimeZone.UTC);
-        long dateTimeinMillis = dateTime.getMillis() / 100;
-
-        String nextVal = String.format("%010d", dateTimeinMillis);
-        return LocalDateTime.now().getYear() + "-" + nextVal + + (random.nextInt(89)+10);
+        return referenceGenerator.nextGroupReference();
     }
 
 }
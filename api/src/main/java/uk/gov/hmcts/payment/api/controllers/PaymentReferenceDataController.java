@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
@@ -23,8 +24,10 @@ import uk.gov.hmcts.payment.api.model.PaymentProvider;
 import uk.gov.hmcts.payment.api.model.PaymentProviderRepository;
 import uk.gov.hmcts.payment.api.model.PaymentStatus;
 import uk.gov.hmcts.payment.api.model.PaymentStatusRepository;
+import uk.gov.hmcts.payment.api.model.ReferenceDataRegistry;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @Api(tags = {"Payment Reference Data"})
@@ -42,15 +45,19 @@ public class PaymentReferenceDataController {
 
     private final LegacySiteRepository legacySiteRepository;
 
+    private final ReferenceDataRegistry referenceDataRegistry;
+
 
     @Autowired
     public PaymentReferenceDataController(PaymentStatusRepository paymentStatusRepository, PaymentProviderRepository paymentProviderRespository,
-                                          PaymentMethodRepository paymentMethodRepository, PaymentChannelRepository paymentChannelRepository, LegacySiteRepository legacySiteRepository) {
+                                          PaymentMethodRepository paymentMethodRepository, PaymentChannelRepository paymentChannelRepository, LegacySiteRepository legacySiteRepository,
+                                          ReferenceDataRegistry referenceDataRegistry) {
         this.paymentStatusRepository = paymentStatusRepository;
         this.paymentProviderRespository = paymentProviderRespository;
         this.paymentMethodRepository = paymentMethodRepository;
         this.paymentChannelRepository = paymentChannelRepository;
         this.legacySiteRepository = legacySiteRepository;
+        this.referenceDataRegistry = referenceDataRegistry;
     }
 
     @ApiOperation(value = "Payment channels", notes = "Get all payment channels")
@@ -114,4 +121,16 @@ public class PaymentReferenceDataController {
     public List<LegacySite> findAllLegacySites() {
         return legacySiteRepository.findAll();
     }
+
+    @ApiOperation(value = "Refresh reference data", notes = "Reloads the in-memory copy of payment channels, methods, providers and statuses")
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Reference data reloaded"),
+        @ApiResponse(code = 401, message = "Credentials are required to access this resource")
+    })
+    @ResponseStatus(HttpStatus.OK)
+    @PostMapping(value = "/refresh")
+    public Map<String, Integer> refreshReferenceData() {
+        LOG.info("Refreshing reference data");
+        return referenceDataRegistry.refresh();
+    }
 }
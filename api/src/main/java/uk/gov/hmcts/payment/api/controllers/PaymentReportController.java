@@ -51,4 +51,20 @@ public class PaymentReportController {
 
         paymentsReportFacade.generateCsvAndSendEmail(fromDate, toDate, paymentMethodTypeName, service);
     }
+
+    @ApiOperation(value = "Email all payment csv reports", notes = "fetch payments for between dates once and email every enabled report, enter the date in format YYYY-MM-DD")
+    @ApiResponses(value = {
+        @ApiResponse(code = 200, message = "Reports sent")
+    })
+    @PostMapping(value = "/jobs/email-pay-reports/all")
+    public void generateAndEmailAllReports(@RequestParam(name = "start_date", required = false) Optional<String> startDateString,
+                                           @RequestParam(name = "end_date", required = false) Optional<String> endDateString) {
+
+        validator.validate(Optional.empty(), startDateString, endDateString);
+
+        Date fromDate = startDateString.map(s -> clock.atStartOfDay(s, FORMATTER)).orElseGet(clock::getYesterdayDate);
+        Date toDate = endDateString.map(s -> clock.atEndOfDay(s, FORMATTER)).orElseGet(clock::getTodayDate);
+
+        paymentsReportFacade.generateCsvsAndSendEmails(fromDate, toDate);
+    }
 }
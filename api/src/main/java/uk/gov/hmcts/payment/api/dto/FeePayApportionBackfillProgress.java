@@ -0,0 +1,42 @@
+package uk.gov.hmcts.payment.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.*;
+
+import java.util.Date;
+
+@JsonNaming(PropertyNamingStrategy.SnakeCaseStrategy.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Builder(builderMethodName = "backfillProgressWith")
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+public class FeePayApportionBackfillProgress {
+
+    private boolean running;
+
+    private Date startedAt;
+
+    private Date finishedAt;
+
+    /* case number the run started after, empty for the first case */
+    private String startedAfter;
+
+    /* every case up to and including this one has been attempted; pass it back to resume */
+    private String lastCcdCaseNumber;
+
+    private long casesProcessed;
+
+    private long casesFailed;
+
+    private long paymentsApportioned;
+
+    private long elapsedSeconds;
+
+    private long casesPerSecond;
+
+    private String error;
+}
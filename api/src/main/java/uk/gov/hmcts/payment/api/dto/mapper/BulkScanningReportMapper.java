@@ -9,8 +9,10 @@ import uk.gov.hmcts.payment.api.model.Payment;
 import uk.gov.hmcts.payment.api.model.PaymentFee;
 import uk.gov.hmcts.payment.api.model.PaymentFeeLink;
 import uk.gov.hmcts.payment.api.model.Remission;
+import uk.gov.hmcts.payment.api.util.Money;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -20,6 +22,9 @@ public class BulkScanningReportMapper {
 
     private static final Logger LOG = LoggerFactory.getLogger(BulkScanningReportMapper.class);
 
+    /* the report is in whole pence, so a stored amount with a fraction of a penny is rounded rather than failing the report */
+    private static final RoundingMode ROUNDING_MODE = RoundingMode.HALF_UP;
+
     public List<BulkScanningReportDto> toBulkScanningUnallocatedReportDto(List<Payment> payments) {
         LOG.info("Payments size inside toBulkScanningUnallocatedReportDto: {}",payments.size());
         List<BulkScanningReportDto> bulkScanningReportDtos = new ArrayList<>();
@@ -96,7 +101,7 @@ public class BulkScanningReportMapper {
             .collect(Collectors.toList());
         LOG.info("Payments size after filtering Allocated Payments: {}",payments.size());
         underOverPaymentDtos = payments.stream()
-            .filter(payment -> getGroupOutstandingForDateRange(payment).compareTo(BigDecimal.ZERO) != 0)
+            .filter(payment -> getGroupOutstandingForDateRange(payment).signum() != 0)
             .map(populateUnderOverPaymentReport())
             .collect(Collectors.toList());
         underOverPaymentDtos.sort(Comparator.comparing(BulkScanningUnderOverPaymentDto::getRespServiceId).thenComparing(BulkScanningUnderOverPaymentDto::getSurplusShortfall));
@@ -112,9 +117,10 @@ public class BulkScanningReportMapper {
             bulkScanningUnderOverPaymentDto.setRespServiceId(payment.getSiteId());
             bulkScanningUnderOverPaymentDto.setRespServiceName(payment.getServiceType());
             bulkScanningUnderOverPaymentDto.setCcdCaseReference(payment.getCcdCaseNumber());
-            bulkScanningUnderOverPaymentDto.setBalance(getGroupOutstandingForDateRange(payment));
+            BigDecimal groupOutstanding = getGroupOutstandingForDateRange(payment);
+            bulkScanningUnderOverPaymentDto.setBalance(groupOutstanding);
             bulkScanningUnderOverPaymentDto.setPaymentAmount(payment.getAmount());
-            bulkScanningUnderOverPaymentDto.setSurplusShortfall(getGroupOutstandingForDateRange(payment).compareTo(BigDecimal.ZERO) > 0 ? "Shortfall" : "Surplus");
+            bulkScanningUnderOverPaymentDto.setSurplusShortfall(groupOutstanding.signum() > 0 ? "Shortfall" : "Surplus");
             bulkScanningUnderOverPaymentDto.setProcessedDate(payment.getDateCreated());
             bulkScanningUnderOverPaymentDto.setReason(payment.getPaymentAllocation().get(0).getReason());
             bulkScanningUnderOverPaymentDto.setExplanation(payment.getPaymentAllocation().get(0).getExplanation());
@@ -127,15 +133,15 @@ public class BulkScanningReportMapper {
     /*This method is to check if the particular payment group has any surplus/shortfall. If the total outstanding is 0 then those payments will not be
     considered for this report.*/
     private boolean checkGroupOutstanding(Payment payment) {
-        BigDecimal feeAmount = calculateFeeAmount(payment.getPaymentLink().getFees());
+        Money feeAmount = calculateFeeAmount(payment.getPaymentLink().getFees());
 
-        BigDecimal remissionAmount = calculateRemissionAmount(payment.getPaymentLink().getRemissions());
+        Money remissionAmount = calculateRemissionAmount(payment.getPaymentLink().getRemissions());
 
-        BigDecimal totalPaymentReceived = calculatePaymentAmount(payment.getPaymentLink().getPayments());
+        Money totalPaymentReceived = calculatePaymentAmount(payment.getPaymentLink().getPayments(), null);
 
-        BigDecimal totalOutStanding = feeAmount.subtract((totalPaymentReceived.add(remissionAmount)));
+        Money totalOutStanding = feeAmount.subtract((totalPaymentReceived.add(remissionAmount)));
 
-        return totalOutStanding.compareTo(BigDecimal.ZERO) != 0;
+        return totalOutStanding.signum() != 0;
     }
 
     /*Method to check the group outstanding at payment level. For example if you have 1000£ fee and two payments 200£ each
@@ -144,62 +150,51 @@ public class BulkScanningReportMapper {
      */
 
     private BigDecimal getGroupOutstandingForDateRange(Payment payment){
-        BigDecimal feeAmount = calculateFeeAmount(payment.getPaymentLink().getFees());
+        Money feeAmount = calculateFeeAmount(payment.getPaymentLink().getFees());
 
-        BigDecimal remissionAmount = calculateRemissionAmount(payment.getPaymentLink().getRemissions());
+        Money remissionAmount = calculateRemissionAmount(payment.getPaymentLink().getRemissions());
 
-        BigDecimal totalPaymentReceived = calculatePaymentAmount(payment.getPaymentLink().getPayments()
-            .stream()
-            .filter(payment1 ->
-                (payment1.getDateCreated().before(payment.getDateCreated()) ||
-                    payment1.getDateCreated().equals(payment.getDateCreated())))
-            .collect(Collectors.toList()));
-        LOG.info("TotalPaymentReceived: {}",totalPaymentReceived);
-        BigDecimal totalOutStanding = feeAmount.subtract((totalPaymentReceived.add(remissionAmount)));
-
-        LOG.info("Total Outstanding: {}",totalOutStanding);
-        return totalOutStanding;
+        Money totalPaymentReceived = calculatePaymentAmount(payment.getPaymentLink().getPayments(), payment.getDateCreated());
+        LOG.debug("TotalPaymentReceived: {}",totalPaymentReceived);
+        Money totalOutStanding = feeAmount.subtract((totalPaymentReceived.add(remissionAmount)));
+
+        LOG.debug("Total Outstanding: {}",totalOutStanding);
+        return totalOutStanding.toBigDecimal();
     }
 
-    //Method to calculate the total payment amount for a particular payment group. And we are considering only payments which are success.
-    private BigDecimal calculatePaymentAmount(List<Payment> payments) {
+    /*Method to calculate the total payment amount for a particular payment group. And we are considering only payments which are success,
+    and when createdUpTo is given only those created at or before it.*/
+    private Money calculatePaymentAmount(List<Payment> payments, Date createdUpTo) {
 
-        BigDecimal paymentAmount = new BigDecimal(0);
-        payments = payments.stream()
-            .filter(payment -> Objects.nonNull(payment.getPaymentStatus()))
-            .filter(payment -> Objects.nonNull(payment.getPaymentStatus().getName()))
-            .filter(payment -> payment.getPaymentStatus().getName().equalsIgnoreCase("success"))
-            .collect(Collectors.toList());
-        LOG.info("Payments size after filtering success payments: {}",payments.size());
+        Money paymentAmount = Money.ZERO;
         for(Payment payment : payments)
         {
-            BigDecimal calculatedAmount = payment.getAmount();
-            paymentAmount= paymentAmount.add(calculatedAmount);
-
+            if (payment.getPaymentStatus() != null && payment.getPaymentStatus().getName() != null
+                && payment.getPaymentStatus().getName().equalsIgnoreCase("success")
+                && (createdUpTo == null || !payment.getDateCreated().after(createdUpTo))) {
+                paymentAmount = paymentAmount.add(Money.of(payment.getAmount(), ROUNDING_MODE));
+            }
         }
         return paymentAmount;
     }
 
     //Method to calculate the total remmission amount for a particular payment group.
-    private BigDecimal calculateRemissionAmount(List<Remission> remissions) {
+    private Money calculateRemissionAmount(List<Remission> remissions) {
 
-        BigDecimal remissionAmount = new BigDecimal(0);
+        Money remissionAmount = Money.ZERO;
         for(Remission remission : remissions)
         {
-            BigDecimal calculatedAmount = remission.getHwfAmount() ;
-            remissionAmount= remissionAmount.add(calculatedAmount);
+            remissionAmount = remissionAmount.add(Money.of(remission.getHwfAmount(), ROUNDING_MODE));
         }
         return remissionAmount;
     }
 
     //Method to calculate the total fee amount for a particular payment group.
-    private BigDecimal calculateFeeAmount(List<PaymentFee> fees) {
-        BigDecimal feeAmount = new BigDecimal(0);
+    private Money calculateFeeAmount(List<PaymentFee> fees) {
+        Money feeAmount = Money.ZERO;
         for(PaymentFee paymentFee : fees)
         {
-            BigDecimal calculatedAmount = paymentFee.getCalculatedAmount() ;
-            feeAmount= feeAmount.add(calculatedAmount);
-
+            feeAmount = feeAmount.add(Money.of(paymentFee.getCalculatedAmount(), ROUNDING_MODE));
         }
         return feeAmount;
     }
@@ -231,7 +231,17 @@ public class PaymentDtoMapper {
     }
 
     public PaymentDto toReconciliationResponseDto(PaymentFeeLink paymentFeeLink) {
-        Payment payment = paymentFeeLink.getPayments().get(0);
+        return toReconciliationResponseDto(paymentFeeLink.getPayments().get(0), paymentFeeLink, true);
+    }
+
+    /**
+     * Maps a payment for the csv payment reports, which have no use for status histories.
+     */
+    public PaymentDto toPaymentReportDto(Payment payment) {
+        return toReconciliationResponseDto(payment, payment.getPaymentLink(), false);
+    }
+
+    private PaymentDto toReconciliationResponseDto(Payment payment, PaymentFeeLink paymentFeeLink, boolean withStatusHistories) {
         PaymentDto paymentDto = PaymentDto.payment2DtoWith()
             .paymentReference(payment.getReference())
             .paymentGroupReference(paymentFeeLink.getPaymentReference())
@@ -246,7 +256,7 @@ public class PaymentDtoMapper {
             .channel(payment.getPaymentChannel().getName())
             .currency(CurrencyCode.valueOf(payment.getCurrency()))
             .status(PayStatusToPayHubStatus.valueOf(payment.getPaymentStatus().getName()).getMappedStatus())
-            .statusHistories(payment.getStatusHistories() != null ? toStatusHistoryDtos(payment.getStatusHistories()) : null)
+            .statusHistories(withStatusHistories && payment.getStatusHistories() != null ? toStatusHistoryDtos(payment.getStatusHistories()) : null)
             .dateCreated(payment.getDateCreated())
             .dateUpdated(payment.getDateUpdated())
             .method(payment.getPaymentMethod().getName())
@@ -264,10 +274,10 @@ public class PaymentDtoMapper {
         boolean bulkScanCheck = ff4j.check("bulk-scan-check");
         boolean apportionFeature = featureToggler.getBooleanValue("apportion-feature",false);
         boolean apportionCheck = apportionFeature && isPaymentAfterApportionment;
-        LOG.info("bulkScanCheck value in PaymentDtoMapper: {}",bulkScanCheck);
-        LOG.info("isBulkScanPayment value in PaymentDtoMapper: {}",isBulkScanPayment);
-        LOG.info("apportionFeature value in PaymentDtoMapper: {}",apportionFeature);
-        LOG.info("apportionCheck value in PaymentDtoMapper: {}",apportionCheck);
+        LOG.debug("bulkScanCheck value in PaymentDtoMapper: {}",bulkScanCheck);
+        LOG.debug("isBulkScanPayment value in PaymentDtoMapper: {}",isBulkScanPayment);
+        LOG.debug("apportionFeature value in PaymentDtoMapper: {}",apportionFeature);
+        LOG.debug("apportionCheck value in PaymentDtoMapper: {}",apportionCheck);
         PaymentDto paymentDto = PaymentDto.payment2DtoWith()
             .paymentReference(payment.getReference())
             .paymentGroupReference(apportionCheck ? null : paymentReference)
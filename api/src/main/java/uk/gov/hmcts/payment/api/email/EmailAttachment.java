@@ -1,8 +1,11 @@
 package uk.gov.hmcts.payment.api.email;
 
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.InputStreamSource;
 
+import java.nio.file.Path;
+
 import static java.util.Objects.requireNonNull;
 
 
@@ -30,6 +33,17 @@ public class EmailAttachment {
         );
     }
 
+    /**
+     * An attachment read from the file each time the email is sent, so the file must outlive the sending.
+     */
+    public static EmailAttachment file(Path content, String contentType, String fileName) {
+        return new EmailAttachment(
+            new FileSystemResource(content),
+            contentType,
+            fileName
+        );
+    }
+
     public InputStreamSource getData() {
         return data;
     }
@@ -0,0 +1,39 @@
+package uk.gov.hmcts.payment.api.health;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+import uk.gov.hmcts.payment.api.util.ReferenceNodeAllocator;
+
+import java.util.Date;
+
+/**
+ * Down while this instance holds no reference node id, as it cannot then create payments or payment groups.
+ * Part of the readiness group, so such an instance is taken out of service until it leases one.
+ */
+@Component
+public class ReferenceNodeHealthIndicator extends AbstractHealthIndicator {
+
+    private final ReferenceNodeAllocator referenceNodeAllocator;
+
+    @Autowired
+    public ReferenceNodeHealthIndicator(ReferenceNodeAllocator referenceNodeAllocator) {
+        super("Reference node health check failed");
+        this.referenceNodeAllocator = referenceNodeAllocator;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        Integer nodeId = referenceNodeAllocator.getNodeId();
+        if (!referenceNodeAllocator.hasLease()) {
+            builder.down().withDetail("reason", "no reference node id is leased");
+            return;
+        }
+        builder.up().withDetail("nodeId", nodeId);
+        long usableUntil = referenceNodeAllocator.getUsableUntil();
+        if (usableUntil != Long.MAX_VALUE) {
+            builder.withDetail("leaseUsableUntil", new Date(usableUntil));
+        }
+    }
+}
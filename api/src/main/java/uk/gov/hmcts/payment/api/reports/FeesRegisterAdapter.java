@@ -1,43 +1,230 @@
 package uk.gov.hmcts.payment.api.reports;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.slf4j.Logger;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Repository;
 import uk.gov.hmcts.fees2.register.api.contract.Fee2Dto;
 
-import javax.transaction.Transactional;
-
+import javax.annotation.PreDestroy;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+/**
+ * Holds the last good copy of the fees register. Once a snapshot is older than the refresh interval, the next
+ * caller triggers a reload on a background thread and keeps getting the old snapshot until the reload succeeds.
+ * A failed or empty load never replaces a good snapshot. Loads are retried at most once per retry interval, so
+ * an unavailable fees register is not called on every request.
+ */
 @Repository
 public class FeesRegisterAdapter {
 
     private static final Logger LOG = getLogger(FeesRegisterAdapter.class);
 
-    private FeesRegisterClient feesRegisterClient;
+    private static final long DEFAULT_REFRESH_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(60);
+
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private final FeesRegisterClient feesRegisterClient;
+
+    private final long refreshAfterMillis;
+
+    private final long retryAfterMillis;
+
+    private final Executor refreshExecutor;
+
+    private final ExecutorService ownedRefreshExecutor;
+
+    private final LongSupplier clock;
+
+    private final Timer loadSuccessTimer;
+
+    private final Timer loadFailureTimer;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private final Object loadLock = new Object();
+
+    private volatile LoadedSnapshot current;
+
+    /* epoch millis before which no load is started, other than an explicit refresh */
+    private volatile long nextLoadAt;
+
+    @Value("${fees.register.cache.warm-up:true}")
+    private boolean warmUp;
 
     public FeesRegisterAdapter(FeesRegisterClient feesRegisterClient) {
+        this(feesRegisterClient, new SimpleMeterRegistry(), DEFAULT_REFRESH_AFTER_MILLIS, DEFAULT_RETRY_AFTER_MILLIS,
+            Runnable::run, System::currentTimeMillis);
+    }
+
+    @Autowired
+    public FeesRegisterAdapter(FeesRegisterClient feesRegisterClient,
+                               MeterRegistry meterRegistry,
+                               @Value("${fees.register.cache.refresh-after-minutes:60}") long refreshAfterMinutes,
+                               @Value("${fees.register.cache.retry-after-seconds:60}") long retryAfterSeconds) {
+        this(feesRegisterClient, meterRegistry, TimeUnit.MINUTES.toMillis(refreshAfterMinutes),
+            TimeUnit.SECONDS.toMillis(retryAfterSeconds), null, System::currentTimeMillis);
+    }
+
+    /**
+     * @param refreshExecutor runs background reloads, or {@code null} for a dedicated daemon thread
+     */
+    public FeesRegisterAdapter(FeesRegisterClient feesRegisterClient, MeterRegistry meterRegistry,
+                               long refreshAfterMillis, long retryAfterMillis,
+                               Executor refreshExecutor, LongSupplier clock) {
         this.feesRegisterClient = feesRegisterClient;
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.retryAfterMillis = retryAfterMillis;
+        this.ownedRefreshExecutor = refreshExecutor == null
+            ? Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "fees-register-refresh");
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null;
+        this.refreshExecutor = refreshExecutor == null ? ownedRefreshExecutor : refreshExecutor;
+        this.clock = clock;
+
+        this.loadSuccessTimer = Timer.builder("fees.register.load")
+            .description("Time taken to load the fees register")
+            .tag("outcome", "success")
+            .register(meterRegistry);
+        this.loadFailureTimer = Timer.builder("fees.register.load")
+            .description("Time taken to load the fees register")
+            .tag("outcome", "failure")
+            .register(meterRegistry);
+        Gauge.builder("fees.register.snapshot.age", this, FeesRegisterAdapter::snapshotAgeSeconds)
+            .description("Seconds since the fees register snapshot being served was loaded")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        Gauge.builder("fees.register.snapshot.size", this, adapter -> {
+            LoadedSnapshot loaded = adapter.current;
+            return loaded == null ? 0 : loaded.snapshot.getFeesDtoMap().size();
+        })
+            .description("Number of fees in the fees register snapshot being served")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns the last good snapshot, or {@code null} if the fees register has never been loaded successfully.
+     * Only the very first load runs on the caller's thread.
+     */
+    public FeesRegisterSnapshot getFeesRegisterSnapshot() {
+        LoadedSnapshot loaded = current;
+        if (loaded == null) {
+            return loadIfDue();
+        }
+        if (clock.getAsLong() >= nextLoadAt) {
+            refreshInBackground();
+        }
+        return loaded.snapshot;
+    }
+
+    /**
+     * Reloads the fees register on the caller's thread.
+     *
+     * @return whether a new snapshot was loaded
+     */
+    public boolean refresh() {
+        synchronized (loadLock) {
+            return load();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (warmUp && current == null) {
+            refreshInBackground();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (ownedRefreshExecutor != null) {
+            ownedRefreshExecutor.shutdownNow();
+        }
+    }
+
+    private FeesRegisterSnapshot loadIfDue() {
+        synchronized (loadLock) {
+            if (current == null && clock.getAsLong() >= nextLoadAt) {
+                LOG.info("Value not present in Cache!!!So triggering a call to Fees Register");
+                load();
+            }
+            LoadedSnapshot loaded = current;
+            return loaded == null ? null : loaded.snapshot;
+        }
+    }
 
+    private void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refresh();
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.set(false);
+        }
     }
 
-    @Cacheable(value = "feesDtoMap", key = "#root.method.name", unless = "#result == null || #result.isEmpty()")
-    public Map<String, Fee2Dto> getFeesDtoMap() {
-        LOG.info("Value not present in Cache!!!So triggering a call to Fees Register");
-        Map<String, Fee2Dto> feesDtoMap = null;
+    private boolean load() {
+        long start = System.nanoTime();
+        boolean loaded = false;
         try {
             Optional<Map<String, Fee2Dto>> optionalFeesDtoMap = feesRegisterClient.getFeesDataAsMap();
-            if (optionalFeesDtoMap.isPresent()) {
-                feesDtoMap = optionalFeesDtoMap.get();
-                LOG.info("feesDtoMap size: {}",feesDtoMap.size());
+            if (optionalFeesDtoMap.isPresent() && !optionalFeesDtoMap.get().isEmpty()) {
+                FeesRegisterSnapshot snapshot = FeesRegisterSnapshot.of(optionalFeesDtoMap.get());
+                current = new LoadedSnapshot(snapshot, clock.getAsLong());
+                loaded = true;
+                LOG.info("feesDtoMap size: {}", snapshot.getFeesDtoMap().size());
+            } else {
+                LOG.warn("Fees register returned no fees, keeping the last loaded snapshot");
             }
         } catch (Exception ex) {
             LOG.error("FeesService  -  Unable to get fees data. {}", ex.getMessage());
+        } finally {
+            (loaded ? loadSuccessTimer : loadFailureTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            nextLoadAt = clock.getAsLong() + (loaded ? refreshAfterMillis : retryAfterMillis);
         }
+        return loaded;
+    }
 
-        return feesDtoMap;
+    private double snapshotAgeSeconds() {
+        LoadedSnapshot loaded = current;
+        return loaded == null ? Double.NaN : (clock.getAsLong() - loaded.loadedAt) / 1000.0;
+    }
+
+    private static final class LoadedSnapshot {
+
+        private final FeesRegisterSnapshot snapshot;
+
+        private final long loadedAt;
+
+        private LoadedSnapshot(FeesRegisterSnapshot snapshot, long loadedAt) {
+            this.snapshot = snapshot;
+            this.loadedAt = loadedAt;
+        }
     }
 }
@@ -0,0 +1,65 @@
+package uk.gov.hmcts.payment.api.reports;
+
+import uk.gov.hmcts.fees2.register.api.contract.Fee2Dto;
+import uk.gov.hmcts.fees2.register.api.contract.FeeVersionDto;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable copy of the fees register, with every fee version indexed once by (code, version) when the
+ * register is loaded, so looking a version up is a single map access.
+ */
+public final class FeesRegisterSnapshot {
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final Map<String, Fee2Dto> feesDtoMap;
+
+    private final Map<String, FeeVersionDto> feeVersions;
+
+    private FeesRegisterSnapshot(Map<String, Fee2Dto> feesDtoMap, Map<String, FeeVersionDto> feeVersions) {
+        this.feesDtoMap = feesDtoMap;
+        this.feeVersions = feeVersions;
+    }
+
+    public static FeesRegisterSnapshot of(Map<String, Fee2Dto> feesDtoMap) {
+        Map<String, FeeVersionDto> feeVersions = new HashMap<>();
+        for (Map.Entry<String, Fee2Dto> entry : feesDtoMap.entrySet()) {
+            Fee2Dto fee = entry.getValue();
+            /* the current version first, so that an entry in the version list for the same number wins */
+            index(feeVersions, entry.getKey(), fee.getCurrentVersion());
+            if (fee.getFeeVersionDtos() != null) {
+                for (FeeVersionDto feeVersion : fee.getFeeVersionDtos()) {
+                    index(feeVersions, entry.getKey(), feeVersion);
+                }
+            }
+        }
+        return new FeesRegisterSnapshot(Collections.unmodifiableMap(new HashMap<>(feesDtoMap)),
+            Collections.unmodifiableMap(feeVersions));
+    }
+
+    public Optional<FeeVersionDto> getFeeVersion(String feeCode, String version) {
+        return Optional.ofNullable(feeVersions.get(key(feeCode, version)));
+    }
+
+    public Map<String, Fee2Dto> getFeesDtoMap() {
+        return feesDtoMap;
+    }
+
+    public boolean isEmpty() {
+        return feesDtoMap.isEmpty();
+    }
+
+    private static void index(Map<String, FeeVersionDto> feeVersions, String feeCode, FeeVersionDto feeVersion) {
+        if (feeVersion != null && feeVersion.getVersion() != null) {
+            feeVersions.put(key(feeCode, feeVersion.getVersion().toString()), feeVersion);
+        }
+    }
+
+    private static String key(String feeCode, String version) {
+        return feeCode + KEY_SEPARATOR + version;
+    }
+}
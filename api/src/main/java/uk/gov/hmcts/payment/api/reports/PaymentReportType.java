@@ -1,16 +1,44 @@
 package uk.gov.hmcts.payment.api.reports;
 
+import uk.gov.hmcts.payment.api.model.Payment;
 import uk.gov.hmcts.payment.api.util.PaymentMethodType;
 
 public enum PaymentReportType {
 
-    CARD,
-    DIGITAL_BAR,
-    PBA_CMC,
-    PBA_DIVORCE,
-    PBA_PROBATE,
-    PBA_FINREM,
-    PBA_FPL;
+    CARD(PaymentMethodType.CARD, null),
+    DIGITAL_BAR(null, "Digital Bar"),
+    PBA_CMC(PaymentMethodType.PBA, "Specified Money Claims"),
+    PBA_DIVORCE(PaymentMethodType.PBA, "Divorce"),
+    PBA_PROBATE(PaymentMethodType.PBA, "Probate"),
+    PBA_FINREM(PaymentMethodType.PBA, "Financial Remedy"),
+    PBA_FPL(PaymentMethodType.PBA, "Family Public Law");
+
+    private final PaymentMethodType paymentMethodType;
+
+    private final String serviceName;
+
+    PaymentReportType(PaymentMethodType paymentMethodType, String serviceName) {
+        this.paymentMethodType = paymentMethodType;
+        this.serviceName = serviceName;
+    }
+
+    public PaymentMethodType getPaymentMethodType() {
+        return paymentMethodType;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * Whether the payment belongs in this report, matching it the same way a search for the report's payment
+     * method and service name would.
+     */
+    public boolean includes(Payment payment) {
+        return (paymentMethodType == null
+                || payment.getPaymentMethod() != null && paymentMethodType.getType().equals(payment.getPaymentMethod().getName()))
+            && (serviceName == null || serviceName.equals(payment.getServiceType()));
+    }
 
     public static PaymentReportType from(PaymentMethodType paymentMethodType, String serviceType) {
         String value = "";
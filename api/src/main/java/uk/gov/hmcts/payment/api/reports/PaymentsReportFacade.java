@@ -7,7 +7,9 @@ import uk.gov.hmcts.payment.api.reports.config.PaymentReportConfig;
 import uk.gov.hmcts.payment.api.util.PaymentMethodType;
 
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -33,4 +35,18 @@ public class PaymentsReportFacade {
             LOG.info("payments report flag is disabled for type :{} and service :{}. So, system will not send CSV email", paymentMethodType, serviceType);
         }
     }
+
+    /**
+     * Sends every enabled payments report for the dates, reading the payments only once.
+     */
+    public void generateCsvsAndSendEmails(Date startDate, Date endDate) {
+        List<PaymentReportConfig> enabledConfigs = configMap.values().stream()
+            .filter(PaymentReportConfig::isEnabled)
+            .collect(Collectors.toList());
+        if (enabledConfigs.isEmpty()) {
+            LOG.info("payments report flags are disabled for every report type. So, system will not send CSV emails");
+            return;
+        }
+        reportService.generateCsvsAndSendEmails(startDate, endDate, enabledConfigs);
+    }
 }
@@ -0,0 +1,149 @@
+package uk.gov.hmcts.payment.api.reports;
+
+import org.slf4j.Logger;
+import uk.gov.hmcts.payment.api.contract.PaymentDto;
+import uk.gov.hmcts.payment.api.email.EmailAttachment;
+import uk.gov.hmcts.payment.api.reports.config.PaymentReportConfig;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A payments csv report written row by row to a temporary file, optionally compressed, so that the memory used
+ * does not depend on the number of payments. The file is deleted when the report is closed.
+ */
+public class PaymentsReportFile implements Closeable {
+
+    private static final Logger LOG = getLogger(PaymentsReportFile.class);
+
+    private static final String NEWLINE = "\r\n";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Compression {
+        NONE(".csv", "text/csv"),
+        GZIP(".csv.gz", "application/gzip"),
+        ZIP(".zip", "application/zip");
+
+        private final String extension;
+
+        private final String contentType;
+
+        Compression(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+    }
+
+    private final PaymentReportConfig reportConfig;
+
+    private final String attachmentFileName;
+
+    private final Compression compression;
+
+    private final Path path;
+
+    private final Writer writer;
+
+    private long paymentCount;
+
+    private boolean finished;
+
+    private PaymentsReportFile(PaymentReportConfig reportConfig, String attachmentFileName, Compression compression,
+                               Path path, Writer writer) {
+        this.reportConfig = reportConfig;
+        this.attachmentFileName = attachmentFileName;
+        this.compression = compression;
+        this.path = path;
+        this.writer = writer;
+    }
+
+    /**
+     * @param csvFileName name of the csv file, without extension
+     */
+    public static PaymentsReportFile create(PaymentReportConfig reportConfig, String csvFileName, Compression compression) throws IOException {
+        Path path = Files.createTempFile(csvFileName, compression.extension);
+        try {
+            OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE);
+            switch (compression) {
+                case GZIP:
+                    out = new GZIPOutputStream(out, BUFFER_SIZE);
+                    break;
+                case ZIP:
+                    ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+                    zip.putNextEntry(new ZipEntry(csvFileName + Compression.NONE.extension));
+                    out = zip;
+                    break;
+                default:
+                    break;
+            }
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            PaymentsReportFile reportFile = new PaymentsReportFile(reportConfig, csvFileName + compression.extension, compression, path, writer);
+            writer.write(reportConfig.getCsvHeader());
+            writer.write(NEWLINE);
+            return reportFile;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    public void write(PaymentDto payment) throws IOException {
+        writer.write(reportConfig.getCsvRecord(payment));
+        writer.write(NEWLINE);
+        paymentCount++;
+    }
+
+    /**
+     * Completes the file and returns it as an email attachment, which is only readable until the report is closed.
+     */
+    public EmailAttachment finish() throws IOException {
+        finished = true;
+        writer.close();
+        return EmailAttachment.file(path, compression.contentType, attachmentFileName);
+    }
+
+    public PaymentReportConfig getReportConfig() {
+        return reportConfig;
+    }
+
+    public String getAttachmentFileName() {
+        return attachmentFileName;
+    }
+
+    public long getPaymentCount() {
+        return paymentCount;
+    }
+
+    public long getSize() throws IOException {
+        return Files.size(path);
+    }
+
+    @Override
+    public void close() {
+        if (!finished) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                LOG.warn("Unable to close payments report file {}", path, e);
+            }
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warn("Unable to delete payments report file {}", path, e);
+        }
+    }
+}
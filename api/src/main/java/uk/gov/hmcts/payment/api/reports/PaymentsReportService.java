@@ -3,49 +3,69 @@ package uk.gov.hmcts.payment.api.reports;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import uk.gov.hmcts.payment.api.contract.PaymentDto;
 import uk.gov.hmcts.payment.api.dto.PaymentSearchCriteria;
 import uk.gov.hmcts.payment.api.dto.mapper.PaymentDtoMapper;
 import uk.gov.hmcts.payment.api.email.Email;
+import uk.gov.hmcts.payment.api.email.EmailAttachment;
+import uk.gov.hmcts.payment.api.email.EmailFailedException;
 import uk.gov.hmcts.payment.api.email.EmailService;
+import uk.gov.hmcts.payment.api.model.Payment;
 import uk.gov.hmcts.payment.api.model.PaymentFeeLink;
 import uk.gov.hmcts.payment.api.reports.config.PaymentReportConfig;
 import uk.gov.hmcts.payment.api.service.DelegatingPaymentService;
 import uk.gov.hmcts.payment.api.util.PaymentMethodType;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.slf4j.LoggerFactory.getLogger;
-import static uk.gov.hmcts.payment.api.email.EmailAttachment.csv;
 
+/**
+ * Emails csv payment reports. Payments are read through a database cursor a chunk at a time and each one is
+ * written straight to a temporary file that is attached to the email, so memory use does not grow with the
+ * size of the report. Several reports over the same dates can be produced from a single read of the payments.
+ */
 @org.springframework.stereotype.Service
 public class PaymentsReportService {
 
     private static final Logger LOG = getLogger(PaymentsReportService.class);
 
-    private static final String BYTE_ARRAY_OUTPUT_STREAM_NEWLINE = "\r\n";
-
-    private static final String PAYMENTS_CSV_FILE_EXTENSION = ".csv";
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss");
 
-    private static final Charset utf8 = Charset.forName("UTF-8");
+    private static final int DEFAULT_CHUNK_SIZE = 500;
 
-    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss");
+    private static final int DEFAULT_EMAIL_CONCURRENCY = 4;
 
     private final DelegatingPaymentService<PaymentFeeLink, String> delegatingPaymentService;
     private final PaymentDtoMapper paymentDtoMapper;
     private final EmailService emailService;
     private final FeesService feesService;
 
+    @Value("${payments.report.chunk.size:" + DEFAULT_CHUNK_SIZE + "}")
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    @Value("${payments.report.compression:NONE}")
+    private PaymentsReportFile.Compression compression = PaymentsReportFile.Compression.NONE;
+
+    @Value("${payments.report.email.concurrency:" + DEFAULT_EMAIL_CONCURRENCY + "}")
+    private int emailConcurrency = DEFAULT_EMAIL_CONCURRENCY;
+
     @Autowired
     public PaymentsReportService(@Qualifier("loggingPaymentService") DelegatingPaymentService<PaymentFeeLink, String> delegatingPaymentService, PaymentDtoMapper paymentDtoMapper,
                                  EmailService emailService, FeesService feesService) {
@@ -60,64 +80,143 @@ public class PaymentsReportService {
 
         LOG.info("Start of payments csv report for method type :{} and service name :{}", paymentMethodType, serviceName);
 
-        List<PaymentDto> cardPaymentsCsvData = findPaymentsBy(startDate, endDate, paymentMethodType, serviceName);
-        generateCsvAndSendEmail(cardPaymentsCsvData, reportConfig);
+        String paymentsCsvFileName = reportConfig.getCsvFileNamePrefix() + LocalDateTime.now().format(formatter);
+        long start = System.nanoTime();
+        try (PaymentsReportFile reportFile = PaymentsReportFile.create(reportConfig, paymentsCsvFileName, compression)) {
+            delegatingPaymentService.streamByCriteria(searchCriteria(startDate, endDate, paymentMethodType, serviceName),
+                null, null, chunkSize, payments -> {
+                    try {
+                        for (Payment payment : payments) {
+                            reportFile.write(paymentDtoMapper.toPaymentReportDto(payment));
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            EmailAttachment attachment = reportFile.finish();
+            logThroughput(reportFile, start);
+            sendEmail(email(reportConfig), attachment);
+        } catch (IOException | UncheckedIOException ex) {
+            LOG.error("PaymentsReportService - Error while creating payments csv file " + paymentsCsvFileName + ". Error message is " + ex.getMessage());
+        }
 
         LOG.info("End of payments csv report for method type :{} and service name :{}", paymentMethodType, serviceName);
     }
 
-    private List<PaymentDto> findPaymentsBy(Date startDate, Date endDate, PaymentMethodType paymentMethodType, String serviceName) {
-        String serviceType = serviceName;
+    /**
+     * Reads the payments between the dates once, writes each one to every report it belongs in and then emails
+     * the reports concurrently.
+     */
+    public void generateCsvsAndSendEmails(Date startDate, Date endDate, List<PaymentReportConfig> reportConfigs) {
+        List<PaymentReportType> reportTypes = reportConfigs.stream().map(PaymentReportConfig::getType).collect(Collectors.toList());
+        LOG.info("Start of payments csv reports {}", reportTypes);
+
+        String timestamp = LocalDateTime.now().format(formatter);
+        List<PaymentsReportFile> reportFiles = new ArrayList<>(reportConfigs.size());
+        long start = System.nanoTime();
+        try {
+            for (PaymentReportConfig reportConfig : reportConfigs) {
+                reportFiles.add(PaymentsReportFile.create(reportConfig, reportConfig.getCsvFileNamePrefix() + timestamp, compression));
+            }
+
+            AtomicLong scanned = new AtomicLong();
+            delegatingPaymentService.streamByCriteria(searchCriteria(startDate, endDate, null, null),
+                null, null, chunkSize, payments -> {
+                    try {
+                        for (Payment payment : payments) {
+                            writeToReports(payment, reportFiles);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    scanned.addAndGet(payments.size());
+                });
+
+            List<EmailAttachment> attachments = new ArrayList<>(reportFiles.size());
+            for (PaymentsReportFile reportFile : reportFiles) {
+                attachments.add(reportFile.finish());
+                logThroughput(reportFile, start);
+            }
+            LOG.info("PaymentsReportService - {} payments read for {} reports", scanned.get(), reportFiles.size());
+
+            sendEmails(reportFiles, attachments);
+        } catch (IOException | UncheckedIOException ex) {
+            LOG.error("PaymentsReportService - Error while creating payments csv files for " + reportTypes + ". Error message is " + ex.getMessage());
+        } finally {
+            reportFiles.forEach(PaymentsReportFile::close);
+        }
+
+        LOG.info("End of payments csv reports {}", reportTypes);
+    }
+
+    private void writeToReports(Payment payment, List<PaymentsReportFile> reportFiles) throws IOException {
+        PaymentDto paymentDto = null;
+        for (PaymentsReportFile reportFile : reportFiles) {
+            if (reportFile.getReportConfig().getType().includes(payment)) {
+                if (paymentDto == null) {
+                    paymentDto = paymentDtoMapper.toPaymentReportDto(payment);
+                }
+                reportFile.write(paymentDto);
+            }
+        }
+    }
+
+    private void sendEmails(List<PaymentsReportFile> reportFiles, List<EmailAttachment> attachments) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(emailConcurrency, reportFiles.size())));
+        try {
+            List<CompletableFuture<Boolean>> sent = new ArrayList<>(reportFiles.size());
+            for (int i = 0; i < reportFiles.size(); i++) {
+                PaymentReportConfig reportConfig = reportFiles.get(i).getReportConfig();
+                EmailAttachment attachment = attachments.get(i);
+                sent.add(CompletableFuture
+                    .runAsync(() -> sendEmail(email(reportConfig), attachment), executor)
+                    .handle((ignored, e) -> {
+                        if (e != null) {
+                            LOG.error("PaymentsReportService - Unable to send {} payments report email", reportConfig.getType(), e);
+                        }
+                        return e == null;
+                    }));
+            }
+            long failed = sent.stream().map(CompletableFuture::join).filter(Boolean.FALSE::equals).count();
+            if (failed > 0) {
+                throw new EmailFailedException(failed + " of " + reportFiles.size() + " payments report emails could not be sent");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static PaymentSearchCriteria searchCriteria(Date startDate, Date endDate, PaymentMethodType paymentMethodType, String serviceName) {
         String paymentMethodTypeString = Optional.ofNullable(paymentMethodType).map(PaymentMethodType::getType).orElse(null);
 
-        return delegatingPaymentService
-            .search(
-                PaymentSearchCriteria.searchCriteriaWith()
-                    .startDate(startDate)
-                    .endDate(endDate)
-                    .paymentMethod(paymentMethodTypeString)
-                    .serviceType(serviceType)
-                    .build()
-            )
-            .stream()
-            .map(paymentDtoMapper::toReconciliationResponseDto)
-            .collect(Collectors.toList());
+        return PaymentSearchCriteria.searchCriteriaWith()
+            .startDate(startDate)
+            .endDate(endDate)
+            .paymentMethod(paymentMethodTypeString)
+            .serviceType(serviceName)
+            .build();
     }
 
-    private void generateCsvAndSendEmail(List<PaymentDto> payments, PaymentReportConfig reportConfig) {
-        String paymentsCsvFileName = reportConfig.getCsvFileNamePrefix() + LocalDateTime.now().format(formatter) + PAYMENTS_CSV_FILE_EXTENSION;
-        byte[] paymentsByteArray = createPaymentsCsvByteArray(payments, paymentsCsvFileName, reportConfig);
-        Email email = Email.emailWith()
+    private static Email email(PaymentReportConfig reportConfig) {
+        return Email.emailWith()
             .from(reportConfig.getFrom())
             .to(reportConfig.getTo())
             .subject(reportConfig.getSubject())
             .message(reportConfig.getMessage())
             .build();
-        sendEmail(email, paymentsByteArray, paymentsCsvFileName);
     }
 
-    private void sendEmail(Email email, byte[] paymentsCsvByteArray, String csvFileName) {
-        email.setAttachments(newArrayList(csv(paymentsCsvByteArray, csvFileName)));
+    private void sendEmail(Email email, EmailAttachment attachment) {
+        email.setAttachments(newArrayList(attachment));
         emailService.sendEmail(email);
         LOG.info("PaymentsReportService - Payments report email sent to " + Arrays.toString(email.getTo()));
     }
 
-    private byte[] createPaymentsCsvByteArray(List<PaymentDto> payments, String paymentsCsvFileName, PaymentReportConfig reportConfig) {
-        byte[] paymentsCsvByteArray = null;
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            bos.write(reportConfig.getCsvHeader().getBytes(utf8));
-            bos.write(BYTE_ARRAY_OUTPUT_STREAM_NEWLINE.getBytes(utf8));
-            for (PaymentDto payment : payments) {
-                bos.write(reportConfig.getCsvRecord(payment).getBytes(utf8));
-                bos.write(BYTE_ARRAY_OUTPUT_STREAM_NEWLINE.getBytes(utf8));
-            }
-            LOG.info("PaymentsReportService - Total " + payments.size() + " payments records written in payments csv file " + paymentsCsvFileName);
-            paymentsCsvByteArray = bos.toByteArray();
-        } catch (IOException ex) {
-            LOG.error("PaymentsReportService - Error while creating payments csv file " + paymentsCsvFileName + ". Error message is " + ex.getMessage());
-        }
-        return paymentsCsvByteArray;
+    private static void logThroughput(PaymentsReportFile reportFile, long start) throws IOException {
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        LOG.info("PaymentsReportService - Total {} payments records written in payments csv file {} in {} ms ({} per second), {} bytes",
+            reportFile.getPaymentCount(), reportFile.getAttachmentFileName(), elapsedMillis,
+            reportFile.getPaymentCount() * 1000 / elapsedMillis, reportFile.getSize());
     }
 
 }
-
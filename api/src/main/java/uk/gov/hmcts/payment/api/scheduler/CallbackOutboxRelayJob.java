@@ -0,0 +1,41 @@
+package uk.gov.hmcts.payment.api.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.gov.hmcts.payment.api.servicebus.CallbackOutboxRelay;
+
+@Component
+public class CallbackOutboxRelayJob {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CallbackOutboxRelayJob.class);
+
+    private final CallbackOutboxRelay callbackOutboxRelay;
+
+    @Value("${service.callback.outbox.relay.enabled:true}")
+    private boolean enabled;
+
+    @Autowired
+    public CallbackOutboxRelayJob(CallbackOutboxRelay callbackOutboxRelay) {
+        this.callbackOutboxRelay = callbackOutboxRelay;
+    }
+
+    @Scheduled(fixedDelayString = "${service.callback.outbox.relay.interval-ms:1000}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            /* Keep draining while batches come back full, each batch committing on its own */
+            while (callbackOutboxRelay.relayBatch() >= callbackOutboxRelay.getBatchSize()) {
+                LOG.debug("Service callback outbox batch full, relaying next batch");
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Error relaying service callback outbox", e);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package uk.gov.hmcts.payment.api.service;
+
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.gov.hmcts.payment.api.dto.FeePayApportionBackfillProgress;
+import uk.gov.hmcts.payment.api.model.PaymentFeeRepository;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Back-fills fee pay apportionment for cases whose payments were taken before apportionment was switched on.
+ * Case numbers are read a page at a time in case number order, and each page is split into chunks that are
+ * apportioned in parallel, one transaction per chunk. A chunk that fails is retried a case at a time, so one bad
+ * case does not hold back the rest of its chunk.
+ *
+ * <p>Only cases with an unapportioned fee are read, so a run that was stopped can simply be started again; passing
+ * the last case number it reported skips straight to where it got to.
+ */
+@Service
+public class FeePayApportionBackfillService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FeePayApportionBackfillService.class);
+
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private static final int DEFAULT_CHUNK_SIZE = 50;
+
+    private static final int DEFAULT_CONCURRENCY = 4;
+
+    private final FeePayApportionService feePayApportionService;
+
+    private final PaymentFeeRepository paymentFeeRepository;
+
+    private final ExecutorService runner;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile BackfillRun lastRun;
+
+    @Value("${fee.pay.apportion.backfill.page-size:" + DEFAULT_PAGE_SIZE + "}")
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    @Value("${fee.pay.apportion.backfill.chunk-size:" + DEFAULT_CHUNK_SIZE + "}")
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    @Value("${fee.pay.apportion.backfill.concurrency:" + DEFAULT_CONCURRENCY + "}")
+    private int concurrency = DEFAULT_CONCURRENCY;
+
+    @Autowired
+    public FeePayApportionBackfillService(FeePayApportionService feePayApportionService,
+                                          PaymentFeeRepository paymentFeeRepository) {
+        this.feePayApportionService = feePayApportionService;
+        this.paymentFeeRepository = paymentFeeRepository;
+        this.runner = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fee-pay-apportion-backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts a back-fill in the background.
+     *
+     * @param after case number to start after, or {@code null} to start from the first case
+     * @return whether a run was started, {@code false} if one is already running
+     */
+    public boolean start(String after) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        BackfillRun run = new BackfillRun(after != null ? after : "");
+        lastRun = run;
+        try {
+            runner.execute(() -> {
+                try {
+                    backfill(run);
+                } finally {
+                    run.finishedAt = new Date();
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            run.finishedAt = new Date();
+            running.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    public FeePayApportionBackfillProgress getProgress() {
+        BackfillRun run = lastRun;
+        if (run == null) {
+            return FeePayApportionBackfillProgress.backfillProgressWith().running(running.get()).build();
+        }
+        long end = run.finishedAt != null ? run.finishedAt.getTime() : System.currentTimeMillis();
+        long elapsedMillis = Math.max(1, end - run.startedAt.getTime());
+        long casesProcessed = run.casesProcessed.get();
+        return FeePayApportionBackfillProgress.backfillProgressWith()
+            .running(run.finishedAt == null)
+            .startedAt(run.startedAt)
+            .finishedAt(run.finishedAt)
+            .startedAfter(run.startedAfter)
+            .lastCcdCaseNumber(run.cursor)
+            .casesProcessed(casesProcessed)
+            .casesFailed(run.casesFailed.get())
+            .paymentsApportioned(run.paymentsApportioned.get())
+            .elapsedSeconds(elapsedMillis / 1000)
+            .casesPerSecond(casesProcessed * 1000L / elapsedMillis)
+            .error(run.error)
+            .build();
+    }
+
+    @PreDestroy
+    public void close() {
+        runner.shutdownNow();
+    }
+
+    void backfill(BackfillRun run) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = concurrency > 1
+            ? Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "fee-pay-apportion-backfill-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null;
+
+        LOG.info("Fee pay apportion back-fill starting after case '{}'", run.startedAfter);
+        try {
+            List<String> page;
+            do {
+                page = paymentFeeRepository.findCcdCaseNumbersToApportion(run.cursor, pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                long start = System.currentTimeMillis();
+                apportionPage(page, run, workers);
+                run.cursor = page.get(page.size() - 1);
+
+                long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                LOG.info("Fee pay apportion back-fill: {} cases in {} ms ({} per second), up to case {}, {} cases and {} payments so far, {} failed",
+                    page.size(), elapsed, page.size() * 1000L / elapsed, run.cursor,
+                    run.casesProcessed.get(), run.paymentsApportioned.get(), run.casesFailed.get());
+            } while (page.size() >= pageSize && !Thread.currentThread().isInterrupted());
+        } catch (RuntimeException e) {
+            run.error = e.getMessage();
+            LOG.error("Fee pay apportion back-fill stopped after case '{}'", run.cursor, e);
+        } finally {
+            if (workers != null) {
+                workers.shutdown();
+            }
+        }
+        LOG.info("Fee pay apportion back-fill finished after case '{}': {} cases, {} payments apportioned, {} cases failed",
+            run.cursor, run.casesProcessed.get(), run.paymentsApportioned.get(), run.casesFailed.get());
+    }
+
+    private void apportionPage(List<String> page, BackfillRun run, ExecutorService workers) {
+        List<List<String>> chunks = Lists.partition(page, Math.max(1, chunkSize));
+        if (workers == null) {
+            chunks.forEach(chunk -> apportionChunk(chunk, run));
+            return;
+        }
+
+        List<CompletableFuture<Void>> futures = chunks.stream()
+            .map(chunk -> CompletableFuture.runAsync(() -> apportionChunk(chunk, run), workers))
+            .collect(Collectors.toList());
+        futures.forEach(CompletableFuture::join);
+    }
+
+    private void apportionChunk(List<String> chunk, BackfillRun run) {
+        try {
+            run.paymentsApportioned.addAndGet(feePayApportionService.processCaseApportions(chunk));
+            run.casesProcessed.addAndGet(chunk.size());
+        } catch (RuntimeException e) {
+            if (chunk.size() == 1) {
+                LOG.error("Fee pay apportion back-fill failed for case {}", chunk.get(0), e);
+                run.casesProcessed.incrementAndGet();
+                run.casesFailed.incrementAndGet();
+                return;
+            }
+            LOG.warn("Fee pay apportion back-fill chunk {}..{} failed, retrying a case at a time",
+                chunk.get(0), chunk.get(chunk.size() - 1));
+            chunk.forEach(ccdCaseNumber -> apportionChunk(Collections.singletonList(ccdCaseNumber), run));
+        }
+    }
+
+    static final class BackfillRun {
+
+        private final String startedAfter;
+
+        private final Date startedAt = new Date();
+
+        private final AtomicLong casesProcessed = new AtomicLong();
+
+        private final AtomicLong casesFailed = new AtomicLong();
+
+        private final AtomicLong paymentsApportioned = new AtomicLong();
+
+        private volatile String cursor;
+
+        private volatile Date finishedAt;
+
+        private volatile String error;
+
+        BackfillRun(String startedAfter) {
+            this.startedAfter = startedAfter;
+            this.cursor = startedAfter;
+        }
+    }
+}
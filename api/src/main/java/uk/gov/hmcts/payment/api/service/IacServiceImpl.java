@@ -1,6 +1,6 @@
 package uk.gov.hmcts.payment.api.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,14 +17,33 @@ import uk.gov.hmcts.payment.api.contract.PaymentDto;
 import uk.gov.hmcts.payment.api.dto.*;
 import uk.gov.hmcts.reform.authorisation.generators.AuthTokenGenerator;
 
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+/**
+ * Adds IAC supplementary details to reconciliation payments. Case numbers are sent to IAC in chunks, several chunks
+ * at a time, and the details IAC returns are remembered per case for a while. A chunk that fails only leaves its
+ * own cases without details, and the response is then marked as partial content.
+ */
 @Service
 public class IacServiceImpl implements IacService {
     private static final Logger LOG = LoggerFactory.getLogger(IacServiceImpl.class);
 
+    private static final int MAX_CACHED_CASES = 10000;
+
     @Value("${iac.supplementary.info.url}")
     private String iacSupplementaryInfoUrl;
 
@@ -35,83 +54,165 @@ public class IacServiceImpl implements IacService {
     @Autowired
     private AuthTokenGenerator authTokenGenerator;
 
+    @Value("${iac.supplementary.info.chunk.size:100}")
+    private int chunkSize = 100;
+
+    @Value("${iac.supplementary.info.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    private final ExecutorService executor;
+
+    private final ConcurrentMap<String, CachedSupplementaryInfo> supplementaryInfoByCase = new ConcurrentHashMap<>();
+
+    public IacServiceImpl(@Value("${iac.supplementary.info.concurrency:4}") int concurrency) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "iac-supplementary-info-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     @Override
     public ResponseEntity<SupplementaryPaymentDto> getIacSupplementaryInfo(List<PaymentDto> paymentDtos, String serviceName) {
-       HttpStatus paymentResponseHttpStatus = HttpStatus.OK;
-        boolean isExceptionOccur = false;
-        List<PaymentDto> iacPayments = paymentDtos.stream().filter(payment -> (payment.getServiceName().equalsIgnoreCase(serviceName))).
-            collect(Collectors.toList());
-        LOG.info("No of Iac payment retrieved  : {}", iacPayments.size());
-
-        List<String> iacCcdCaseNos = iacPayments.stream().map(paymentDto -> paymentDto.getCcdCaseNumber()).
-            collect(Collectors.toList());
-
-        ResponseEntity<SupplementaryDetailsResponse> responseEntitySupplementaryInfo = null;
-
-        List<SupplementaryInfo> lstSupplementaryInfo = null;
-        SupplementaryPaymentDto supplementaryPaymentDto = null;
-
-        if (!iacCcdCaseNos.isEmpty()) {
-            LOG.info("List of IAC Ccd Case numbers : {}", iacCcdCaseNos.toString());
-            try {
-                responseEntitySupplementaryInfo = getIacSupplementaryInfoResponse(iacCcdCaseNos);
-            } catch (HttpClientErrorException ex) {
-                LOG.info("IAC Supplementary information could not be found, exception: {}", ex.getMessage());
-                paymentResponseHttpStatus = HttpStatus.PARTIAL_CONTENT;
-                isExceptionOccur = true;
-            } catch (Exception ex) {
-                LOG.info("Unable to retrieve IAC Supplementary Info information, exception: {}", ex.getMessage());
-                paymentResponseHttpStatus = HttpStatus.PARTIAL_CONTENT;
-                isExceptionOccur = true;
+        List<String> iacCcdCaseNos = paymentDtos.stream()
+            .filter(payment -> payment.getServiceName().equalsIgnoreCase(serviceName))
+            .map(PaymentDto::getCcdCaseNumber)
+            .filter(Objects::nonNull)
+            .distinct()
+            .collect(Collectors.toList());
+        LOG.info("No of Iac CCD case numbers retrieved  : {}", iacCcdCaseNos.size());
+
+        if (iacCcdCaseNos.isEmpty()) {
+            LOG.info("No Iac payments retrieved");
+            return new ResponseEntity<>(SupplementaryPaymentDto.supplementaryPaymentDtoWith().payments(paymentDtos).build(), HttpStatus.OK);
+        }
+
+        long now = System.nanoTime();
+        Map<String, SupplementaryInfo> supplementaryInfos = new LinkedHashMap<>();
+        List<String> uncachedCcdCaseNos = new ArrayList<>();
+        for (String ccdCaseNumber : iacCcdCaseNos) {
+            CachedSupplementaryInfo cached = cacheTtlSeconds > 0 ? supplementaryInfoByCase.get(ccdCaseNumber) : null;
+            if (cached != null && !cached.isExpired(now)) {
+                supplementaryInfos.put(ccdCaseNumber, cached.supplementaryInfo);
+            } else {
+                supplementaryInfos.put(ccdCaseNumber, null);
+                uncachedCcdCaseNos.add(ccdCaseNumber);
             }
-            if (!isExceptionOccur) {
-                paymentResponseHttpStatus = responseEntitySupplementaryInfo.getStatusCode();
-                ObjectMapper objectMapperSupplementaryInfo = new ObjectMapper();
-                SupplementaryDetailsResponse supplementaryDetailsResponse = objectMapperSupplementaryInfo.convertValue(responseEntitySupplementaryInfo.getBody(), SupplementaryDetailsResponse.class);
-                lstSupplementaryInfo = supplementaryDetailsResponse.getSupplementaryInfo();
-                MissingSupplementaryInfo lstMissingSupplementaryInfo = supplementaryDetailsResponse.getMissingSupplementaryInfo();
-
-                if (responseEntitySupplementaryInfo.getStatusCodeValue() == HttpStatus.PARTIAL_CONTENT.value() && lstMissingSupplementaryInfo == null) {
-                    LOG.info("No missing supplementary info received from IAC for any CCD case numbers, however response is 206");
-                } else if (lstMissingSupplementaryInfo != null && lstMissingSupplementaryInfo.getCcdCaseNumbers() != null)
-                    LOG.info("missing supplementary info from IAC for CCD case numbers : {}", lstMissingSupplementaryInfo.getCcdCaseNumbers().toString());
+        }
+        LOG.info("Requesting IAC supplementary info for {} of {} CCD case numbers", uncachedCcdCaseNos.size(), iacCcdCaseNos.size());
+
+        boolean partial = false;
+        if (!uncachedCcdCaseNos.isEmpty()) {
+            String serviceAuthorisation = authTokenGenerator.generate();
+            List<List<String>> chunks = Lists.partition(uncachedCcdCaseNos, Math.max(1, chunkSize));
+            List<ChunkResult> results;
+            if (chunks.size() == 1) {
+                results = Collections.singletonList(fetchChunk(chunks.get(0), serviceAuthorisation));
+            } else {
+                List<CompletableFuture<ChunkResult>> futures = chunks.stream()
+                    .map(chunk -> CompletableFuture.supplyAsync(() -> fetchChunk(chunk, serviceAuthorisation), executor))
+                    .collect(Collectors.toList());
+                results = futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
             }
 
-            supplementaryPaymentDto = SupplementaryPaymentDto.supplementaryPaymentDtoWith().payments(paymentDtos).
-                supplementaryInfo(lstSupplementaryInfo).build();
-            }else{
-                LOG.info("No Iac payments retrieved");
-                 supplementaryPaymentDto = SupplementaryPaymentDto.supplementaryPaymentDtoWith().payments(paymentDtos).
-                    build();
+            long expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(cacheTtlSeconds);
+            evictExpiredIfFull(now);
+            for (ChunkResult result : results) {
+                partial |= result.partial;
+                for (SupplementaryInfo supplementaryInfo : result.supplementaryInfo) {
+                    supplementaryInfos.replace(supplementaryInfo.getCcdCaseNumber(), supplementaryInfo);
+                    if (cacheTtlSeconds > 0) {
+                        supplementaryInfoByCase.put(supplementaryInfo.getCcdCaseNumber(), new CachedSupplementaryInfo(supplementaryInfo, expiresAt));
+                    }
+                }
             }
-           return new ResponseEntity(supplementaryPaymentDto, paymentResponseHttpStatus);
+        }
+
+        List<SupplementaryInfo> lstSupplementaryInfo = supplementaryInfos.values().stream()
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        SupplementaryPaymentDto supplementaryPaymentDto = SupplementaryPaymentDto.supplementaryPaymentDtoWith().payments(paymentDtos).
+            supplementaryInfo(lstSupplementaryInfo.isEmpty() && partial ? null : lstSupplementaryInfo).build();
+        return new ResponseEntity<>(supplementaryPaymentDto, partial ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK);
     }
 
-    private ResponseEntity<SupplementaryDetailsResponse> getIacSupplementaryInfoResponse(List<String> iacCcdCaseNos) throws RestClientException {
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private ChunkResult fetchChunk(List<String> iacCcdCaseNos, String serviceAuthorisation) {
+        ResponseEntity<SupplementaryDetailsResponse> responseEntitySupplementaryInfo;
+        try {
+            responseEntitySupplementaryInfo = getIacSupplementaryInfoResponse(iacCcdCaseNos, serviceAuthorisation);
+        } catch (HttpClientErrorException ex) {
+            LOG.info("IAC Supplementary information could not be found for {} CCD case numbers, exception: {}", iacCcdCaseNos.size(), ex.getMessage());
+            return new ChunkResult(Collections.emptyList(), true);
+        } catch (Exception ex) {
+            LOG.info("Unable to retrieve IAC Supplementary Info information for {} CCD case numbers, exception: {}", iacCcdCaseNos.size(), ex.getMessage());
+            return new ChunkResult(Collections.emptyList(), true);
+        }
+
+        SupplementaryDetailsResponse supplementaryDetailsResponse = responseEntitySupplementaryInfo.getBody();
+        List<SupplementaryInfo> lstSupplementaryInfo = supplementaryDetailsResponse != null && supplementaryDetailsResponse.getSupplementaryInfo() != null
+            ? supplementaryDetailsResponse.getSupplementaryInfo()
+            : Collections.emptyList();
+        MissingSupplementaryInfo lstMissingSupplementaryInfo = supplementaryDetailsResponse != null ? supplementaryDetailsResponse.getMissingSupplementaryInfo() : null;
+
+        if (responseEntitySupplementaryInfo.getStatusCodeValue() == HttpStatus.PARTIAL_CONTENT.value() && lstMissingSupplementaryInfo == null) {
+            LOG.info("No missing supplementary info received from IAC for any CCD case numbers, however response is 206");
+        } else if (lstMissingSupplementaryInfo != null && lstMissingSupplementaryInfo.getCcdCaseNumbers() != null) {
+            LOG.info("missing supplementary info from IAC for CCD case numbers : {}", lstMissingSupplementaryInfo.getCcdCaseNumbers().toString());
+        }
+        return new ChunkResult(lstSupplementaryInfo, responseEntitySupplementaryInfo.getStatusCode() == HttpStatus.PARTIAL_CONTENT);
+    }
+
+    private ResponseEntity<SupplementaryDetailsResponse> getIacSupplementaryInfoResponse(List<String> iacCcdCaseNos, String serviceAuthorisation) throws RestClientException {
 
         IacSupplementaryRequest iacSupplementaryRequest = IacSupplementaryRequest.createIacSupplementaryRequestWith()
             .ccdCaseNumbers(iacCcdCaseNos).build();
 
         MultiValueMap<String, String> headerMultiValueMapForIacSuppInfo = new LinkedMultiValueMap<String, String>();
-        List<String> serviceAuthTokenPaymentList = new ArrayList<>();
-
-        //Generate token for payment api and replace
-        serviceAuthTokenPaymentList.add(authTokenGenerator.generate());
-
-        headerMultiValueMapForIacSuppInfo.put("ServiceAuthorization", serviceAuthTokenPaymentList);
-        LOG.info("IAC Supplementary info URL: {}", iacSupplementaryInfoUrl + "/supplementary-details");
+        headerMultiValueMapForIacSuppInfo.put("ServiceAuthorization", Collections.singletonList(serviceAuthorisation));
+        LOG.debug("IAC Supplementary info URL: {}", iacSupplementaryInfoUrl + "/supplementary-details");
 
         HttpHeaders headers = new HttpHeaders(headerMultiValueMapForIacSuppInfo);
         final HttpEntity<IacSupplementaryRequest> entity = new HttpEntity<>(iacSupplementaryRequest, headers);
         return this.restTemplateIacSupplementaryInfo.exchange(iacSupplementaryInfoUrl + "/supplementary-details", HttpMethod.POST, entity, SupplementaryDetailsResponse.class);
     }
 
-}
+    private void evictExpiredIfFull(long now) {
+        if (supplementaryInfoByCase.size() > MAX_CACHED_CASES) {
+            supplementaryInfoByCase.values().removeIf(cached -> cached.isExpired(now));
+        }
+    }
 
+    private static final class ChunkResult {
 
+        private final List<SupplementaryInfo> supplementaryInfo;
 
+        private final boolean partial;
 
+        private ChunkResult(List<SupplementaryInfo> supplementaryInfo, boolean partial) {
+            this.supplementaryInfo = supplementaryInfo;
+            this.partial = partial;
+        }
+    }
+
+    private static final class CachedSupplementaryInfo {
 
+        private final SupplementaryInfo supplementaryInfo;
 
+        private final long expiresAt;
 
+        private CachedSupplementaryInfo(SupplementaryInfo supplementaryInfo, long expiresAt) {
+            this.supplementaryInfo = supplementaryInfo;
+            this.expiresAt = expiresAt;
+        }
 
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package uk.gov.hmcts.payment.api.servicebus;
+
+import com.microsoft.azure.servicebus.Message;
+import com.microsoft.azure.servicebus.primitives.ServiceBusException;
+import org.apache.commons.lang3.time.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import uk.gov.hmcts.payment.api.model.CallbackOutbox;
+import uk.gov.hmcts.payment.api.model.CallbackOutboxRepository;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes pending callback outbox entries to the service bus. Each entry is sent with its idempotency key as
+ * the message id, so a retry after an unacknowledged send is dropped by the topic's duplicate detection.
+ */
+@Service
+public class CallbackOutboxRelay {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CallbackOutboxRelay.class);
+
+    private final CallbackOutboxRepository callbackOutboxRepository;
+
+    private final TopicClientProxy topicClient;
+
+    @Value("${service.callback.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${service.callback.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${service.callback.outbox.retry.initial-seconds:5}")
+    private int initialRetrySeconds;
+
+    @Value("${service.callback.outbox.retry.max-seconds:600}")
+    private int maxRetrySeconds;
+
+    @Value("${service.callback.outbox.send-timeout-seconds:30}")
+    private int sendTimeoutSeconds;
+
+    @Autowired
+    public CallbackOutboxRelay(CallbackOutboxRepository callbackOutboxRepository, TopicClientProxy topicClient) {
+        this.callbackOutboxRepository = callbackOutboxRepository;
+        this.topicClient = topicClient;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Claims one batch of due entries, publishes them and records the outcome. Entries that could not be
+     * published are retried with exponential backoff until {@code maxAttempts} is reached.
+     *
+     * @return the number of entries claimed
+     */
+    @Transactional
+    public int relayBatch() {
+        List<CallbackOutbox> entries = callbackOutboxRepository.findPendingToRelay(new Date(), batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<Void>> results = entries.stream()
+            .map(this::publish)
+            .collect(Collectors.toList());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(sendTimeoutSeconds);
+        int published = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            CallbackOutbox entry = entries.get(i);
+            try {
+                results.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                entry.setStatus(CallbackOutbox.PUBLISHED);
+                entry.setDatePublished(new Date());
+                published++;
+            } catch (ExecutionException | TimeoutException e) {
+                scheduleRetry(entry, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                scheduleRetry(entry, e);
+            }
+        }
+
+        LOG.info("Relayed {} of {} service callbacks", published, entries.size());
+        return entries.size();
+    }
+
+    private CompletableFuture<Void> publish(CallbackOutbox entry) {
+        Message msg = new Message(entry.getPayload());
+
+        msg.setMessageId(entry.getIdempotencyKey());
+        msg.setContentType("application/json");
+        msg.setLabel("Service Callback Message");
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("serviceCallbackUrl", entry.getServiceCallbackUrl());
+        properties.put("idempotencyKey", entry.getIdempotencyKey());
+        msg.setProperties(properties);
+
+        try {
+            return topicClient.publish(msg);
+        } catch (ServiceBusException e) {
+            CompletableFuture<Void> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    private void scheduleRetry(CallbackOutbox entry, Exception cause) {
+        int attempts = entry.getAttempts() + 1;
+        entry.setAttempts(attempts);
+
+        if (attempts >= maxAttempts) {
+            entry.setStatus(CallbackOutbox.FAILED);
+            LOG.error("Giving up on service callback {} for payment {} after {} attempts, its later callbacks are held until it is cleared",
+                entry.getIdempotencyKey(), entry.getPaymentReference(), attempts, cause);
+            return;
+        }
+
+        long delaySeconds = Math.min((long) initialRetrySeconds << Math.min(attempts - 1, 30), maxRetrySeconds);
+        entry.setNextAttemptAt(DateUtils.addSeconds(new Date(), (int) delaySeconds));
+        LOG.warn("Service callback {} for payment {} failed on attempt {}, retrying in {}s",
+            entry.getIdempotencyKey(), entry.getPaymentReference(), attempts, delaySeconds);
+    }
+}
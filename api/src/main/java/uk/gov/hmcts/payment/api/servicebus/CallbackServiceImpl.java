@@ -1,7 +1,7 @@
 package uk.gov.hmcts.payment.api.servicebus;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.microsoft.azure.servicebus.Message;
 import org.ff4j.FF4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,13 +9,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import uk.gov.hmcts.payment.api.contract.PaymentDto;
 import uk.gov.hmcts.payment.api.dto.mapper.PaymentDtoMapper;
+import uk.gov.hmcts.payment.api.model.CallbackOutbox;
+import uk.gov.hmcts.payment.api.model.CallbackOutboxRepository;
 import uk.gov.hmcts.payment.api.model.Payment;
 import uk.gov.hmcts.payment.api.model.PaymentFeeLink;
 import uk.gov.hmcts.payment.api.service.CallbackService;
+import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentException;
 
-import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
 
 
+/**
+ * Records service callbacks in the callback outbox, as part of the caller's transaction. They are published to the
+ * service bus by {@link CallbackOutboxRelay}.
+ */
 @Service
 public class CallbackServiceImpl implements CallbackService {
 
@@ -23,21 +31,22 @@ public class CallbackServiceImpl implements CallbackService {
 
     private final ObjectMapper objectMapper;
 
-    private final TopicClientProxy topicClient;
+    private final CallbackOutboxRepository callbackOutboxRepository;
 
     private final FF4j ff4j;
 
     @Autowired
-    public CallbackServiceImpl(PaymentDtoMapper paymentDtoMapper, ObjectMapper objectMapper, TopicClientProxy topicClient, FF4j ff4j) {
+    public CallbackServiceImpl(PaymentDtoMapper paymentDtoMapper, ObjectMapper objectMapper,
+                               CallbackOutboxRepository callbackOutboxRepository, FF4j ff4j) {
         this.paymentDtoMapper = paymentDtoMapper;
         this.objectMapper = objectMapper;
-        this.topicClient = topicClient;
+        this.callbackOutboxRepository = callbackOutboxRepository;
         this.ff4j = ff4j;
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(CallbackServiceImpl.class);
 
-    public synchronized void callback(PaymentFeeLink paymentFeeLink, Payment payment) {
+    public void callback(PaymentFeeLink paymentFeeLink, Payment payment) {
 
         if (payment.getServiceCallbackUrl() == null) {
             LOG.warn("Service callback url is null");
@@ -53,16 +62,18 @@ public class CallbackServiceImpl implements CallbackService {
 
         try {
 
-            Message msg = new Message(objectMapper.writeValueAsString(dto));
-
-            msg.setContentType("application/json");
-            msg.setLabel("Service Callback Message");
-            msg.setProperties(Collections.singletonMap("serviceCallbackUrl", payment.getServiceCallbackUrl()));
-
-            topicClient.send(msg);
-
-        } catch (Exception e) {
-            LOG.error("Error", e);
+            callbackOutboxRepository.save(CallbackOutbox.callbackOutboxWith()
+                .paymentReference(payment.getReference())
+                .serviceCallbackUrl(payment.getServiceCallbackUrl())
+                .payload(objectMapper.writeValueAsString(dto))
+                .idempotencyKey(UUID.randomUUID().toString())
+                .status(CallbackOutbox.PENDING)
+                .nextAttemptAt(new Date())
+                .build());
+
+        } catch (JsonProcessingException e) {
+            /* without an outbox row the callback would never be sent, so the payment change is rolled back too */
+            throw new PaymentException("Unable to record service callback for payment " + payment.getReference(), e);
         }
 
     }
@@ -1,82 +1,225 @@
 package uk.gov.hmcts.payment.api.servicebus;
 
 import com.microsoft.azure.servicebus.IMessage;
+import com.microsoft.azure.servicebus.ITopicClient;
 import com.microsoft.azure.servicebus.TopicClient;
 import com.microsoft.azure.servicebus.primitives.ConnectionStringBuilder;
 import com.microsoft.azure.servicebus.primitives.ServiceBusException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes service callback messages without blocking the caller. Messages are put on a bounded in-memory
+ * queue and drained by a small pool of dispatcher threads, each of which keeps its own long-lived
+ * {@link TopicClient} and sends whatever has accumulated as a single batch.
+ */
 @Component
 public class TopicClientProxy {
 
     private static final Logger LOG = LoggerFactory.getLogger(TopicClientProxy.class);
 
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private static final int DEFAULT_BATCH_SIZE = 20;
+
+    private static final int DEFAULT_DISPATCHER_THREADS = 2;
+
+    private static final long POLL_TIMEOUT_MILLIS = 500;
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
     private final String connectionString;
 
     private final String topic;
 
-    private boolean keepClientAlive = false;
+    private final int batchSize;
+
+    private final BlockingQueue<QueuedMessage> queue;
 
-    private TopicClient topicClient;
+    private final ExecutorService dispatchers;
 
+    private final Timer sendLatency;
+
+    private final Timer queueLatency;
+
+    private final Counter rejected;
+
+    private final Counter failed;
+
+    private volatile boolean running = true;
+
+    public TopicClientProxy(String connectionString, String topic) {
+        this(connectionString, topic, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_DISPATCHER_THREADS,
+            new SimpleMeterRegistry());
+    }
+
+    @Autowired
     public TopicClientProxy(
         @Value("${azure.servicebus.connection-string}") String connectionString,
-        @Value("${azure.servicebus.topic-name}") String topic) {
+        @Value("${azure.servicebus.topic-name}") String topic,
+        @Value("${service.callback.publisher.queue-capacity:10000}") int queueCapacity,
+        @Value("${service.callback.publisher.batch-size:20}") int batchSize,
+        @Value("${service.callback.publisher.threads:2}") int threads,
+        MeterRegistry meterRegistry) {
 
         this.connectionString = connectionString;
         this.topic = topic;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        meterRegistry.gauge("servicebus.callback.queue.depth", queue, BlockingQueue::size);
+        this.sendLatency = meterRegistry.timer("servicebus.callback.send.latency");
+        this.queueLatency = meterRegistry.timer("servicebus.callback.queue.latency");
+        this.rejected = meterRegistry.counter("servicebus.callback.rejected");
+        this.failed = meterRegistry.counter("servicebus.callback.failed");
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.dispatchers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "servicebus-publisher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            dispatchers.execute(this::dispatch);
+        }
     }
 
-
-    private void send(TopicClient client, IMessage message) throws InterruptedException, ServiceBusException {
-        client.send(message);
-    }
-
-    private TopicClient newTopicClient() throws ServiceBusException, InterruptedException {
+    protected ITopicClient newTopicClient() throws ServiceBusException, InterruptedException {
         ConnectionStringBuilder connectionStringBuilder = new ConnectionStringBuilder(connectionString, topic);
         return new TopicClient(connectionStringBuilder);
     }
 
-    public synchronized void send(IMessage message) throws InterruptedException, ServiceBusException {
-
-        if (!keepClientAlive) { /* One use client */
-
-            TopicClient client = newTopicClient();
-            send(client, message);
-            client.close();
-            return;
+    /**
+     * Queues the message for publishing and returns immediately. The returned future completes once the batch
+     * containing the message has been accepted by the service bus, or exceptionally if publishing failed.
+     *
+     * @throws ServiceBusException if the queue is full or the proxy has been closed
+     */
+    public CompletableFuture<Void> publish(IMessage message) throws ServiceBusException {
+        QueuedMessage queued = new QueuedMessage(message, System.nanoTime());
+        if (!running || !queue.offer(queued)) {
+            rejected.increment();
+            throw new ServiceBusException(false, "Service callback queue is full or closed");
         }
+        return queued.getResult();
+    }
 
-        /* Batch mode */
+    public int getQueueDepth() {
+        return queue.size();
+    }
 
-        if (topicClient == null) {
-            topicClient = newTopicClient();
+    /**
+     * Stops accepting messages, waits for the queued ones to be published and closes the topic clients.
+     */
+    @PreDestroy
+    public void close() {
+        running = false;
+        dispatchers.shutdown();
+        try {
+            if (!dispatchers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOG.error("{} service callback messages were not published before shutdown", queue.size());
+                dispatchers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            dispatchers.shutdownNow();
+            Thread.currentThread().interrupt();
         }
-
-        send(topicClient, message);
-
     }
 
-    public void close() {
+    private void dispatch() {
+        ITopicClient client = null;
+        List<QueuedMessage> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                QueuedMessage first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                try {
+                    if (client == null) {
+                        client = newTopicClient();
+                    }
+                    long start = System.nanoTime();
+                    client.sendBatch(batch.stream().map(QueuedMessage::getMessage).collect(Collectors.toList()));
+                    sendLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    batch.forEach(m -> {
+                        queueLatency.record(start - m.getEnqueuedAt(), TimeUnit.NANOSECONDS);
+                        m.getResult().complete(null);
+                    });
+                } catch (ServiceBusException | RuntimeException e) {
+                    failed.increment(batch.size());
+                    LOG.error("Error publishing {} service callback messages", batch.size(), e);
+                    batch.forEach(m -> m.getResult().completeExceptionally(e));
+                    closeQuietly(client);
+                    client = null;
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            batch.forEach(m -> m.getResult().completeExceptionally(e));
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(client);
+        }
+    }
 
-        if (topicClient == null) {
+    private void closeQuietly(ITopicClient client) {
+        if (client == null) {
             return;
         }
 
         try {
-            topicClient.close();
+            client.close();
         } catch (ServiceBusException e) {
             LOG.error("Error closing topic client", e);
         }
-
-        topicClient = null;
     }
 
-    public synchronized void setKeepClientAlive(boolean keepClientAlive) {
-        this.keepClientAlive = keepClientAlive;
-    }
+    private static final class QueuedMessage {
 
+        private final IMessage message;
+
+        private final long enqueuedAt;
+
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private QueuedMessage(IMessage message, long enqueuedAt) {
+            this.message = message;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        private IMessage getMessage() {
+            return message;
+        }
+
+        private long getEnqueuedAt() {
+            return enqueuedAt;
+        }
+
+        private CompletableFuture<Void> getResult() {
+            return result;
+        }
+    }
 }
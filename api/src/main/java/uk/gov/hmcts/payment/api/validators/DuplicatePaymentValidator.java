@@ -1,69 +1,155 @@
 package uk.gov.hmcts.payment.api.validators;
 
+import org.apache.commons.lang3.time.DateUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import uk.gov.hmcts.payment.api.model.Payment;
+import uk.gov.hmcts.payment.api.model.Payment2Repository;
 import uk.gov.hmcts.payment.api.model.PaymentFee;
-import uk.gov.hmcts.payment.api.model.PaymentFeeLink;
-import uk.gov.hmcts.payment.api.model.PaymentFeeLinkRepository;
+import uk.gov.hmcts.payment.api.v1.model.UserIdSupplier;
 import uk.gov.hmcts.payment.api.v1.model.exceptions.DuplicatePaymentException;
 
-import java.util.Comparator;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
 import java.util.List;
-import java.util.function.Predicate;
-import java.util.stream.IntStream;
-
-import static java.util.Comparator.naturalOrder;
-import static java.util.Comparator.nullsFirst;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+/**
+ * Rejects a credit account payment when the same user has paid for the same fees, on the same case and account,
+ * within the last {@code duplicate.payment.check.interval.in.minutes}.
+ *
+ * <p>Each payment is stamped with a fingerprint of those details, and the check looks for another payment with the
+ * same fingerprint in the interval. Fingerprints this instance has seen committed are also kept in memory for the
+ * interval, so a retried request is rejected without a query; any other request still needs the indexed lookup,
+ * as the first payment may have been taken by another instance.
+ */
 @Component
-@Transactional
 public class DuplicatePaymentValidator {
 
     private static final Logger LOG = LoggerFactory.getLogger(DuplicatePaymentValidator.class);
 
-    private final DuplicateSpecification duplicateSpecification;
-    private final PaymentFeeLinkRepository paymentFeeLinkRepository;
+    private static final char SEPARATOR = '\u001f';
+
+    private final UserIdSupplier userIdSupplier;
+    private final Payment2Repository payment2Repository;
     private final int timeInterval;
 
-    private Comparator<PaymentFee> FEE_COMPARATOR  = Comparator.comparing(PaymentFee::getCode)
-        .thenComparing(PaymentFee::getVersion)
-        .thenComparing(PaymentFee::getVolume, nullsFirst(naturalOrder()))
-        .thenComparing(PaymentFee::getCalculatedAmount);
+    /* fingerprint to the System.nanoTime() it stops counting as a duplicate */
+    private final ConcurrentMap<String, Long> recentFingerprints = new ConcurrentHashMap<>();
+
+    @Value("${duplicate.payment.check.window.max-size:10000}")
+    private int maxWindowSize = 10000;
 
     @Autowired
-    public DuplicatePaymentValidator(DuplicateSpecification duplicateSpecification, @Value("${duplicate.payment.check.interval.in.minutes:2}") int timeInterval,
-                                     PaymentFeeLinkRepository paymentFeeLinkRepository) {
-        this.duplicateSpecification = duplicateSpecification;
-        this.paymentFeeLinkRepository = paymentFeeLinkRepository;
+    public DuplicatePaymentValidator(UserIdSupplier userIdSupplier, @Value("${duplicate.payment.check.interval.in.minutes:2}") int timeInterval,
+                                     Payment2Repository payment2Repository) {
+        this.userIdSupplier = userIdSupplier;
+        this.payment2Repository = payment2Repository;
         this.timeInterval = timeInterval;
     }
 
+    /**
+     * Sets the payment's fingerprint, then throws {@link DuplicatePaymentException} if a payment with the same one
+     * was taken within the interval.
+     */
     public void checkDuplication(Payment payment, List<PaymentFee> requestFees) {
-        List<PaymentFeeLink> dbPayments = paymentFeeLinkRepository.findAll(duplicateSpecification.getBy(payment, timeInterval));
-        if (!dbPayments.isEmpty()) {
-            boolean sameFees = dbPayments.stream()
-                .anyMatch(feePredicate(requestFees));
-            if (sameFees) {
-                if(payment != null && payment.getPaymentStatus() != null) {
-                    LOG.info("CreditAccountPayment received for ccdCaseNumber : {} PaymentStatus : {} - Duplicate Payment!!!", payment.getCcdCaseNumber(), payment.getPaymentStatus().getName());
-                }
-                throw new DuplicatePaymentException("duplicate payment");
+        String fingerprint = fingerprint(payment, requestFees);
+        payment.setDuplicateFingerprint(fingerprint);
+
+        if (isRecent(fingerprint) || isStored(fingerprint)) {
+            if (payment.getPaymentStatus() != null) {
+                LOG.info("CreditAccountPayment received for ccdCaseNumber : {} PaymentStatus : {} - Duplicate Payment!!!", payment.getCcdCaseNumber(), payment.getPaymentStatus().getName());
             }
+            throw new DuplicatePaymentException("duplicate payment");
         }
+        recordAfterCommit(fingerprint);
     }
 
-    private Predicate<PaymentFeeLink> feePredicate(List<PaymentFee> requestFees) {
-        return p -> p.getFees().size() == requestFees.size() && IntStream.range(0, requestFees.size())
-                    .allMatch(i-> contains(p.getFees(), requestFees.get(i), FEE_COMPARATOR));
+    String fingerprint(Payment payment, List<PaymentFee> fees) {
+        StringBuilder canonical = new StringBuilder()
+            .append(userIdSupplier.get()).append(SEPARATOR)
+            .append(amount(payment.getAmount())).append(SEPARATOR)
+            .append(payment.getServiceType()).append(SEPARATOR)
+            .append(payment.getCcdCaseNumber() != null ? "ccd:" + payment.getCcdCaseNumber() : "ref:" + payment.getCaseReference()).append(SEPARATOR)
+            .append(payment.getPbaNumber()).append(SEPARATOR)
+            .append(payment.getPaymentChannel() != null ? payment.getPaymentChannel().getName() : null);
+        /* the fees are sorted so that the same fees in a different order give the same fingerprint */
+        fees.stream()
+            .map(fee -> fee.getCode() + SEPARATOR + fee.getVersion() + SEPARATOR + fee.getVolume() + SEPARATOR + amount(fee.getCalculatedAmount()))
+            .sorted()
+            .forEach(fee -> canonical.append(SEPARATOR).append(fee));
+        return sha256(canonical.toString());
     }
 
-    private static <T> boolean contains(List<T> list, T item, Comparator<? super T> comparator) {
-        return list.stream().anyMatch(listItem -> comparator.compare(listItem, item) == 0);
+    private boolean isRecent(String fingerprint) {
+        Long expiresAt = recentFingerprints.get(fingerprint);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - expiresAt >= 0) {
+            recentFingerprints.remove(fingerprint, expiresAt);
+            return false;
+        }
+        return true;
     }
 
+    private boolean isStored(String fingerprint) {
+        Date now = new Date();
+        return payment2Repository.existsByDuplicateFingerprintAndDateCreatedBetween(fingerprint, DateUtils.addMinutes(now, -1 * timeInterval), now);
+    }
+
+    /* only a committed payment may be remembered, or a rolled back one would block its own retry */
+    private void recordAfterCommit(String fingerprint) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(fingerprint);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                record(fingerprint);
+            }
+        });
+    }
+
+    private void record(String fingerprint) {
+        long now = System.nanoTime();
+        if (recentFingerprints.size() >= maxWindowSize) {
+            recentFingerprints.values().removeIf(expiresAt -> now - expiresAt >= 0);
+            if (recentFingerprints.size() >= maxWindowSize) {
+                /* the window only saves queries, so when it is full of live entries it is cheaper to start again */
+                recentFingerprints.clear();
+            }
+        }
+        recentFingerprints.put(fingerprint, now + TimeUnit.MINUTES.toNanos(timeInterval));
+    }
+
+    /* 10, 10.0 and 10.00 are the same amount, as they were when the amounts were compared in the database */
+    private static String amount(BigDecimal amount) {
+        return amount != null ? amount.stripTrailingZeros().toPlainString() : null;
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
 }
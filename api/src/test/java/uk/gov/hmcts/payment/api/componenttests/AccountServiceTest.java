@@ -8,18 +8,30 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.internal.util.reflection.FieldSetter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.oauth2.client.OAuth2RestOperations;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.client.HttpClientErrorException;
 import uk.gov.hmcts.payment.api.dto.AccountDto;
 import uk.gov.hmcts.payment.api.service.AccountServiceImpl;
 import uk.gov.hmcts.payment.api.util.AccountStatus;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
@@ -56,4 +68,74 @@ public class AccountServiceTest {
         when(restTemplateMock.getForObject(baseUrl + "/" + pbaCode, AccountDto.class)).thenReturn(expectedDto);
         assertEquals(expectedDto, accountServiceImpl.retrieve(pbaCode));
     }
+
+    @Test
+    public void retrieveReusesAccountUntilInvalidated() throws Exception {
+        String pbaCode = "PBA1234";
+        FieldSetter.setField(accountServiceImpl, accountServiceImpl.getClass().getDeclaredField("baseUrl"), baseUrl);
+        AccountDto before = new AccountDto(pbaCode, "accountName", new BigDecimal(100),
+            new BigDecimal(100), AccountStatus.ACTIVE, new Date());
+        AccountDto after = new AccountDto(pbaCode, "accountName", new BigDecimal(100),
+            new BigDecimal(50), AccountStatus.ACTIVE, new Date());
+        when(restTemplateMock.getForObject(baseUrl + "/" + pbaCode, AccountDto.class)).thenReturn(before, after);
+
+        assertEquals(before, accountServiceImpl.retrieve(pbaCode));
+        assertEquals(before, accountServiceImpl.retrieve(pbaCode));
+        accountServiceImpl.invalidate(pbaCode);
+        assertEquals(after, accountServiceImpl.retrieve(pbaCode));
+        verify(restTemplateMock, times(2)).getForObject(baseUrl + "/" + pbaCode, AccountDto.class);
+    }
+
+    @Test
+    public void concurrentRetrievesOfOneAccountShareOneCall() throws Exception {
+        String pbaCode = "PBA1234";
+        FieldSetter.setField(accountServiceImpl, accountServiceImpl.getClass().getDeclaredField("baseUrl"), baseUrl);
+        AccountDto expectedDto = new AccountDto(pbaCode, "accountName", new BigDecimal(100),
+            new BigDecimal(100), AccountStatus.ACTIVE, new Date());
+        CountDownLatch upstreamCalled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(restTemplateMock.getForObject(baseUrl + "/" + pbaCode, AccountDto.class)).thenAnswer(invocation -> {
+            upstreamCalled.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return expectedDto;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<AccountDto>> results = new ArrayList<>();
+            results.add(executor.submit(() -> accountServiceImpl.retrieve(pbaCode)));
+            upstreamCalled.await(5, TimeUnit.SECONDS);
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> accountServiceImpl.retrieve(pbaCode)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<AccountDto> result : results) {
+                assertEquals(expectedDto, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        verify(restTemplateMock, times(1)).getForObject(baseUrl + "/" + pbaCode, AccountDto.class);
+    }
+
+    @Test
+    public void failedRetrieveIsNotCached() throws Exception {
+        String pbaCode = "PBA1234";
+        FieldSetter.setField(accountServiceImpl, accountServiceImpl.getClass().getDeclaredField("baseUrl"), baseUrl);
+        AccountDto expectedDto = new AccountDto(pbaCode, "accountName", new BigDecimal(100),
+            new BigDecimal(100), AccountStatus.ACTIVE, new Date());
+        when(restTemplateMock.getForObject(baseUrl + "/" + pbaCode, AccountDto.class))
+            .thenThrow(new HttpClientErrorException(HttpStatus.SERVICE_UNAVAILABLE))
+            .thenReturn(expectedDto);
+
+        try {
+            accountServiceImpl.retrieve(pbaCode);
+            fail("Expected the Liberata error to be rethrown");
+        } catch (HttpClientErrorException expected) {
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, expected.getStatusCode());
+        }
+        assertEquals(expectedDto, accountServiceImpl.retrieve(pbaCode));
+    }
 }
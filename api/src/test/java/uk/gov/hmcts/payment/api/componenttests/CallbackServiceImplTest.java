@@ -1,7 +1,6 @@
 package uk.gov.hmcts.payment.api.componenttests;
 
 import com.microsoft.azure.servicebus.IMessage;
-import com.microsoft.azure.servicebus.Message;
 import com.microsoft.azure.servicebus.primitives.ServiceBusException;
 import org.ff4j.FF4j;
 import org.junit.After;
@@ -10,36 +9,45 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
-import org.testcontainers.shaded.com.fasterxml.jackson.core.JsonProcessingException;
-import org.testcontainers.shaded.com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.transaction.annotation.Transactional;
+import uk.gov.hmcts.payment.api.servicebus.CallbackOutboxRelay;
+import uk.gov.hmcts.payment.api.servicebus.CallbackServiceImpl;
+import uk.gov.hmcts.payment.api.servicebus.TopicClientProxy;
 import uk.gov.hmcts.payment.api.componenttests.util.PaymentsDataUtil;
-import uk.gov.hmcts.payment.api.contract.PaymentDto;
-import uk.gov.hmcts.payment.api.dto.mapper.PaymentDtoMapper;
+import uk.gov.hmcts.payment.api.model.CallbackOutbox;
+import uk.gov.hmcts.payment.api.model.CallbackOutboxRepository;
 import uk.gov.hmcts.payment.api.model.Payment;
 import uk.gov.hmcts.payment.api.model.PaymentFeeLink;
 import uk.gov.hmcts.payment.api.service.CallbackService;
-import uk.gov.hmcts.payment.api.servicebus.CallbackServiceImpl;
-import uk.gov.hmcts.payment.api.servicebus.TopicClientProxy;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.MOCK;
 
 @RunWith(SpringRunner.class)
 @ActiveProfiles({"local", "componenttest"})
 @SpringBootTest(webEnvironment = MOCK)
+@Transactional
 public class CallbackServiceImplTest {
 
     @Autowired
     private CallbackServiceImpl callbackService;
 
+    @Autowired
+    private CallbackOutboxRelay callbackOutboxRelay;
+
+    @Autowired
+    private CallbackOutboxRepository callbackOutboxRepository;
+
     @MockBean
     private TopicClientProxy topicClient;
 
@@ -47,7 +55,7 @@ public class CallbackServiceImplTest {
     private FF4j ff4j;
 
     @Test
-    public void testCallbackService() throws ServiceBusException, InterruptedException, JsonProcessingException {
+    public void testCallbackService() throws ServiceBusException {
 
         Payment payment = CardPaymentComponentTest.getPaymentsData().get(2);
         payment.setServiceCallbackUrl("serviceCallbackUrl");
@@ -55,11 +63,46 @@ public class CallbackServiceImplTest {
             .payments(Arrays.asList(payment))
             .fees(PaymentsDataUtil.getFeesData())
             .build();
-        doNothing().when(topicClient).send(any(IMessage.class));
+        when(topicClient.publish(any(IMessage.class))).thenReturn(CompletableFuture.completedFuture(null));
+
         callbackService.callback(paymentFeeLink, paymentFeeLink.getPayments().get(0));
-        Mockito.verify(topicClient).send(any());
+        Mockito.verify(topicClient, Mockito.never()).publish(any());
+
+        callbackOutboxRelay.relayBatch();
+        Mockito.verify(topicClient).publish(any());
+
+        List<CallbackOutbox> entries = callbackOutboxRepository.findByPaymentReferenceOrderById(payment.getReference());
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).getStatus()).isEqualTo(CallbackOutbox.PUBLISHED);
     }
 
+    @Test
+    public void failedCallbackHoldsBackLaterCallbacksForThePaymentUntilCleared() throws ServiceBusException {
+        Payment payment = CardPaymentComponentTest.getPaymentsData().get(2);
+        payment.setServiceCallbackUrl("serviceCallbackUrl");
+        PaymentFeeLink paymentFeeLink = PaymentFeeLink.paymentFeeLinkWith().paymentReference("00000005")
+            .payments(Arrays.asList(payment))
+            .fees(PaymentsDataUtil.getFeesData())
+            .build();
+        when(topicClient.publish(any(IMessage.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        callbackService.callback(paymentFeeLink, payment);
+        callbackService.callback(paymentFeeLink, payment);
+        CallbackOutbox first = callbackOutboxRepository.findByPaymentReferenceOrderById(payment.getReference()).get(0);
+        first.setStatus(CallbackOutbox.FAILED);
+        callbackOutboxRepository.save(first);
+
+        callbackOutboxRelay.relayBatch();
+        Mockito.verify(topicClient, Mockito.never()).publish(any());
+
+        first.setStatus(CallbackOutbox.PENDING);
+        callbackOutboxRepository.save(first);
+        callbackOutboxRelay.relayBatch();
+        callbackOutboxRelay.relayBatch();
+
+        List<CallbackOutbox> entries = callbackOutboxRepository.findByPaymentReferenceOrderById(payment.getReference());
+        assertThat(entries).extracting(CallbackOutbox::getStatus).containsExactly(CallbackOutbox.PUBLISHED, CallbackOutbox.PUBLISHED);
+    }
 
     @Before
     public void init() {
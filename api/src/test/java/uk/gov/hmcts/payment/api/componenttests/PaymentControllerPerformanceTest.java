@@ -2,6 +2,8 @@ package uk.gov.hmcts.payment.api.componenttests;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.tomakehurst.wiremock.junit.WireMockClassRule;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.joda.time.LocalDate;
 import org.joda.time.Minutes;
 import org.joda.time.format.DateTimeFormat;
@@ -13,6 +15,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -21,6 +24,7 @@ import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.WebApplicationContext;
 import uk.gov.hmcts.payment.api.componenttests.util.PaymentsDataUtil;
+import uk.gov.hmcts.payment.api.configuration.LaunchDarklyFeatureToggler;
 import uk.gov.hmcts.payment.api.contract.PaymentsResponse;
 import uk.gov.hmcts.payment.api.model.*;
 import uk.gov.hmcts.payment.api.v1.componenttests.backdoors.ServiceResolverBackdoor;
@@ -28,11 +32,16 @@ import uk.gov.hmcts.payment.api.v1.componenttests.backdoors.UserResolverBackdoor
 import uk.gov.hmcts.payment.api.v1.componenttests.sugar.CustomResultMatcher;
 import uk.gov.hmcts.payment.api.v1.componenttests.sugar.RestActions;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.Date;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.MOCK;
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -71,6 +80,15 @@ public class PaymentControllerPerformanceTest extends PaymentsDataUtil {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @MockBean
+    private LaunchDarklyFeatureToggler featureToggler;
+
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormat.forPattern("dd-MM-yyyy");
 
     protected CustomResultMatcher body() {
@@ -120,15 +138,86 @@ public class PaymentControllerPerformanceTest extends PaymentsDataUtil {
 
     }
 
+    private void createApportionedPayment(int n) {
+        createPayment(n);
+        PaymentFeeLink paymentFeeLink = db.findByReference("2018-15186162001" + n);
+        Payment payment = paymentFeeLink.getPayments().get(0);
+        PaymentFee fee = paymentFeeLink.getFees().get(0);
+        db.createApportionDetails(FeePayApportion.feePayApportionWith()
+            .apportionAmount(fee.getCalculatedAmount())
+            .apportionType("AUTO")
+            .feeId(fee.getId())
+            .paymentId(payment.getId())
+            .paymentLink(paymentFeeLink)
+            .feeAmount(fee.getCalculatedAmount())
+            .ccdCaseNumber(payment.getCcdCaseNumber()));
+    }
+
     private final static int PAYMENTS_BACKLOG = 10;
 
     private final static int PAYMENTS_TODAY = 10;
 
+    private final static int APPORTIONED_PAYMENTS_PER_PAGE = 50;
+
     @Test
     public void testSuitesRequireAtLeastOneTest() {
 
     }
 
+    @Test
+    @Transactional
+    public void reconciliationPull_apportionEnrichmentQueriesPerPage() throws Exception {
+
+        for (int i = 0; i < APPORTIONED_PAYMENTS_PER_PAGE; i++) {
+            createApportionedPayment(i);
+        }
+
+        restActions
+            .post("/api/ff4j/store/features/payment-search/enable")
+            .andExpect(status().isAccepted());
+
+        String startDate = LocalDate.now().minus(Minutes.ONE).toString(DATE_FORMAT);
+        String endDate = LocalDate.now().toString(DATE_FORMAT);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        when(featureToggler.getBooleanValue(eq("apportion-feature"), anyBoolean())).thenReturn(false);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        long timestamp = System.currentTimeMillis();
+        PaymentsResponse withoutApportion = objectMapper.readValue(restActions
+            .get("/reconciliation-payments?start_date=" + startDate + "&end_date=" + endDate)
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString(), PaymentsResponse.class);
+        long statementsWithoutApportion = statistics.getPrepareStatementCount();
+        long durationWithoutApportion = System.currentTimeMillis() - timestamp;
+
+        when(featureToggler.getBooleanValue(eq("apportion-feature"), anyBoolean())).thenReturn(true);
+        entityManager.clear();
+        statistics.clear();
+        timestamp = System.currentTimeMillis();
+        PaymentsResponse withApportion = objectMapper.readValue(restActions
+            .get("/reconciliation-payments?start_date=" + startDate + "&end_date=" + endDate)
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString(), PaymentsResponse.class);
+        long statementsWithApportion = statistics.getPrepareStatementCount();
+        long durationWithApportion = System.currentTimeMillis() - timestamp;
+
+        statistics.setStatisticsEnabled(false);
+
+        long enrichmentStatements = statementsWithApportion - statementsWithoutApportion;
+        System.out.println("Reconciliation pull of " + APPORTIONED_PAYMENTS_PER_PAGE + " payments: "
+            + statementsWithoutApportion + " statements in " + durationWithoutApportion + " ms without apportionment, "
+            + statementsWithApportion + " statements in " + durationWithApportion + " ms with apportionment, "
+            + enrichmentStatements + " statements for apportion enrichment per page");
+
+        assertThat(withApportion.getPayments().size()).isEqualTo(withoutApportion.getPayments().size());
+        assertThat(withApportion.getPayments().size()).isGreaterThanOrEqualTo(APPORTIONED_PAYMENTS_PER_PAGE);
+        assertThat(enrichmentStatements).isLessThanOrEqualTo(2);
+    }
+
     //@Test
     @Transactional
     @Rollback(false)
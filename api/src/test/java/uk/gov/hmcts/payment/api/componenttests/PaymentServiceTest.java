@@ -5,6 +5,8 @@ import org.joda.time.LocalDateTime;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 import uk.gov.hmcts.payment.api.componenttests.util.PaymentsDataUtil;
 import uk.gov.hmcts.payment.api.dto.PaymentSearchCriteria;
 import uk.gov.hmcts.payment.api.dto.Reference;
@@ -12,6 +14,8 @@ import uk.gov.hmcts.payment.api.model.*;
 import uk.gov.hmcts.payment.api.service.PaymentService;
 import uk.gov.hmcts.payment.api.v1.componenttests.TestUtil;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
@@ -27,6 +31,12 @@ public class PaymentServiceTest extends TestUtil {
     @Qualifier("paymentServiceImpl")
     protected PaymentService paymentService;
 
+    @Autowired
+    private Payment2Repository payment2Repository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     private PaymentsDataUtil paymentsDataUtil;
 
     @Test
@@ -56,6 +66,93 @@ public class PaymentServiceTest extends TestUtil {
         assertThat(paymentsReferences).hasSize(2);
     }
 
+    @Test
+    public void testListInitiatedStatusPaymentsReferencesDoesNotReturnPaymentsWithLiveClaim() throws Exception {
+        paymentsDataUtil = new PaymentsDataUtil();
+        PaymentFeeLink paymentFeeLink = PaymentFeeLink.paymentFeeLinkWith()
+            .payments(Lists.newArrayList(getPaymentWithStatus("created"), getPaymentWithStatus("submitted")))
+            .fees(paymentsDataUtil.getFeesData())
+            .build();
+        paymentFeeLinkRepository.save(paymentFeeLink);
+
+        Object target = AopTestUtils.getTargetObject(paymentService);
+        Object leaseMinutes = ReflectionTestUtils.getField(target, "statusUpdateClaimLeaseMinutes");
+        ReflectionTestUtils.setField(target, "statusUpdateClaimLeaseMinutes", 10);
+        try {
+            // when
+            List<Reference> firstClaim = paymentService.listInitiatedStatusPaymentsReferences();
+            List<Reference> secondClaim = paymentService.listInitiatedStatusPaymentsReferences();
+
+            // then
+            assertThat(firstClaim).hasSize(2);
+            assertThat(secondClaim).isEmpty();
+        } finally {
+            ReflectionTestUtils.setField(target, "statusUpdateClaimLeaseMinutes", leaseMinutes);
+        }
+    }
+
+    @Test
+    public void testListInitiatedStatusPaymentsReferencesGivesUpAfterMaxAttempts() throws Exception {
+        paymentsDataUtil = new PaymentsDataUtil();
+        PaymentFeeLink paymentFeeLink = PaymentFeeLink.paymentFeeLinkWith()
+            .payments(Lists.newArrayList(getPaymentWithStatus("created")))
+            .fees(paymentsDataUtil.getFeesData())
+            .build();
+        paymentFeeLinkRepository.save(paymentFeeLink);
+
+        Object target = AopTestUtils.getTargetObject(paymentService);
+        Object maxAttempts = ReflectionTestUtils.getField(target, "statusUpdateMaxAttempts");
+        ReflectionTestUtils.setField(target, "statusUpdateMaxAttempts", 2);
+        try {
+            // when
+            List<Reference> firstClaim = paymentService.listInitiatedStatusPaymentsReferences();
+            List<Reference> secondClaim = paymentService.listInitiatedStatusPaymentsReferences();
+            List<Reference> thirdClaim = paymentService.listInitiatedStatusPaymentsReferences();
+
+            // then
+            assertThat(firstClaim).hasSize(1);
+            assertThat(secondClaim).hasSize(1);
+            assertThat(thirdClaim).isEmpty();
+        } finally {
+            ReflectionTestUtils.setField(target, "statusUpdateMaxAttempts", maxAttempts);
+        }
+    }
+
+    @Test
+    public void testListInitiatedStatusPaymentsReferencesRecordsGivingUp() throws Exception {
+        paymentsDataUtil = new PaymentsDataUtil();
+        Payment payment = getPaymentWithStatus("created");
+        PaymentFeeLink paymentFeeLink = PaymentFeeLink.paymentFeeLinkWith()
+            .payments(Lists.newArrayList(payment))
+            .fees(paymentsDataUtil.getFeesData())
+            .build();
+        paymentFeeLinkRepository.save(paymentFeeLink);
+
+        Object target = AopTestUtils.getTargetObject(paymentService);
+        Object maxAttempts = ReflectionTestUtils.getField(target, "statusUpdateMaxAttempts");
+        ReflectionTestUtils.setField(target, "statusUpdateMaxAttempts", 1);
+        try {
+            // when the only poll has been used up
+            assertThat(paymentService.listInitiatedStatusPaymentsReferences()).hasSize(1);
+            entityManager.clear();
+            assertThat(payment2Repository.findByReference(payment.getReference()).get().getStatusPollGivenUpAt()).isNull();
+
+            assertThat(paymentService.listInitiatedStatusPaymentsReferences()).isEmpty();
+
+            // then giving up is recorded
+            entityManager.clear();
+            Payment givenUp = payment2Repository.findByReference(payment.getReference()).get();
+            assertThat(givenUp.getStatusPollAttempts()).isEqualTo(1);
+            assertThat(givenUp.getStatusPollGivenUpAt()).isNotNull();
+
+            // and raising the maximum afterwards does not bring the payment back
+            ReflectionTestUtils.setField(target, "statusUpdateMaxAttempts", 5);
+            assertThat(paymentService.listInitiatedStatusPaymentsReferences()).isEmpty();
+        } finally {
+            ReflectionTestUtils.setField(target, "statusUpdateMaxAttempts", maxAttempts);
+        }
+    }
+
     private Payment getPaymentWithStatus(String paymentStatus) {
         return Payment.paymentWith()
             .amount(new BigDecimal("99.99"))
@@ -8,17 +8,25 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.test.util.ReflectionTestUtils;
 import uk.gov.hmcts.payment.api.controllers.MaintenanceJobsController;
+import uk.gov.hmcts.payment.api.dto.FeePayApportionBackfillProgress;
 import uk.gov.hmcts.payment.api.dto.Reference;
 import uk.gov.hmcts.payment.api.model.PaymentFeeLink;
 import uk.gov.hmcts.payment.api.service.DelegatingPaymentService;
+import uk.gov.hmcts.payment.api.service.FeePayApportionBackfillService;
 import uk.gov.hmcts.payment.api.service.PaymentService;
+import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentException;
 
 import java.util.Arrays;
+import java.util.Collections;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -32,6 +40,9 @@ public class MaintenanceJobsControllerMockTest {
     @Mock
     private DelegatingPaymentService<PaymentFeeLink, String> delegatingPaymentService;
 
+    @Mock
+    private FeePayApportionBackfillService feePayApportionBackfillService;
+
     @InjectMocks
     private MaintenanceJobsController controller;
 
@@ -68,6 +79,69 @@ public class MaintenanceJobsControllerMockTest {
 
     }
 
+    @Test
+    public void testThatFailedReferenceDoesNotStopRemainingUpdates() throws Exception{
+
+        doReturn(Arrays.asList(new Reference("failing"), reference, reference)).when(paymentService).listInitiatedStatusPaymentsReferences();
+        doThrow(new PaymentException("gov pay unavailable")).when(delegatingPaymentService).retrieveWithCallBack("failing");
+        ReflectionTestUtils.setField(controller, "statusUpdateChunkSize", 2);
+
+        // when & then
+        this.mockMvc.perform(patch("/jobs/card-payments-status-update"))
+            .andExpect(status().isOk());
+
+        verify(delegatingPaymentService).retrieveWithCallBack("failing");
+        verify(delegatingPaymentService, times(2)).retrieveWithCallBack("xxx");
+
+    }
+
+    @Test
+    public void testThatConcurrentChunksUpdateEveryReference() throws Exception{
+
+        doReturn(Collections.nCopies(25, reference)).when(paymentService).listInitiatedStatusPaymentsReferences();
+        ReflectionTestUtils.setField(controller, "statusUpdateChunkSize", 10);
+        ReflectionTestUtils.setField(controller, "statusUpdateConcurrency", 4);
+
+        // when & then
+        this.mockMvc.perform(patch("/jobs/card-payments-status-update"))
+            .andExpect(status().isOk());
+
+        verify(delegatingPaymentService, times(25)).retrieveWithCallBack("xxx");
+
+    }
+
+    @Test
+    public void testThatFeePayApportionBackfillStartsFromTheGivenCase() throws Exception{
+
+        doReturn(true).when(feePayApportionBackfillService).start("1111222233334444");
+        doReturn(FeePayApportionBackfillProgress.backfillProgressWith().running(true).startedAfter("1111222233334444").build())
+            .when(feePayApportionBackfillService).getProgress();
+
+        // when & then
+        this.mockMvc.perform(post("/jobs/fee-pay-apportion-backfill").param("after", "1111222233334444"))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$.running").value(true))
+            .andExpect(jsonPath("$.started_after").value("1111222233334444"));
+
+    }
+
+    @Test
+    public void testThatFeePayApportionBackfillIsNotStartedTwice() throws Exception{
+
+        doReturn(false).when(feePayApportionBackfillService).start(null);
+        doReturn(FeePayApportionBackfillProgress.backfillProgressWith().running(true).build())
+            .when(feePayApportionBackfillService).getProgress();
+
+        // when & then
+        this.mockMvc.perform(post("/jobs/fee-pay-apportion-backfill"))
+            .andExpect(status().isConflict());
+
+        this.mockMvc.perform(get("/jobs/fee-pay-apportion-backfill"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.running").value(true));
+
+    }
+
     private Reference reference = new Reference("xxx");
 
 }
@@ -26,11 +26,14 @@ import uk.gov.hmcts.payment.api.componenttests.util.PaymentsDataUtil;
 import uk.gov.hmcts.payment.api.contract.CardPaymentRequest;
 import uk.gov.hmcts.payment.api.controllers.MaintenanceJobsController;
 import uk.gov.hmcts.payment.api.service.CallbackService;
+import uk.gov.hmcts.payment.api.servicebus.CallbackOutboxRelay;
 import uk.gov.hmcts.payment.api.servicebus.TopicClientProxy;
 import uk.gov.hmcts.payment.api.v1.componenttests.backdoors.ServiceResolverBackdoor;
 import uk.gov.hmcts.payment.api.v1.componenttests.backdoors.UserResolverBackdoor;
 import uk.gov.hmcts.payment.api.v1.componenttests.sugar.RestActions;
 
+import java.util.concurrent.CompletableFuture;
+
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
@@ -82,6 +85,9 @@ public class MaintenanceJobsControllerTest extends PaymentsDataUtil {
     @MockBean
     private TopicClientProxy topicClientProxy;
 
+    @Autowired
+    private CallbackOutboxRelay callbackOutboxRelay;
+
     @MockBean
     private FF4j ff4j;
 
@@ -92,12 +98,13 @@ public class MaintenanceJobsControllerTest extends PaymentsDataUtil {
     private ObjectMapper objectMapper;
 
     @Before
-    public void setUp() {
+    public void setUp() throws Exception {
 
         MockMvc mvc = webAppContextSetup(webApplicationContext).apply(springSecurity()).build();
         this.restActions = new RestActions(mvc, serviceRequestAuthorizer, userRequestAuthorizer, objectMapper);
 
         when(ff4j.check(CallbackService.FEATURE)).thenReturn(true);
+        when(topicClientProxy.publish(any(IMessage.class))).thenReturn(CompletableFuture.completedFuture(null));
 
         restActions
             .withAuthorizedService("divorce")
@@ -138,8 +145,9 @@ public class MaintenanceJobsControllerTest extends PaymentsDataUtil {
         restActions.
             patch("/jobs/card-payments-status-update", null)
             .andExpect(status().isOk());
+        callbackOutboxRelay.relayBatch();
 
-        verify(topicClientProxy, times(0)).send(any(IMessage.class));
+        verify(topicClientProxy, times(0)).publish(any(IMessage.class));
 
         // Update status in gov pay
 
@@ -154,8 +162,9 @@ public class MaintenanceJobsControllerTest extends PaymentsDataUtil {
         restActions.
             patch("/jobs/card-payments-status-update", null)
             .andExpect(status().isOk());
+        callbackOutboxRelay.relayBatch();
 
-        verify(topicClientProxy, times(1)).send(any(IMessage.class));
+        verify(topicClientProxy, times(1)).publish(any(IMessage.class));
 
 
         // Run status update again => Delegating service is not called
@@ -163,8 +172,9 @@ public class MaintenanceJobsControllerTest extends PaymentsDataUtil {
         restActions.
             patch("/jobs/card-payments-status-update", null)
             .andExpect(status().isOk());
+        callbackOutboxRelay.relayBatch();
 
-        verify(topicClientProxy, times(1)).send(any(IMessage.class));
+        verify(topicClientProxy, times(1)).publish(any(IMessage.class));
 
     }
 
@@ -1,6 +1,7 @@
 package uk.gov.hmcts.payment.api.controllers;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.ff4j.services.domain.FeatureApiBean;
 import org.joda.time.LocalDate;
@@ -484,6 +485,62 @@ public class PaymentControllerTest extends PaymentsDataUtil {
 
     }
 
+    @Test
+    @Transactional
+    public void streamPaymentsByApportion_withPageSize_shouldReturnPagesInKeysetOrder() throws Exception {
+
+        populateCardPaymentToDb("1");
+        populateCreditAccountPaymentToDb("2");
+
+        String startDate = LocalDate.now().minusDays(1).toString(DATE_FORMAT);
+        String endDate = LocalDate.now().toString(DATE_FORMAT);
+
+        restActions
+            .post("/api/ff4j/store/features/payment-search/enable")
+            .andExpect(status().isAccepted());
+
+        MvcResult firstPage = restActions
+            .get("/reconciliation-payments/stream?start_date=" + startDate + "&end_date=" + endDate + "&page_size=1")
+            .andExpect(status().isOk())
+            .andReturn();
+
+        JsonNode firstPageBody = objectMapper.readTree(firstPage.getResponse().getContentAsString());
+        assertThat(firstPageBody.get("payments").size()).isEqualTo(1);
+        assertNotNull(firstPageBody.get("continuation_token"));
+
+        MvcResult secondPage = restActions
+            .get("/reconciliation-payments/stream?start_date=" + startDate + "&end_date=" + endDate + "&page_size=1"
+                + "&continuation_token=" + firstPageBody.get("continuation_token").asText())
+            .andExpect(status().isOk())
+            .andReturn();
+
+        JsonNode secondPageBody = objectMapper.readTree(secondPage.getResponse().getContentAsString());
+        assertThat(secondPageBody.get("payments").size()).isEqualTo(1);
+        assertThat(secondPageBody.get("payments").get(0).get("payment_reference").asText())
+            .isNotEqualTo(firstPageBody.get("payments").get(0).get("payment_reference").asText());
+
+        MvcResult wholeRange = restActions
+            .get("/reconciliation-payments/stream?start_date=" + startDate + "&end_date=" + endDate)
+            .andExpect(status().isOk())
+            .andReturn();
+
+        JsonNode wholeRangeBody = objectMapper.readTree(wholeRange.getResponse().getContentAsString());
+        assertThat(wholeRangeBody.get("payments").size()).isEqualTo(2);
+        assertThat(wholeRangeBody.has("continuation_token")).isFalse();
+    }
+
+    @Test
+    public void streamPaymentsByApportion_withInvalidContinuationToken_shouldReturn400() throws Exception {
+
+        restActions
+            .post("/api/ff4j/store/features/payment-search/enable")
+            .andExpect(status().isAccepted());
+
+        restActions
+            .get("/reconciliation-payments/stream?continuation_token=not-a-token")
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void searchCreditPayments_withValidBetweenDates_shouldReturnPaymentsBasedOnServiceType() throws Exception {
@@ -20,10 +20,12 @@ import uk.gov.hmcts.payment.api.model.PaymentProvider;
 import uk.gov.hmcts.payment.api.model.PaymentProviderRepository;
 import uk.gov.hmcts.payment.api.model.PaymentStatus;
 import uk.gov.hmcts.payment.api.model.PaymentStatusRepository;
+import uk.gov.hmcts.payment.api.model.ReferenceDataRegistry;
 import uk.gov.hmcts.payment.api.v1.componenttests.backdoors.UserResolverBackdoor;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.when;
@@ -57,6 +59,9 @@ public class PaymentReferenceDataControllerTest {
     @Mock
     private PaymentChannelRepository paymentChannelRepository;
 
+    @Mock
+    private ReferenceDataRegistry referenceDataRegistry;
+
     @Test
     public void testFindAllPaymentChannels() throws Exception {
 
@@ -102,4 +107,12 @@ public class PaymentReferenceDataControllerTest {
         List<LegacySite> legacySiteMockResponse = paymentReferenceDataController.findAllLegacySites();
         assertEquals(legacySiteMock, legacySiteMockResponse);
     }
+
+    @Test
+    public void testRefreshReferenceData() throws Exception {
+
+        Map<String, Integer> counts = Collections.singletonMap(PaymentStatus.class.getName(), 8);
+        when(referenceDataRegistry.refresh()).thenReturn(counts);
+        assertEquals(counts, paymentReferenceDataController.refreshReferenceData());
+    }
 }
@@ -128,4 +128,16 @@ public class PaymentReportControllerMockTest {
 
         verifyZeroInteractions(paymentsReportFacade);
     }
+
+    @Test
+    public void allPaymentReportsWithNoInputDates() throws Exception {
+        // given
+        given(clock.getYesterdayDate()).willReturn(FROM_DATE);
+        given(clock.getTodayDate()).willReturn(TO_DATE);
+        // when & then
+        this.mockMvc.perform(post("/jobs/email-pay-reports/all"))
+            .andExpect(status().isOk());
+
+        verify(paymentsReportFacade).generateCsvsAndSendEmails(FROM_DATE, TO_DATE);
+    }
 }
@@ -11,6 +11,7 @@ import uk.gov.hmcts.payment.api.model.*;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -66,6 +67,33 @@ public class BulkScanningReportMapperTest {
         assertEquals("ccd-case-number-3",responseDtos.get(0).getCcdCaseReference());
     }
 
+    @Test
+    public void testToSurplusAndShortfallReportdtoRoundsFractionsOfAPenny(){
+        PaymentAllocation allocation = PaymentAllocation.paymentAllocationWith()
+            .paymentAllocationStatus(PaymentAllocationStatus.paymentAllocationStatusWith().name("Allocated").build()).build();
+        Payment payment = Payment.paymentWith()
+            .siteId("siteId")
+            .paymentChannel(PaymentChannel.paymentChannelWith().name("bulk scan").build())
+            .serviceType("service-type")
+            .ccdCaseNumber("ccd-case-number-4")
+            .amount(new BigDecimal("50.00"))
+            .paymentStatus(PaymentStatus.SUCCESS)
+            .dateCreated(new Date(2020,10,1))
+            .id(4).paymentAllocation(Collections.singletonList(allocation)).build();
+        PaymentFeeLink feeLink = PaymentFeeLink.paymentFeeLinkWith()
+            .fees(Collections.singletonList(PaymentFee.feeWith().calculatedAmount(new BigDecimal("100.005")).build()))
+            .payments(Collections.singletonList(payment))
+            .remissions(Collections.singletonList(Remission.remissionWith().hwfAmount(new BigDecimal("10.001")).build()))
+            .build();
+        payment.setPaymentLink(feeLink);
+
+        List<BulkScanningUnderOverPaymentDto> responseDtos = bulkScanningReportMapper.toSurplusAndShortfallReportdto(Collections.singletonList(payment));
+
+        assertEquals(1,responseDtos.size());
+        assertEquals(new BigDecimal("40.01"),responseDtos.get(0).getBalance());
+        assertEquals("Shortfall",responseDtos.get(0).getSurplusShortfall());
+    }
+
     private List<Payment> getPayments(){
         List<Payment> payments = new ArrayList<Payment>();
         List<PaymentAllocation> paymentAllocations1 = new ArrayList<PaymentAllocation>();
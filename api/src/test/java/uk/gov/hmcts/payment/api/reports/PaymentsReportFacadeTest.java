@@ -18,6 +18,7 @@ import uk.gov.hmcts.payment.api.reports.config.PbaFplPaymentReportConfig;
 import uk.gov.hmcts.payment.api.reports.config.PbaProbatePaymentReportConfig;
 import uk.gov.hmcts.payment.api.reports.config.PbaFinremPaymentReportConfig;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Map;
 
@@ -173,4 +174,22 @@ public class PaymentsReportFacadeTest {
 
     }
 
+    @Test
+    public void allReportsDelegatesEnabledConfigurationsTogether() {
+        // given
+        Date fromDate = new Date();
+        Date toDate = new Date();
+        PbaCmcPaymentReportConfig disabledPbaCmcConfig = new PbaCmcPaymentReportConfig("from", null, "subject", "message", false);
+        facade = new PaymentsReportFacade(reportService, ImmutableMap.<PaymentReportType, PaymentReportConfig>builder()
+            .put(PaymentReportType.CARD, cardPaymentReportConfig)
+            .put(PaymentReportType.PBA_CMC, disabledPbaCmcConfig)
+            .put(PaymentReportType.PBA_FPL, pbaFplPaymentReportConfig).build());
+
+        // when
+        facade.generateCsvsAndSendEmails(fromDate, toDate);
+
+        // then
+        verify(reportService).generateCsvsAndSendEmails(fromDate, toDate, Arrays.asList(cardPaymentReportConfig, pbaFplPaymentReportConfig));
+    }
+
 }
@@ -1,6 +1,7 @@
 package uk.gov.hmcts.payment.api.scheduler;
 
 import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -15,10 +16,12 @@ import uk.gov.hmcts.payment.api.reports.FeesRegisterAdapter;
 import uk.gov.hmcts.payment.api.reports.FeesRegisterClient;
 import uk.gov.hmcts.payment.api.reports.FeesService;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
@@ -85,4 +88,57 @@ public class FeesServiceTest {
         assertThat(feeVersion).isEqualTo(Optional.empty());
     }
 
+    @Test
+    public void shouldGetFeeVersionFromVersionListOrCurrentVersion()  {
+        // given
+        FeeVersionDto currentVersion = FeeVersionDto.feeVersionDtoWith().version(3).memoLine("current").build();
+        FeeVersionDto previousVersion = FeeVersionDto.feeVersionDtoWith().version(2).memoLine("previous").build();
+        Map<String, Fee2Dto> feesDtoMap = ImmutableMap.of("FEE001", fee2DtoWith().code("FEE001")
+            .currentVersion(currentVersion)
+            .feeVersionDtos(Arrays.asList(previousVersion, currentVersion))
+            .build());
+        given(feesRegisterClient.getFeesDataAsMap()).willReturn(Optional.of(feesDtoMap));
+
+        // then
+        assertThat(feesService.getFeeVersion("FEE001", "3")).isEqualTo(Optional.of(currentVersion));
+        assertThat(feesService.getFeeVersion("FEE001", "2")).isEqualTo(Optional.of(previousVersion));
+        assertThat(feesService.getFeeVersion("FEE001", "1")).isEqualTo(Optional.empty());
+        assertThat(feesService.getFeeVersion("FEE002", "3")).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    public void shouldServeLastGoodSnapshotWhileReloadingInBackground()  {
+        // given
+        AtomicLong clock = new AtomicLong(0);
+        List<Runnable> backgroundTasks = new ArrayList<>();
+        FeesRegisterAdapter refreshAheadAdapter = new FeesRegisterAdapter(feesRegisterClient, new SimpleMeterRegistry(),
+            1000, 100, backgroundTasks::add, clock::get);
+        Map<String, Fee2Dto> firstLoad = ImmutableMap.of("FEE001", fee2DtoWith().code("FEE001").build());
+        Map<String, Fee2Dto> secondLoad = ImmutableMap.of("FEE002", fee2DtoWith().code("FEE002").build());
+        given(feesRegisterClient.getFeesDataAsMap())
+            .willReturn(Optional.of(firstLoad))
+            .willThrow(new RuntimeException())
+            .willReturn(Optional.of(secondLoad));
+
+        // when first loaded on the caller's thread
+        assertThat(refreshAheadAdapter.getFeesRegisterSnapshot().getFeesDtoMap()).isEqualTo(firstLoad);
+
+        // then a stale snapshot is still served while a reload is queued
+        clock.set(1000);
+        assertThat(refreshAheadAdapter.getFeesRegisterSnapshot().getFeesDtoMap()).isEqualTo(firstLoad);
+        assertThat(refreshAheadAdapter.getFeesRegisterSnapshot().getFeesDtoMap()).isEqualTo(firstLoad);
+        assertThat(backgroundTasks).hasSize(1);
+
+        // and a failed reload keeps the last good snapshot and is only retried after the retry interval
+        backgroundTasks.remove(0).run();
+        assertThat(refreshAheadAdapter.getFeesRegisterSnapshot().getFeesDtoMap()).isEqualTo(firstLoad);
+        assertThat(backgroundTasks).isEmpty();
+
+        clock.set(1100);
+        refreshAheadAdapter.getFeesRegisterSnapshot();
+        backgroundTasks.remove(0).run();
+        assertThat(refreshAheadAdapter.getFeesRegisterSnapshot().getFeesDtoMap()).isEqualTo(secondLoad);
+        verify(feesRegisterClient, times(3)).getFeesDataAsMap();
+    }
+
 }
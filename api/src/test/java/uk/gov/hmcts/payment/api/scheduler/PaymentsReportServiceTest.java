@@ -6,22 +6,51 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.test.util.ReflectionTestUtils;
+import uk.gov.hmcts.payment.api.contract.FeeDto;
+import uk.gov.hmcts.payment.api.contract.PaymentDto;
 import uk.gov.hmcts.payment.api.dto.PaymentSearchCriteria;
 import uk.gov.hmcts.payment.api.dto.mapper.PaymentDtoMapper;
 import uk.gov.hmcts.payment.api.email.Email;
 import uk.gov.hmcts.payment.api.email.EmailService;
+import uk.gov.hmcts.payment.api.model.Payment;
 import uk.gov.hmcts.payment.api.model.PaymentFeeLink;
+import uk.gov.hmcts.payment.api.model.PaymentMethod;
 import uk.gov.hmcts.payment.api.reports.FeesService;
+import uk.gov.hmcts.payment.api.reports.PaymentsReportFile;
 import uk.gov.hmcts.payment.api.reports.PaymentsReportService;
 import uk.gov.hmcts.payment.api.reports.config.CardPaymentReportConfig;
 import uk.gov.hmcts.payment.api.reports.config.PaymentReportConfig;
+import uk.gov.hmcts.payment.api.reports.config.PbaDivorcePaymentReportConfig;
+import uk.gov.hmcts.payment.api.reports.config.PbaFplPaymentReportConfig;
 import uk.gov.hmcts.payment.api.service.DelegatingPaymentService;
 import uk.gov.hmcts.payment.api.util.PaymentMethodType;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(org.mockito.junit.MockitoJUnitRunner.class)
 public class PaymentsReportServiceTest {
@@ -38,6 +67,10 @@ public class PaymentsReportServiceTest {
     @Mock
     private PaymentDtoMapper paymentDtoMapper;
 
+    private static final Date DATE_CREATED = new Date(1555408800000L);
+
+    private static final Date DATE_UPDATED = new Date(1555412400000L);
+
     private PaymentReportConfig paymentReportConfig;
 
     @Before
@@ -62,7 +95,7 @@ public class PaymentsReportServiceTest {
         paymentsReportService.generateCsvAndSendEmail(startDate, endDate, PaymentMethodType.CARD, null, paymentReportConfig);
 
         // then
-        verify(delegatingPaymentService).search(criteria);
+        verify(delegatingPaymentService).streamByCriteria(eq(criteria), isNull(), isNull(), anyInt(), any());
     }
 
     @Test
@@ -83,7 +116,7 @@ public class PaymentsReportServiceTest {
         paymentsReportService.generateCsvAndSendEmail(startDate, endDate, PaymentMethodType.PBA, "Divorce", paymentReportConfig);
 
         // then
-        verify(delegatingPaymentService).search(criteria);
+        verify(delegatingPaymentService).streamByCriteria(eq(criteria), isNull(), isNull(), anyInt(), any());
     }
 
     @Test
@@ -105,4 +138,179 @@ public class PaymentsReportServiceTest {
         assertThat(argument.getValue().getAttachments().get(0).getFilename()).startsWith(paymentReportConfig.getCsvFileNamePrefix());
     }
 
+    @Test
+    public void shouldAttachAPlainCsvByDefault() throws Exception {
+        Payment payment = Payment.paymentWith().reference("RC-1519-9028-1909-3890").build();
+        when(paymentDtoMapper.toPaymentReportDto(payment)).thenReturn(reportDto("RC-1519-9028-1909-3890", "2018-15186162001",
+            fee("FEE0001", "1", "550.00")));
+        givenPaymentsToReport(payment);
+        List<String> csvLines = new ArrayList<>();
+        doAnswer(invocation -> {
+            Email email = invocation.getArgument(0);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(email.getAttachments().get(0).getData().getInputStream(), StandardCharsets.UTF_8))) {
+                reader.lines().forEach(csvLines::add);
+            }
+            return null;
+        }).when(emailService).sendEmail(any(Email.class));
+
+        paymentsReportService.generateCsvAndSendEmail(new Date(), new Date(), PaymentMethodType.CARD, null, paymentReportConfig);
+
+        ArgumentCaptor<Email> argument = ArgumentCaptor.forClass(Email.class);
+        verify(emailService).sendEmail(argument.capture());
+        assertThat(argument.getValue().getAttachments().get(0).getFilename()).endsWith(".csv");
+        assertThat(argument.getValue().getAttachments().get(0).getContentType()).isEqualTo("text/csv");
+        assertThat(csvLines).containsExactly(paymentReportConfig.getCsvHeader(),
+            "Divorce,2018-15186162001,RC-1519-9028-1909-3890,1234-5678-9012-3456,caseReference," + formatted(DATE_CREATED) + ","
+                + formatted(DATE_UPDATED) + ",Success,online,card,550.00,AA07,FEE0001,1,550.00,\"GOV - App for divorce/nullity of marriage or CP\",4481102159,1");
+        verify(paymentDtoMapper).toPaymentReportDto(payment);
+    }
+
+    @Test
+    public void shouldStreamPaymentsIntoZippedCsvAttachmentWhenConfigured() throws Exception {
+        ReflectionTestUtils.setField(paymentsReportService, "compression", PaymentsReportFile.Compression.ZIP);
+        Payment payment = Payment.paymentWith().reference("RC-1519-9028-1909-3890").build();
+        when(paymentDtoMapper.toPaymentReportDto(payment)).thenReturn(reportDto("RC-1519-9028-1909-3890", "2018-15186162001",
+            fee("FEE0001", "1", "550.00")));
+        givenPaymentsToReport(payment);
+        List<String> csvLines = new ArrayList<>();
+        doAnswer(invocation -> {
+            Email email = invocation.getArgument(0);
+            try (ZipInputStream zip = new ZipInputStream(email.getAttachments().get(0).getData().getInputStream())) {
+                ZipEntry entry = zip.getNextEntry();
+                assertThat(entry.getName()).startsWith(paymentReportConfig.getCsvFileNamePrefix()).endsWith(".csv");
+                BufferedReader reader = new BufferedReader(new InputStreamReader(zip, StandardCharsets.UTF_8));
+                reader.lines().forEach(csvLines::add);
+            }
+            return null;
+        }).when(emailService).sendEmail(any(Email.class));
+
+        paymentsReportService.generateCsvAndSendEmail(new Date(), new Date(), PaymentMethodType.CARD, null, paymentReportConfig);
+
+        ArgumentCaptor<Email> argument = ArgumentCaptor.forClass(Email.class);
+        verify(emailService).sendEmail(argument.capture());
+        assertThat(argument.getValue().getAttachments().get(0).getFilename()).endsWith(".zip");
+        assertThat(argument.getValue().getAttachments().get(0).getContentType()).isEqualTo("application/zip");
+        assertThat(csvLines).containsExactly(paymentReportConfig.getCsvHeader(),
+            "Divorce,2018-15186162001,RC-1519-9028-1909-3890,1234-5678-9012-3456,caseReference," + formatted(DATE_CREATED) + ","
+                + formatted(DATE_UPDATED) + ",Success,online,card,550.00,AA07,FEE0001,1,550.00,\"GOV - App for divorce/nullity of marriage or CP\",4481102159,1");
+    }
+
+    /*
+     * Rows are written for every matching payment, one per fee of its payment group, rather than only for the
+     * first payment of each group.
+     */
+    @Test
+    public void shouldWriteARowPerFeeForEveryMatchingPaymentInAGroup() throws Exception {
+        Payment firstPayment = Payment.paymentWith().reference("RC-1111-1111-1111-1111").build();
+        Payment secondPayment = Payment.paymentWith().reference("RC-2222-2222-2222-2222").build();
+        FeeDto[] groupFees = {fee("FEE0001", "1", "550.00"), fee("FEE0002", "3", "100.00")};
+        when(paymentDtoMapper.toPaymentReportDto(firstPayment)).thenReturn(reportDto("RC-1111-1111-1111-1111", "2018-15186162001", groupFees));
+        when(paymentDtoMapper.toPaymentReportDto(secondPayment)).thenReturn(reportDto("RC-2222-2222-2222-2222", "2018-15186162001", groupFees));
+        givenPaymentsToReport(firstPayment, secondPayment);
+        List<String> csvLines = new ArrayList<>();
+        doAnswer(invocation -> {
+            Email email = invocation.getArgument(0);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(email.getAttachments().get(0).getData().getInputStream(), StandardCharsets.UTF_8))) {
+                reader.lines().forEach(csvLines::add);
+            }
+            return null;
+        }).when(emailService).sendEmail(any(Email.class));
+
+        paymentsReportService.generateCsvAndSendEmail(new Date(), new Date(), PaymentMethodType.CARD, null, paymentReportConfig);
+
+        String paymentColumns = "," + formatted(DATE_CREATED) + "," + formatted(DATE_UPDATED) + ",Success,online,card,550.00,AA07,";
+        assertThat(csvLines).containsExactly(paymentReportConfig.getCsvHeader(),
+            "Divorce,2018-15186162001,RC-1111-1111-1111-1111,1234-5678-9012-3456,caseReference" + paymentColumns
+                + "FEE0001,1,550.00,\"GOV - App for divorce/nullity of marriage or CP\",4481102159,1",
+            "Divorce,2018-15186162001,RC-1111-1111-1111-1111,1234-5678-9012-3456,caseReference" + paymentColumns
+                + "FEE0002,3,100.00,\"GOV - App for divorce/nullity of marriage or CP\",4481102159,1",
+            "Divorce,2018-15186162001,RC-2222-2222-2222-2222,1234-5678-9012-3456,caseReference" + paymentColumns
+                + "FEE0001,1,550.00,\"GOV - App for divorce/nullity of marriage or CP\",4481102159,1",
+            "Divorce,2018-15186162001,RC-2222-2222-2222-2222,1234-5678-9012-3456,caseReference" + paymentColumns
+                + "FEE0002,3,100.00,\"GOV - App for divorce/nullity of marriage or CP\",4481102159,1");
+    }
+
+    @Test
+    public void shouldReadPaymentsOnceForAllReports() throws Exception {
+        Payment cardPayment = payment("RC-1111-1111-1111-1111", "card", "Divorce");
+        Payment pbaDivorcePayment = payment("RC-2222-2222-2222-2222", "payment by account", "Divorce");
+        Payment pbaProbatePayment = payment("RC-3333-3333-3333-3333", "payment by account", "Probate");
+        for (Payment payment : Arrays.asList(cardPayment, pbaDivorcePayment, pbaProbatePayment)) {
+            when(paymentDtoMapper.toPaymentReportDto(payment)).thenReturn(PaymentDto.payment2DtoWith()
+                .paymentReference(payment.getReference())
+                .fees(Collections.emptyList())
+                .build());
+        }
+        doAnswer(invocation -> {
+            Consumer<List<Payment>> chunkConsumer = invocation.getArgument(4);
+            chunkConsumer.accept(Arrays.asList(cardPayment, pbaDivorcePayment, pbaProbatePayment));
+            return null;
+        }).when(delegatingPaymentService).streamByCriteria(any(), isNull(), isNull(), anyInt(), any());
+        PaymentReportConfig pbaDivorceConfig = new PbaDivorcePaymentReportConfig("fromEmail", new String[]{"divorce"}, "emailSubject", "emailMessage", true);
+        PaymentReportConfig pbaFplConfig = new PbaFplPaymentReportConfig("fromEmail", new String[]{"fpl"}, "emailSubject", "emailMessage", true);
+        Date startDate = new Date();
+        Date endDate = new Date();
+
+        paymentsReportService.generateCsvsAndSendEmails(startDate, endDate, Arrays.asList(paymentReportConfig, pbaDivorceConfig, pbaFplConfig));
+
+        verify(delegatingPaymentService).streamByCriteria(eq(PaymentSearchCriteria.searchCriteriaWith().startDate(startDate).endDate(endDate).build()),
+            isNull(), isNull(), anyInt(), any());
+        verify(emailService, times(3)).sendEmail(any(Email.class));
+        verify(paymentDtoMapper).toPaymentReportDto(cardPayment);
+        verify(paymentDtoMapper).toPaymentReportDto(pbaDivorcePayment);
+        verify(paymentDtoMapper, never()).toPaymentReportDto(pbaProbatePayment);
+    }
+
+    private void givenPaymentsToReport(Payment... payments) {
+        doAnswer(invocation -> {
+            Consumer<List<Payment>> chunkConsumer = invocation.getArgument(4);
+            chunkConsumer.accept(Arrays.asList(payments));
+            return null;
+        }).when(delegatingPaymentService).streamByCriteria(any(), isNull(), isNull(), anyInt(), any());
+    }
+
+    private static PaymentDto reportDto(String reference, String groupReference, FeeDto... fees) {
+        return PaymentDto.payment2DtoWith()
+            .serviceName("Divorce")
+            .paymentGroupReference(groupReference)
+            .paymentReference(reference)
+            .ccdCaseNumber("1234-5678-9012-3456")
+            .caseReference("caseReference")
+            .dateCreated(DATE_CREATED)
+            .dateUpdated(DATE_UPDATED)
+            .status("Success")
+            .channel("online")
+            .method("card")
+            .amount(new BigDecimal("550.00"))
+            .siteId("AA07")
+            .fees(Arrays.asList(fees))
+            .build();
+    }
+
+    private static FeeDto fee(String code, String version, String calculatedAmount) {
+        return FeeDto.feeDtoWith()
+            .code(code)
+            .version(version)
+            .calculatedAmount(new BigDecimal(calculatedAmount))
+            .memoLine("GOV - App for divorce/nullity of marriage or CP")
+            .naturalAccountCode("4481102159")
+            .volume(1)
+            .build();
+    }
+
+    /* the csv formats dates in the default locale, so the expected values are formatted the same way */
+    private static String formatted(Date date) {
+        SimpleDateFormat sdf = new SimpleDateFormat("dd MMM yyyy HH:mm:ss zzz");
+        sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return sdf.format(date);
+    }
+
+    private static Payment payment(String reference, String paymentMethod, String serviceType) {
+        return Payment.paymentWith()
+            .reference(reference)
+            .paymentMethod(PaymentMethod.paymentMethodWith().name(paymentMethod).build())
+            .serviceType(serviceType)
+            .build();
+    }
+
 }
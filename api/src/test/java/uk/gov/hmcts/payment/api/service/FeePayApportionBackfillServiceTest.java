@@ -0,0 +1,92 @@
+package uk.gov.hmcts.payment.api.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import uk.gov.hmcts.payment.api.dto.FeePayApportionBackfillProgress;
+import uk.gov.hmcts.payment.api.model.PaymentFeeRepository;
+import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FeePayApportionBackfillServiceTest {
+
+    @Mock
+    private FeePayApportionService feePayApportionService;
+
+    @Mock
+    private PaymentFeeRepository paymentFeeRepository;
+
+    private FeePayApportionBackfillService backfillService;
+
+    @Before
+    public void setUp() {
+        backfillService = new FeePayApportionBackfillService(feePayApportionService, paymentFeeRepository);
+        ReflectionTestUtils.setField(backfillService, "pageSize", 3);
+        ReflectionTestUtils.setField(backfillService, "chunkSize", 2);
+        ReflectionTestUtils.setField(backfillService, "concurrency", 2);
+    }
+
+    @After
+    public void tearDown() {
+        backfillService.close();
+    }
+
+    @Test
+    public void walksCasesInKeysetPagesAndApportionsEveryChunk() {
+        when(paymentFeeRepository.findCcdCaseNumbersToApportion("", 3)).thenReturn(Arrays.asList("a", "b", "c"));
+        when(paymentFeeRepository.findCcdCaseNumbersToApportion("c", 3)).thenReturn(Arrays.asList("d", "e"));
+        when(feePayApportionService.processCaseApportions(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+
+        FeePayApportionBackfillService.BackfillRun run = new FeePayApportionBackfillService.BackfillRun("");
+        backfillService.backfill(run);
+
+        verify(feePayApportionService).processCaseApportions(Arrays.asList("a", "b"));
+        verify(feePayApportionService).processCaseApportions(Collections.singletonList("c"));
+        verify(feePayApportionService).processCaseApportions(Arrays.asList("d", "e"));
+        /* the last page was short, so there is no need to ask for another */
+        verify(paymentFeeRepository, times(2)).findCcdCaseNumbersToApportion(anyString(), eq(3));
+    }
+
+    @Test
+    public void failedChunkIsRetriedOneCaseAtATime() throws Exception {
+        when(paymentFeeRepository.findCcdCaseNumbersToApportion("after", 3)).thenReturn(Arrays.asList("a", "b"));
+        when(feePayApportionService.processCaseApportions(Arrays.asList("a", "b"))).thenThrow(new PaymentException("bad case"));
+        when(feePayApportionService.processCaseApportions(Collections.singletonList("a"))).thenThrow(new PaymentException("bad case"));
+        when(feePayApportionService.processCaseApportions(Collections.singletonList("b"))).thenReturn(3);
+
+        assertTrue(backfillService.start("after"));
+        FeePayApportionBackfillProgress progress = awaitFinished();
+
+        assertEquals("after", progress.getStartedAfter());
+        assertEquals("b", progress.getLastCcdCaseNumber());
+        assertEquals(2, progress.getCasesProcessed());
+        assertEquals(1, progress.getCasesFailed());
+        assertEquals(3, progress.getPaymentsApportioned());
+        assertFalse(progress.isRunning());
+    }
+
+    private FeePayApportionBackfillProgress awaitFinished() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        FeePayApportionBackfillProgress progress = backfillService.getProgress();
+        while (progress.isRunning() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            progress = backfillService.getProgress();
+        }
+        return progress;
+    }
+}
@@ -0,0 +1,130 @@
+package uk.gov.hmcts.payment.api.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import uk.gov.hmcts.payment.api.contract.PaymentDto;
+import uk.gov.hmcts.payment.api.dto.IacSupplementaryRequest;
+import uk.gov.hmcts.payment.api.dto.SupplementaryDetailsResponse;
+import uk.gov.hmcts.payment.api.dto.SupplementaryInfo;
+import uk.gov.hmcts.payment.api.dto.SupplementaryPaymentDto;
+import uk.gov.hmcts.reform.authorisation.generators.AuthTokenGenerator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IacServiceTest {
+
+    @Mock
+    private RestTemplate restTemplateIacSupplementaryInfo;
+
+    @Mock
+    private AuthTokenGenerator authTokenGenerator;
+
+    private IacServiceImpl iacService;
+
+    @Before
+    public void setUp() {
+        iacService = new IacServiceImpl(2);
+        ReflectionTestUtils.setField(iacService, "iacSupplementaryInfoUrl", "http://iac.com");
+        ReflectionTestUtils.setField(iacService, "restTemplateIacSupplementaryInfo", restTemplateIacSupplementaryInfo);
+        ReflectionTestUtils.setField(iacService, "authTokenGenerator", authTokenGenerator);
+        ReflectionTestUtils.setField(iacService, "chunkSize", 2);
+        ReflectionTestUtils.setField(iacService, "cacheTtlSeconds", 300L);
+        when(authTokenGenerator.generate()).thenReturn("s2s-token");
+    }
+
+    @After
+    public void tearDown() {
+        iacService.close();
+    }
+
+    @Test
+    public void caseNumbersAreSentInChunksAndResultsMerged() {
+        stubIac();
+
+        ResponseEntity<SupplementaryPaymentDto> response = iacService.getIacSupplementaryInfo(
+            payments("1111", "2222", "3333", "4444", "5555"), "Immigration and Asylum Appeals");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Arrays.asList("1111", "2222", "3333", "4444", "5555"), caseNumbers(response));
+        verify(restTemplateIacSupplementaryInfo, times(3)).exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class),
+            eq(SupplementaryDetailsResponse.class));
+    }
+
+    @Test
+    public void failedChunkOnlyLosesItsOwnCases() {
+        stubIac();
+
+        ResponseEntity<SupplementaryPaymentDto> response = iacService.getIacSupplementaryInfo(
+            payments("1111", "2222", "fail", "4444", "5555"), "Immigration and Asylum Appeals");
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals(Arrays.asList("1111", "2222", "5555"), caseNumbers(response));
+    }
+
+    @Test
+    public void cachedCasesAreNotRequestedAgain() {
+        stubIac();
+
+        iacService.getIacSupplementaryInfo(payments("1111", "2222"), "Immigration and Asylum Appeals");
+        ResponseEntity<SupplementaryPaymentDto> response = iacService.getIacSupplementaryInfo(
+            payments("1111", "2222", "3333"), "Immigration and Asylum Appeals");
+
+        assertEquals(Arrays.asList("1111", "2222", "3333"), caseNumbers(response));
+        verify(restTemplateIacSupplementaryInfo, times(2)).exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class),
+            eq(SupplementaryDetailsResponse.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubIac() {
+        when(restTemplateIacSupplementaryInfo.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class),
+            eq(SupplementaryDetailsResponse.class))).thenAnswer(invocation -> {
+            HttpEntity<IacSupplementaryRequest> entity = invocation.getArgument(2);
+            List<String> ccdCaseNumbers = entity.getBody().getCcdCaseNumbers();
+            if (ccdCaseNumbers.contains("fail")) {
+                throw new ResourceAccessException("Read timed out");
+            }
+            return new ResponseEntity<>(SupplementaryDetailsResponse.supplementaryDetailsResponseWith()
+                .supplementaryInfo(ccdCaseNumbers.stream()
+                    .map(ccdCaseNumber -> SupplementaryInfo.supplementaryInfoWith().ccdCaseNumber(ccdCaseNumber).build())
+                    .collect(Collectors.toList()))
+                .build(), HttpStatus.OK);
+        });
+    }
+
+    private static List<PaymentDto> payments(String... ccdCaseNumbers) {
+        return Arrays.stream(ccdCaseNumbers)
+            .map(ccdCaseNumber -> PaymentDto.payment2DtoWith()
+                .serviceName("Immigration and Asylum Appeals")
+                .ccdCaseNumber(ccdCaseNumber)
+                .build())
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> caseNumbers(ResponseEntity<SupplementaryPaymentDto> response) {
+        return response.getBody().getSupplementaryInfo().stream()
+            .map(SupplementaryInfo::getCcdCaseNumber)
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,112 @@
+package uk.gov.hmcts.payment.api.servicebus;
+
+import com.microsoft.azure.servicebus.IMessage;
+import com.microsoft.azure.servicebus.primitives.ServiceBusException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import uk.gov.hmcts.payment.api.model.CallbackOutbox;
+import uk.gov.hmcts.payment.api.model.CallbackOutboxRepository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CallbackOutboxRelayTest {
+
+    @Mock
+    private CallbackOutboxRepository callbackOutboxRepository;
+
+    @Mock
+    private TopicClientProxy topicClient;
+
+    @InjectMocks
+    private CallbackOutboxRelay callbackOutboxRelay;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(callbackOutboxRelay, "batchSize", 50);
+        ReflectionTestUtils.setField(callbackOutboxRelay, "maxAttempts", 3);
+        ReflectionTestUtils.setField(callbackOutboxRelay, "initialRetrySeconds", 5);
+        ReflectionTestUtils.setField(callbackOutboxRelay, "maxRetrySeconds", 600);
+        ReflectionTestUtils.setField(callbackOutboxRelay, "sendTimeoutSeconds", 1);
+    }
+
+    @Test
+    public void publishedEntriesAreMarkedPublishedAndSentWithTheirIdempotencyKey() throws Exception {
+        CallbackOutbox entry = entry("RC-1", "key-1", 0);
+        when(callbackOutboxRepository.findPendingToRelay(any(Date.class), anyInt())).thenReturn(Collections.singletonList(entry));
+        when(topicClient.publish(any(IMessage.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThat(callbackOutboxRelay.relayBatch()).isEqualTo(1);
+
+        ArgumentCaptor<IMessage> message = ArgumentCaptor.forClass(IMessage.class);
+        verify(topicClient).publish(message.capture());
+        assertThat(message.getValue().getMessageId()).isEqualTo("key-1");
+        assertThat(message.getValue().getProperties()).containsEntry("serviceCallbackUrl", "http://callback");
+        assertThat(entry.getStatus()).isEqualTo(CallbackOutbox.PUBLISHED);
+        assertThat(entry.getDatePublished()).isNotNull();
+    }
+
+    @Test
+    public void failedEntriesAreRetriedWithBackoffAndThenGivenUp() throws Exception {
+        CallbackOutbox retried = entry("RC-1", "key-1", 0);
+        CallbackOutbox exhausted = entry("RC-2", "key-2", 2);
+        CallbackOutbox rejected = entry("RC-3", "key-3", 0);
+        when(callbackOutboxRepository.findPendingToRelay(any(Date.class), anyInt()))
+            .thenReturn(Arrays.asList(retried, exhausted, rejected));
+
+        CompletableFuture<Void> failure = new CompletableFuture<>();
+        failure.completeExceptionally(new ServiceBusException(true, "unavailable"));
+        when(topicClient.publish(any(IMessage.class)))
+            .thenReturn(failure)
+            .thenReturn(failure)
+            .thenThrow(new ServiceBusException(false, "queue full"));
+
+        long before = System.currentTimeMillis();
+        callbackOutboxRelay.relayBatch();
+
+        assertThat(retried.getStatus()).isEqualTo(CallbackOutbox.PENDING);
+        assertThat(retried.getAttempts()).isEqualTo(1);
+        assertThat(retried.getNextAttemptAt().getTime()).isGreaterThanOrEqualTo(before + 5000);
+
+        assertThat(exhausted.getStatus()).isEqualTo(CallbackOutbox.FAILED);
+        assertThat(exhausted.getAttempts()).isEqualTo(3);
+
+        assertThat(rejected.getStatus()).isEqualTo(CallbackOutbox.PENDING);
+        assertThat(rejected.getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    public void nothingIsPublishedWhenNoEntriesAreDue() throws Exception {
+        when(callbackOutboxRepository.findPendingToRelay(any(Date.class), anyInt())).thenReturn(Collections.emptyList());
+
+        assertThat(callbackOutboxRelay.relayBatch()).isEqualTo(0);
+
+        verifyZeroInteractions(topicClient);
+    }
+
+    private CallbackOutbox entry(String paymentReference, String idempotencyKey, int attempts) {
+        return CallbackOutbox.callbackOutboxWith()
+            .paymentReference(paymentReference)
+            .serviceCallbackUrl("http://callback")
+            .payload("{}")
+            .idempotencyKey(idempotencyKey)
+            .status(CallbackOutbox.PENDING)
+            .attempts(attempts)
+            .nextAttemptAt(new Date())
+            .build();
+    }
+}
@@ -13,27 +13,39 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
-import org.testcontainers.shaded.com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.transaction.annotation.Transactional;
 import uk.gov.hmcts.payment.api.componenttests.CardPaymentComponentTest;
 import uk.gov.hmcts.payment.api.componenttests.util.PaymentsDataUtil;
+import uk.gov.hmcts.payment.api.model.CallbackOutbox;
+import uk.gov.hmcts.payment.api.model.CallbackOutboxRepository;
 import uk.gov.hmcts.payment.api.model.Payment;
 import uk.gov.hmcts.payment.api.model.PaymentFeeLink;
 import uk.gov.hmcts.payment.api.service.CallbackService;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.MOCK;
 
 @RunWith(SpringRunner.class)
 @ActiveProfiles({"local", "componenttest"})
 @SpringBootTest(webEnvironment = MOCK)
+@Transactional
 public class CallbackServiceImplTest {
 
     @Autowired
     private CallbackServiceImpl callbackService;
 
+    @Autowired
+    private CallbackOutboxRelay callbackOutboxRelay;
+
+    @Autowired
+    private CallbackOutboxRepository callbackOutboxRepository;
+
     @MockBean
     private TopicClientProxy topicClient;
 
@@ -41,7 +53,7 @@ public class CallbackServiceImplTest {
     private FF4j ff4j;
 
     @Test
-    public void testCallbackService() throws ServiceBusException, InterruptedException, JsonProcessingException {
+    public void testCallbackService() throws ServiceBusException {
 
         Payment payment = CardPaymentComponentTest.getPaymentsData().get(2);
         payment.setServiceCallbackUrl("serviceCallbackUrl");
@@ -49,9 +61,17 @@ public class CallbackServiceImplTest {
             .payments(Arrays.asList(payment))
             .fees(PaymentsDataUtil.getFeesData())
             .build();
-        doNothing().when(topicClient).send(any(IMessage.class));
+        when(topicClient.publish(any(IMessage.class))).thenReturn(CompletableFuture.completedFuture(null));
+
         callbackService.callback(paymentFeeLink, paymentFeeLink.getPayments().get(0));
-        Mockito.verify(topicClient).send(any());
+        Mockito.verify(topicClient, Mockito.never()).publish(any());
+
+        callbackOutboxRelay.relayBatch();
+        Mockito.verify(topicClient).publish(any());
+
+        List<CallbackOutbox> entries = callbackOutboxRepository.findByPaymentReferenceOrderById(payment.getReference());
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).getStatus()).isEqualTo(CallbackOutbox.PUBLISHED);
     }
 
 
@@ -1,31 +1,36 @@
 package uk.gov.hmcts.payment.api.unit;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.microsoft.azure.servicebus.IMessage;
 import org.ff4j.FF4j;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import uk.gov.hmcts.payment.api.componenttests.CardPaymentComponentTest;
 import uk.gov.hmcts.payment.api.componenttests.util.PaymentsDataUtil;
 import uk.gov.hmcts.payment.api.contract.PaymentDto;
 import uk.gov.hmcts.payment.api.dto.mapper.PaymentDtoMapper;
+import uk.gov.hmcts.payment.api.model.CallbackOutbox;
+import uk.gov.hmcts.payment.api.model.CallbackOutboxRepository;
 import uk.gov.hmcts.payment.api.model.PaymentFeeLink;
 import uk.gov.hmcts.payment.api.service.CallbackService;
 import uk.gov.hmcts.payment.api.servicebus.CallbackServiceImpl;
-import uk.gov.hmcts.payment.api.servicebus.TopicClientProxy;
+import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentException;
 
 import java.util.Arrays;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CallbackServiceImplTest {
 
     @Mock
-    private TopicClientProxy topicClient;
+    private CallbackOutboxRepository callbackOutboxRepository;
 
     @Mock
     private FF4j ff4j;
@@ -39,12 +44,12 @@ public class CallbackServiceImplTest {
 
     @Before
     public void init() {
-        callbackService = new CallbackServiceImpl(paymentDtoMapper, objectMapper, topicClient, ff4j);
+        callbackService = new CallbackServiceImpl(paymentDtoMapper, objectMapper, callbackOutboxRepository, ff4j);
         when(ff4j.check(CallbackService.FEATURE)).thenReturn(true);
     }
 
     @Test
-    public void testThatWhenCallbackUriIsProvidedServiceBusIsCalled() throws Exception {
+    public void testThatWhenCallbackUriIsProvidedCallbackIsRecordedInOutbox() throws Exception {
 
         PaymentFeeLink paymentFeeLink = PaymentFeeLink.paymentFeeLinkWith().paymentReference("00000005")
             .payments(Arrays.asList(CardPaymentComponentTest.getPaymentsData().get(2)))
@@ -55,12 +60,41 @@ public class CallbackServiceImplTest {
 
         callbackService.callback(paymentFeeLink, paymentFeeLink.getPayments().get(0));
 
-        verify((topicClient), times(1)).send(any(IMessage.class));
+        ArgumentCaptor<CallbackOutbox> captor = ArgumentCaptor.forClass(CallbackOutbox.class);
+        verify(callbackOutboxRepository, times(1)).save(captor.capture());
+
+        CallbackOutbox entry = captor.getValue();
+        assertThat(entry.getPaymentReference()).isEqualTo(paymentFeeLink.getPayments().get(0).getReference());
+        assertThat(entry.getServiceCallbackUrl()).isEqualTo(paymentFeeLink.getPayments().get(0).getServiceCallbackUrl());
+        assertThat(entry.getStatus()).isEqualTo(CallbackOutbox.PENDING);
+        assertThat(entry.getIdempotencyKey()).isNotBlank();
+        assertThat(entry.getNextAttemptAt()).isNotNull();
+
+    }
+
+    @Test
+    public void testThatCallbackThatCannotBeSerialisedFailsTheCaller() throws Exception {
+
+        PaymentFeeLink paymentFeeLink = PaymentFeeLink.paymentFeeLinkWith().paymentReference("00000005")
+            .payments(Arrays.asList(CardPaymentComponentTest.getPaymentsData().get(2)))
+            .fees(PaymentsDataUtil.getFeesData())
+            .build();
+        PaymentDto paymentDto = new PaymentDto();
+        ObjectMapper failingObjectMapper = mock(ObjectMapper.class);
+        JsonProcessingException cause = new JsonProcessingException("cannot serialise") {};
+        when(paymentDtoMapper.toResponseDto(paymentFeeLink, paymentFeeLink.getPayments().get(0))).thenReturn(paymentDto);
+        when(failingObjectMapper.writeValueAsString(paymentDto)).thenThrow(cause);
+        callbackService = new CallbackServiceImpl(paymentDtoMapper, failingObjectMapper, callbackOutboxRepository, ff4j);
+
+        assertThatThrownBy(() -> callbackService.callback(paymentFeeLink, paymentFeeLink.getPayments().get(0)))
+            .isInstanceOf(PaymentException.class)
+            .hasCause(cause);
+        verifyZeroInteractions(callbackOutboxRepository);
 
     }
 
     @Test
-    public void testThatWhenNoCallbackUrlIsProvidedBusIsNotCalled() {
+    public void testThatWhenNoCallbackUrlIsProvidedNothingIsRecorded() {
 
         PaymentFeeLink paymentFeeLink = PaymentFeeLink.paymentFeeLinkWith().paymentReference("00000005")
             .payments(Arrays.asList(CardPaymentComponentTest.getPaymentsData().get(2)))
@@ -71,7 +105,7 @@ public class CallbackServiceImplTest {
 
         callbackService.callback(paymentFeeLink, paymentFeeLink.getPayments().get(0));
 
-        verifyZeroInteractions(topicClient);
+        verifyZeroInteractions(callbackOutboxRepository);
 
     }
 
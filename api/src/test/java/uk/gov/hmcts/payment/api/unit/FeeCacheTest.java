@@ -16,6 +16,8 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.util.ResourceUtils;
 import org.springframework.web.context.WebApplicationContext;
 import uk.gov.hmcts.fees2.register.api.contract.Fee2Dto;
+import uk.gov.hmcts.payment.api.reports.FeesRegisterAdapter;
+import uk.gov.hmcts.payment.api.reports.FeesRegisterSnapshot;
 import uk.gov.hmcts.payment.api.reports.FeesService;
 import uk.gov.hmcts.payment.referencedata.model.Site;
 import uk.gov.hmcts.payment.referencedata.service.SiteService;
@@ -23,7 +25,6 @@ import uk.gov.hmcts.payment.referencedata.service.SiteServiceImpl;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -56,6 +57,9 @@ public class FeeCacheTest {
     @Autowired
     private FeesService feesService;
 
+    @Autowired
+    private FeesRegisterAdapter feesRegisterAdapter;
+
     @Autowired
     private CacheManager cacheManager;
 
@@ -65,8 +69,6 @@ public class FeeCacheTest {
     @Before
     public void setUp() {
         MockMvc mvc = webAppContextSetup(webApplicationContext).apply(springSecurity()).build();
-
-        this.cacheManager.getCache("feesDtoMap").clear();
     }
 
     /**
@@ -85,11 +87,11 @@ public class FeeCacheTest {
                 .withBody(contentsOf("fees-register-responses/allfees.json"))));
 
         // Invoke fees-register service
-        feesService.getFeesDtoMap();
+        assertThat(feesRegisterAdapter.refresh()).isTrue();
 
         // Validate cached fees
-        Cache cache = this.cacheManager.getCache("feesDtoMap");
-        Map<String, Fee2Dto> feesDtoMap = (HashMap<String, Fee2Dto>)cache.get("getFeesDtoMap").get();
+        FeesRegisterSnapshot snapshot = feesRegisterAdapter.getFeesRegisterSnapshot();
+        Map<String, Fee2Dto> feesDtoMap = feesService.getFeesDtoMap();
 
         assertThat(feesDtoMap).isNotNull();
         assertThat(feesDtoMap.size()).isEqualTo(337);
@@ -104,18 +106,27 @@ public class FeeCacheTest {
             assertThat(feeDto.getJurisdiction2Dto().getName()).isEqualTo("family court");
             assertThat(feeDto.getCurrentVersion().getNaturalAccountCode()).isEqualTo("4481102174");
             assertThat(feeDto.getCurrentVersion().getMemoLine()).isEqualTo("RECEIPT OF FEES - Family misc private");
+            assertThat(snapshot.getFeeVersion("FEE0339", feeDto.getCurrentVersion().getVersion().toString()))
+                .contains(feeDto.getCurrentVersion());
         }
     }
 
     /**
      *
      * Test cached fees when fees-register returns
-     * no fees
+     * no fees after a successful load
      *
      * */
     @Test
-    public void testCacheWithInValidFeesOrNoFees() throws Exception {
+    public void testCacheKeepsLastGoodFeesWhenFeesRegisterReturnsNoFees() throws Exception {
         // Wire-mock fees-register response
+        stubFor(get(urlPathMatching("/fees-register/fees"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody(contentsOf("fees-register-responses/allfees.json"))));
+        assertThat(feesRegisterAdapter.refresh()).isTrue();
+
         stubFor(get(urlPathMatching("/fees-register/fees"))
             .willReturn(aResponse()
                 .withStatus(200)
@@ -123,11 +134,10 @@ public class FeeCacheTest {
                 .withBody("")));
 
         // Invoke fees-register service
-        feesService.getFeesDtoMap();
+        assertThat(feesRegisterAdapter.refresh()).isFalse();
 
-        // Validate cached fees
-        Cache cache = this.cacheManager.getCache("feesDtoMap");
-        assertThat(cache.get("getFeesDtoMap")).isNull();
+        // Validate the last good fees are still served
+        assertThat(feesService.getFeesDtoMap().size()).isEqualTo(337);
     }
 
     @Test
@@ -36,18 +36,18 @@ public class SendMessageApplication {
         msg.setLabel("Service Callback Message");
         msg.setProperties(Collections.singletonMap("serviceCallbackUrl", payment.getServiceCallbackUrl()));
 
-        client.send(msg);
-        client.send(msg);
-        client.send(msg);
-        client.send(msg);
-        client.send(msg);
-        client.send(msg);
-        client.send(msg);
-        client.send(msg);
-        client.send(msg);
-        client.send(msg);
-        client.send(msg);
-        client.send(msg);
+        client.publish(msg);
+        client.publish(msg);
+        client.publish(msg);
+        client.publish(msg);
+        client.publish(msg);
+        client.publish(msg);
+        client.publish(msg);
+        client.publish(msg);
+        client.publish(msg);
+        client.publish(msg);
+        client.publish(msg);
+        client.publish(msg);
 
         client.close();
 
@@ -1,15 +1,33 @@
 package uk.gov.hmcts.payment.api.unit;
 
+import com.microsoft.azure.servicebus.IMessage;
 import com.microsoft.azure.servicebus.Message;
+import com.microsoft.azure.servicebus.ITopicClient;
+import com.microsoft.azure.servicebus.primitives.ServiceBusException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import uk.gov.hmcts.payment.api.servicebus.TopicClientProxy;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
 @RunWith(SpringRunner.class)
 @ActiveProfiles({"local", "componenttest"})
 public class TopicClientProxyTest {
@@ -27,18 +45,98 @@ public class TopicClientProxyTest {
             connectionString, topic
         );
 
-        topicClientProxy.setKeepClientAlive(true);
-
         try{
-            topicClientProxy.send(new Message("Hi!"));
+            topicClientProxy.publish(new Message("Hi!"));
         }catch(Exception e) {
 
         }
 
         topicClientProxy.close();
 
-        topicClientProxy.setKeepClientAlive(false);
+    }
+
+    @Test
+    public void testQueuedMessagesArePublishedInBatches() throws Exception {
+
+        ITopicClient client = mock(ITopicClient.class);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            batchSizes.add(((Collection<?>) invocation.getArgument(0)).size());
+            return null;
+        }).when(client).sendBatch(anyCollection());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TopicClientProxy topicClientProxy = proxyWithClient(client, 100, 10, meterRegistry);
+
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            results.add(topicClientProxy.publish(new Message("message " + i)));
+        }
+        topicClientProxy.close();
+
+        assertThat(results).allMatch(result -> result.isDone() && !result.isCompletedExceptionally());
+
+        assertThat(batchSizes.stream().mapToInt(Integer::intValue).sum()).isEqualTo(25);
+        assertThat(batchSizes).allMatch(size -> size <= 10);
+        assertThat(topicClientProxy.getQueueDepth()).isEqualTo(0);
+        assertThat(meterRegistry.get("servicebus.callback.send.latency").timer().count()).isEqualTo(batchSizes.size());
+        assertThat(meterRegistry.get("servicebus.callback.queue.latency").timer().count()).isEqualTo(25);
+    }
+
+    @Test
+    public void testSendIsRejectedWithoutBlockingWhenQueueIsFull() throws Exception {
+
+        ITopicClient client = mock(ITopicClient.class);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return null;
+        }).when(client).sendBatch(anyCollection());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TopicClientProxy topicClientProxy = proxyWithClient(client, 1, 1, meterRegistry);
+
+        topicClientProxy.publish(new Message("in flight"));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        topicClientProxy.publish(new Message("queued"));
+
+        try {
+            topicClientProxy.publish(new Message("rejected"));
+            fail("Expected the full queue to reject the message");
+        } catch (ServiceBusException e) {
+            assertThat(meterRegistry.get("servicebus.callback.rejected").counter().count()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            topicClientProxy.close();
+        }
+    }
+
+    @Test
+    public void testFailedBatchCompletesResultsExceptionally() throws Exception {
+
+        ITopicClient client = mock(ITopicClient.class);
+        doThrow(new ServiceBusException(true, "unavailable")).when(client).sendBatch(anyCollection());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TopicClientProxy topicClientProxy = proxyWithClient(client, 10, 10, meterRegistry);
+
+        CompletableFuture<Void> result = topicClientProxy.publish(new Message("message"));
+        topicClientProxy.close();
+
+        assertTrue(result.isCompletedExceptionally());
+        assertThat(meterRegistry.get("servicebus.callback.failed").counter().count()).isEqualTo(1);
+    }
 
+    private TopicClientProxy proxyWithClient(ITopicClient client, int queueCapacity, int batchSize,
+                                             SimpleMeterRegistry meterRegistry) {
+        return new TopicClientProxy(connectionString, topic, queueCapacity, batchSize, 1, meterRegistry) {
+            @Override
+            protected ITopicClient newTopicClient() {
+                return client;
+            }
+        };
     }
 
 }
@@ -8,16 +8,19 @@ import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.springframework.data.jpa.domain.Specification;
 import uk.gov.hmcts.payment.api.model.*;
+import uk.gov.hmcts.payment.api.v1.model.UserIdSupplier;
 import uk.gov.hmcts.payment.api.v1.model.exceptions.DuplicatePaymentException;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
-import java.util.Collections;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
-import static uk.gov.hmcts.payment.api.model.PaymentFeeLink.paymentFeeLinkWith;
+import static org.mockito.Mockito.*;
 
 
 @RunWith(MockitoJUnitRunner.class)
@@ -27,118 +30,119 @@ public class DuplicatePaymentValidatorTest {
 
     private DuplicatePaymentValidator validator;
     @Mock
-    private DuplicateSpecification duplicateSpecification;
+    private UserIdSupplier userIdSupplier;
     @Mock
-    private PaymentFeeLinkRepository paymentFeeLinkRepository;
-
-    @Mock
-    private Specification mockSpecification;
+    private Payment2Repository payment2Repository;
 
     @Rule
     public final ExpectedException exception = ExpectedException.none();
 
     @Before
     public void setUp() {
-        validator = new DuplicatePaymentValidator(duplicateSpecification, TIME_INTERVAL, paymentFeeLinkRepository);
+        given(userIdSupplier.get()).willReturn("userId");
+        validator = new DuplicatePaymentValidator(userIdSupplier, TIME_INTERVAL, payment2Repository);
     }
 
     @Test
-    public void shouldReturnNoErrors_whenNoMatchingPaymentsWithCriteriaSpecification() {
+    public void shouldReturnNoErrors_whenNoMatchingPaymentsWithFingerprint() {
         Payment payment = aPayment();
         PaymentFee requestFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0001").volume(1).build();
 
-        given(duplicateSpecification.getBy(payment, TIME_INTERVAL)).willReturn(mockSpecification);
-        given(paymentFeeLinkRepository.findAll(mockSpecification)).willReturn(Collections.EMPTY_LIST);
-
         // no exception expected, none thrown: passes.
         validator.checkDuplication(payment, Lists.newArrayList(requestFee));
+
+        assertThat(payment.getDuplicateFingerprint()).hasSize(64);
     }
 
     @Test
     public void shouldReturnNoErrors_whenMatchingPaymentsButWithDifferentFeeCode() {
-        Payment payment = aPayment();
         PaymentFee requestFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0001").volume(1).build();
         PaymentFee dbFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0002").volume(1).build();
-
-        PaymentFeeLink paymentFeeLink = paymentFeeLinkWith().paymentReference("RC-1519-9028-1909-3890")
-            .payments(Arrays.asList(payment))
-            .fees(Arrays.asList(dbFee))
-            .build();
-        given(duplicateSpecification.getBy(payment, TIME_INTERVAL)).willReturn(mockSpecification);
-        given(paymentFeeLinkRepository.findAll(mockSpecification)).willReturn(Lists.newArrayList(paymentFeeLink));
+        givenStoredPayment(aPayment(), dbFee);
 
         // no exception expected, none thrown: passes.
-        validator.checkDuplication(payment, Lists.newArrayList(requestFee));
+        validator.checkDuplication(aPayment(), Lists.newArrayList(requestFee));
     }
 
     @Test
     public void shouldReturnNoErrors_whenMatchingPaymentsButWithDifferentFeeVersion() {
-        Payment payment = aPayment();
         PaymentFee requestFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0001").volume(1).build();
         PaymentFee dbFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("4").code("X0001").volume(1).build();
-
-        PaymentFeeLink paymentFeeLink = paymentFeeLinkWith().paymentReference("RC-1519-9028-1909-3890")
-            .payments(Arrays.asList(payment))
-            .fees(Arrays.asList(dbFee))
-            .build();
-        given(duplicateSpecification.getBy(payment, TIME_INTERVAL)).willReturn(mockSpecification);
-        given(paymentFeeLinkRepository.findAll(mockSpecification)).willReturn(Lists.newArrayList(paymentFeeLink));
+        givenStoredPayment(aPayment(), dbFee);
 
         // no exception expected, none thrown: passes.
-        validator.checkDuplication(payment, Lists.newArrayList(requestFee));
+        validator.checkDuplication(aPayment(), Lists.newArrayList(requestFee));
     }
 
     @Test
     public void shouldReturnNoErrors_whenMatchingPaymentsButWithDifferentFeeVolume() {
-        Payment payment = aPayment();
         PaymentFee requestFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0001").volume(1).build();
         PaymentFee dbFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0001").volume(4).build();
-
-        PaymentFeeLink paymentFeeLink = paymentFeeLinkWith().paymentReference("RC-1519-9028-1909-3890")
-            .payments(Arrays.asList(payment))
-            .fees(Arrays.asList(dbFee))
-            .build();
-        given(duplicateSpecification.getBy(payment, TIME_INTERVAL)).willReturn(mockSpecification);
-        given(paymentFeeLinkRepository.findAll(mockSpecification)).willReturn(Lists.newArrayList(paymentFeeLink));
+        givenStoredPayment(aPayment(), dbFee);
 
         // no exception expected, none thrown: passes.
-        validator.checkDuplication(payment, Lists.newArrayList(requestFee));
+        validator.checkDuplication(aPayment(), Lists.newArrayList(requestFee));
     }
 
     @Test
     public void shouldReturnNoErrors_whenMatchingPaymentsButWithMultipleFees() {
-        Payment payment = aPayment();
         PaymentFee requestFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0001").volume(1).build();
         PaymentFee dbFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0001").volume(1).build();
         PaymentFee dbFee2 = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0002").volume(1).build();
+        givenStoredPayment(aPayment(), dbFee, dbFee2);
 
-        PaymentFeeLink paymentFeeLink = paymentFeeLinkWith().paymentReference("RC-1519-9028-1909-3890")
-            .payments(Arrays.asList(payment))
-            .fees(Arrays.asList(dbFee, dbFee2))
-            .build();
-        given(duplicateSpecification.getBy(payment, TIME_INTERVAL)).willReturn(mockSpecification);
-        given(paymentFeeLinkRepository.findAll(mockSpecification)).willReturn(Lists.newArrayList(paymentFeeLink));
+        // no exception expected, none thrown: passes.
+        validator.checkDuplication(aPayment(), Lists.newArrayList(requestFee));
+    }
+
+    @Test
+    public void shouldReturnNoErrors_whenMatchingPaymentsButWithDifferentAccount() {
+        PaymentFee requestFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0001").volume(1).build();
+        Payment dbPayment = aPayment();
+        dbPayment.setPbaNumber("PBA0000002");
+        givenStoredPayment(dbPayment, requestFee);
 
         // no exception expected, none thrown: passes.
-        validator.checkDuplication(payment, Lists.newArrayList(requestFee));
+        validator.checkDuplication(aPayment(), Lists.newArrayList(requestFee));
     }
 
     @Test
     public void shouldThrowException_whenMatchingPaymentsWithSameFeeDetails() {
-        Payment payment = aPayment();
         PaymentFee requestFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0001").volume(1).build();
-        PaymentFee dbFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0001").volume(1).build();
-
-        PaymentFeeLink paymentFeeLink = paymentFeeLinkWith().paymentReference("RC-1519-9028-1909-3890")
-            .payments(Arrays.asList(payment))
-            .fees(Arrays.asList(dbFee))
-            .build();
-        given(duplicateSpecification.getBy(payment, TIME_INTERVAL)).willReturn(mockSpecification);
-        given(paymentFeeLinkRepository.findAll(mockSpecification)).willReturn(Lists.newArrayList(paymentFeeLink));
+        PaymentFee dbFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.990")).version("1").code("X0001").volume(1).build();
+        givenStoredPayment(aPayment(), dbFee);
 
         //  exception expected.
         exception.expect(DuplicatePaymentException.class);
-        validator.checkDuplication(payment, Lists.newArrayList(requestFee));
+        validator.checkDuplication(aPayment(), Lists.newArrayList(requestFee));
+    }
+
+    @Test
+    public void shouldThrowException_whenMatchingPaymentsWithSameFeesInADifferentOrder() {
+        PaymentFee fee1 = PaymentFee.feeWith().calculatedAmount(new BigDecimal("5.99")).version("1").code("X0001").volume(1).build();
+        PaymentFee fee2 = PaymentFee.feeWith().calculatedAmount(new BigDecimal("6.00")).version("1").code("X0002").volume(1).build();
+        givenStoredPayment(aPayment(), fee2, fee1);
+
+        exception.expect(DuplicatePaymentException.class);
+        validator.checkDuplication(aPayment(), Lists.newArrayList(fee1, fee2));
+    }
+
+    @Test
+    public void shouldRejectARepeatOfAPaymentItHasSeenWithoutQueryingAgain() {
+        PaymentFee requestFee = PaymentFee.feeWith().calculatedAmount(new BigDecimal("11.99")).version("1").code("X0001").volume(1).build();
+
+        validator.checkDuplication(aPayment(), Lists.newArrayList(requestFee));
+        try {
+            validator.checkDuplication(aPayment(), Lists.newArrayList(requestFee));
+            throw new AssertionError("duplicate payment was accepted");
+        } catch (DuplicatePaymentException e) {
+            verify(payment2Repository, times(1)).existsByDuplicateFingerprintAndDateCreatedBetween(anyString(), any(), any());
+        }
+    }
+
+    private void givenStoredPayment(Payment dbPayment, PaymentFee... dbFees) {
+        String fingerprint = validator.fingerprint(dbPayment, Arrays.asList(dbFees));
+        lenient().when(payment2Repository.existsByDuplicateFingerprintAndDateCreatedBetween(eq(fingerprint), any(), any())).thenReturn(true);
     }
 
     private Payment aPayment() {
@@ -146,6 +150,7 @@ public class DuplicatePaymentValidatorTest {
             .amount(new BigDecimal("11.99"))
             .ccdCaseNumber("ccdCaseNumber")
             .serviceType("Probate")
+            .pbaNumber("PBA0000001")
             .paymentChannel(PaymentChannel.paymentChannelWith().name("online").build())
             .reference("RC-1519-9028-1909-3890")
             .build();
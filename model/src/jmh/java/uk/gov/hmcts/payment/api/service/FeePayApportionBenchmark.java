@@ -0,0 +1,140 @@
+package uk.gov.hmcts.payment.api.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.hmcts.payment.api.model.FeePayApportion;
+import uk.gov.hmcts.payment.api.model.Payment;
+import uk.gov.hmcts.payment.api.model.PaymentFee;
+import uk.gov.hmcts.payment.api.util.ApportionType;
+import uk.gov.hmcts.payment.api.util.Money;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Apportionment and outstanding balance of one large case, run with {@code -prof gc} (see the {@code jmh} task)
+ * to report allocation per case. The {@code legacy} benchmarks are the previous {@link BigDecimal} implementations,
+ * kept as a baseline for the {@code long} pence ones.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeePayApportionBenchmark {
+
+    @Param({"10", "1000"})
+    private int fees;
+
+    @Param({"1", "50"})
+    private int payments;
+
+    private List<PaymentFee> caseFees;
+
+    private List<Payment> casePayments;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        caseFees = new ArrayList<>(fees);
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < fees; i++) {
+            BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(100_000), 2);
+            caseFees.add(PaymentFee.feeWith().id(i).netAmount(amount).amountDue(amount).dateCreated(now).build());
+            total = total.add(amount);
+        }
+        /* the payments cover the case with a little over, so most fees are apportioned and there is a surplus */
+        BigDecimal paymentAmount = total.divide(BigDecimal.valueOf(payments), 2, BigDecimal.ROUND_UP).add(BigDecimal.ONE);
+        casePayments = new ArrayList<>(payments);
+        for (int i = 0; i < payments; i++) {
+            casePayments.add(Payment.paymentWith().id(i).amount(paymentAmount).ccdCaseNumber("1111222233334444").build());
+        }
+    }
+
+    @Benchmark
+    public List<FeePayApportion> apportion() {
+        return FeePayApportionCalculator.apportion(casePayments, caseFees);
+    }
+
+    /* the same fold as the outstanding balance in the bulk scanning surplus and shortfall report */
+    @Benchmark
+    public BigDecimal outstanding() {
+        Money outstanding = Money.ZERO;
+        for (PaymentFee fee : caseFees) {
+            outstanding = outstanding.add(Money.of(fee.getNetAmount()));
+        }
+        for (Payment payment : casePayments) {
+            outstanding = outstanding.subtract(Money.of(payment.getAmount()));
+        }
+        return outstanding.toBigDecimal();
+    }
+
+    @Benchmark
+    public BigDecimal legacyOutstanding() {
+        BigDecimal outstanding = new BigDecimal(0);
+        for (PaymentFee fee : caseFees) {
+            outstanding = outstanding.add(fee.getNetAmount());
+        }
+        for (Payment payment : casePayments) {
+            outstanding = outstanding.subtract(payment.getAmount());
+        }
+        return outstanding;
+    }
+
+    @Benchmark
+    public List<FeePayApportion> legacyApportion() {
+        BigDecimal callSurplusAmount = BigDecimal.valueOf(0);
+        boolean isSurplus = false;
+        List<FeePayApportion> feePayApportions = new ArrayList<>();
+        for (Payment payment : casePayments) {
+            BigDecimal remainingPaymentAmount = payment.getAmount();
+            for (PaymentFee fee : caseFees) {
+                if (fee.getAmountDue() != null && fee.getAmountDue().compareTo(BigDecimal.valueOf(0)) > 0) {
+                    feePayApportions.add(FeePayApportion.feePayApportionWith()
+                        .feeId(fee.getId())
+                        .paymentId(payment.getId())
+                        .feeAmount(fee.getNetAmount())
+                        .paymentAmount(payment.getAmount())
+                        .ccdCaseNumber(payment.getCcdCaseNumber())
+                        .createdBy("SYSTEM")
+                        .apportionType(ApportionType.AUTO.getName())
+                        .apportionAmount(remainingPaymentAmount.compareTo(fee.getAmountDue()) > 0 ? fee.getAmountDue() : remainingPaymentAmount)
+                        .build());
+                    if (remainingPaymentAmount.compareTo(fee.getAmountDue()) > 0) {
+                        remainingPaymentAmount = remainingPaymentAmount.subtract(fee.getAmountDue());
+                    } else {
+                        remainingPaymentAmount = BigDecimal.valueOf(0);
+                    }
+                    if (remainingPaymentAmount.compareTo(BigDecimal.valueOf(0)) <= 0) {
+                        break;
+                    }
+                }
+            }
+            if (remainingPaymentAmount.compareTo(BigDecimal.valueOf(0)) > 0) {
+                callSurplusAmount = remainingPaymentAmount;
+                isSurplus = true;
+            } else {
+                isSurplus = false;
+            }
+        }
+        if (isSurplus && !feePayApportions.isEmpty()) {
+            feePayApportions.get(feePayApportions.size() - 1).setCallSurplusAmount(callSurplusAmount);
+        }
+        return feePayApportions;
+    }
+}
@@ -0,0 +1,77 @@
+package uk.gov.hmcts.payment.api.util;
+
+import org.apache.commons.validator.routines.checkdigit.CheckDigit;
+import org.apache.commons.validator.routines.checkdigit.CheckDigitException;
+import org.apache.commons.validator.routines.checkdigit.LuhnCheckDigit;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of payment and group reference generation, run with {@code -prof gc} (see the {@code jmh} task) to
+ * report allocation per reference. {@link #legacyPaymentReference()} is the previous implementation, kept as a
+ * baseline.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReferenceGeneratorBenchmark {
+
+    private static final String PAYMENT_REF_REGEX = "(?<=\\G.{4})";
+
+    private ReferenceGenerator referenceGenerator;
+
+    /*
+     * The shared instance may only run DEFAULT_MAX_AHEAD_MILLIS ahead of the wall clock, which would cap it at
+     * 1,000 payment and 10 group references per tick; without that limit the benchmark measures the generator.
+     */
+    @Setup
+    public void setUp() {
+        referenceGenerator = new ReferenceGenerator(System::currentTimeMillis, Long.MAX_VALUE);
+        referenceGenerator.assignNode(0, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public String paymentReference() {
+        return referenceGenerator.nextPaymentReference("RC");
+    }
+
+    @Benchmark
+    public String groupReference() {
+        return referenceGenerator.nextGroupReference();
+    }
+
+    @Benchmark
+    public String legacyPaymentReference() throws CheckDigitException {
+        DateTime dateTime = new DateTime(DateTimeZone.UTC);
+        long timeInMillis = dateTime.getMillis() / 100;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(timeInMillis);
+
+        SecureRandom random = new SecureRandom();
+        sb.append(String.format("%04d", random.nextInt(10000)));
+
+        CheckDigit checkDigit = new LuhnCheckDigit();
+        sb.append(checkDigit.calculate(sb.toString()));
+
+        String[] parts = sb.toString().split(PAYMENT_REF_REGEX);
+
+        return "RC-" + String.join("-", parts);
+    }
+}
@@ -0,0 +1,21 @@
+package uk.gov.hmcts.payment.api.configuration;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when the configuration of a LaunchDarkly flag changes, after the flag has been dropped from the
+ * snapshot held by {@link LaunchDarklyFeatureToggler}.
+ */
+public class FeatureFlagChangedEvent extends ApplicationEvent {
+
+    private final String key;
+
+    public FeatureFlagChangedEvent(Object source, String key) {
+        super(source);
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
@@ -1,36 +1,117 @@
 package uk.gov.hmcts.payment.api.configuration;
 
 import com.launchdarkly.sdk.LDUser;
+import com.launchdarkly.sdk.server.interfaces.FlagChangeEvent;
 import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates LaunchDarkly flags for the payment api user. Once the client has received flag data, each flag is
+ * evaluated once and the value kept until LaunchDarkly reports that the flag has changed, at which point a
+ * {@link FeatureFlagChangedEvent} is published. Within a web request a flag keeps the value it first had, so
+ * loops over payments see the same value throughout.
+ */
 @Service
 public class LaunchDarklyFeatureToggler implements FeatureToggler {
 
     private static final Logger LOG = LoggerFactory.getLogger(LaunchDarklyFeatureToggler.class);
 
+    private static final String REQUEST_FLAGS_ATTRIBUTE = LaunchDarklyFeatureToggler.class.getName() + ".FLAGS";
+
     @Value("${launch.darkly.user.name}")
     private String userName;
 
     private LDClientInterface ldClient;
 
-    public LaunchDarklyFeatureToggler(LDClientInterface ldClient) {
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentMap<String, Boolean> snapshot = new ConcurrentHashMap<>();
+
+    private final AtomicLong flagChanges = new AtomicLong();
+
+    private volatile LDUser user;
+
+    public LaunchDarklyFeatureToggler(LDClientInterface ldClient, ApplicationEventPublisher eventPublisher) {
         this.ldClient = ldClient;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void registerFlagChangeListener() {
+        LOG.info("userName in LaunchDarklyFeatureToggler: {}", userName);
+        ldClient.getFlagTracker().addFlagChangeListener(this::onFlagChange);
     }
 
     public boolean getBooleanValue(String key, Boolean defaultValue) {
+        String snapshotKey = key + ':' + defaultValue;
 
-        LOG.info("userName in LaunchDarklyFeatureToggler: {}", userName);
-        LDUser user = new LDUser(userName);
+        Map<String, Boolean> requestFlags = requestFlags();
+        if (requestFlags != null) {
+            return requestFlags.computeIfAbsent(snapshotKey, k -> evaluate(key, defaultValue, k));
+        }
+        return evaluate(key, defaultValue, snapshotKey);
+    }
+
+    private boolean evaluate(String key, Boolean defaultValue, String snapshotKey) {
+        Boolean value = snapshot.get(snapshotKey);
+        if (value != null) {
+            return value;
+        }
+
+        long changes = flagChanges.get();
+        value = ldClient.boolVariation(key, user(), defaultValue);
+        /* until the client has flag data every flag evaluates to its default, which must not be kept */
+        if (ldClient.isInitialized()) {
+            snapshot.put(snapshotKey, value);
+            if (flagChanges.get() != changes) {
+                /* a flag changed while this one was being evaluated, so the value may already be out of date */
+                snapshot.remove(snapshotKey, value);
+            }
+        }
+        return value;
+    }
+
+    private void onFlagChange(FlagChangeEvent event) {
+        String prefix = event.getKey() + ':';
+        flagChanges.incrementAndGet();
+        snapshot.keySet().removeIf(snapshotKey -> snapshotKey.startsWith(prefix));
+        LOG.info("LaunchDarkly flag {} changed", event.getKey());
+        eventPublisher.publishEvent(new FeatureFlagChangedEvent(this, event.getKey()));
+    }
+
+    private LDUser user() {
+        LDUser current = user;
+        if (current == null) {
+            current = new LDUser(userName);
+            user = current;
+        }
+        return current;
+    }
 
-        return ldClient.boolVariation(
-            key,
-            user,
-            defaultValue
-        );
+    @SuppressWarnings("unchecked")
+    private static Map<String, Boolean> requestFlags() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Map<String, Boolean> flags = (Map<String, Boolean>) attributes.getAttribute(REQUEST_FLAGS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (flags == null) {
+            flags = new ConcurrentHashMap<>();
+            attributes.setAttribute(REQUEST_FLAGS_ATTRIBUTE, flags, RequestAttributes.SCOPE_REQUEST);
+        }
+        return flags;
     }
 
 }
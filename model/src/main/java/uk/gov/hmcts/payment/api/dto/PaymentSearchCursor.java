@@ -0,0 +1,55 @@
+package uk.gov.hmcts.payment.api.dto;
+
+import lombok.Value;
+import uk.gov.hmcts.payment.api.model.Payment;
+import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Keyset position in the (date_updated, id) ordering of payments. Serialised as an opaque
+ * continuation token so that callers can resume a reconciliation pull after the last payment they received.
+ */
+@Value
+public class PaymentSearchCursor {
+
+    private static final String SEPARATOR = ":";
+
+    Timestamp dateUpdated;
+
+    Integer id;
+
+    public static PaymentSearchCursor after(Payment payment) {
+        Date dateUpdated = payment.getDateUpdated();
+        Timestamp timestamp;
+        if (dateUpdated instanceof Timestamp) {
+            timestamp = (Timestamp) dateUpdated;
+        } else {
+            timestamp = new Timestamp(dateUpdated.getTime());
+        }
+        return new PaymentSearchCursor(timestamp, payment.getId());
+    }
+
+    public static PaymentSearchCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR);
+            if (parts.length != 3) {
+                throw new PaymentException("Invalid continuation token");
+            }
+            Timestamp timestamp = new Timestamp(Long.parseLong(parts[0]) * 1000);
+            timestamp.setNanos(Integer.parseInt(parts[1]));
+            return new PaymentSearchCursor(timestamp, Integer.valueOf(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new PaymentException("Invalid continuation token", e);
+        }
+    }
+
+    public String encode() {
+        long epochSecond = Math.floorDiv(dateUpdated.getTime(), 1000L);
+        String raw = epochSecond + SEPARATOR + dateUpdated.getNanos() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -7,8 +7,12 @@ import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentRefDataNotFoundExcept
 import java.io.Serializable;
 import java.util.Optional;
 
+/**
+ * Repository of a reference data table. {@link #findByNameOrThrow} is normally served from the preloaded
+ * {@link ReferenceDataRegistry} rather than the database (see {@link ReferenceDataRegistryAspect}).
+ */
 @NoRepositoryBean
-public interface AbstractRepository<T, ID extends Serializable> extends JpaRepository<T, ID> {
+public interface AbstractRepository<T extends NamedReferenceData, ID extends Serializable> extends JpaRepository<T, ID> {
     String getEntityName();
 
     Optional<T> findByName(String name);
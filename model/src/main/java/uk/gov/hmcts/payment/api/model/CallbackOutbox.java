@@ -0,0 +1,64 @@
+package uk.gov.hmcts.payment.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A service callback recorded in the same transaction as the payment change that caused it, waiting to be
+ * relayed to the service bus.
+ */
+@Entity
+@Data
+@Builder(builderMethodName = "callbackOutboxWith")
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "callback_outbox", indexes = {
+    @Index(name = "ix_callback_outbox_status_next_attempt", columnList = "status, next_attempt_at"),
+    @Index(name = "ix_callback_outbox_payment_reference", columnList = "payment_reference")
+})
+public class CallbackOutbox {
+
+    public static final String PENDING = "pending";
+
+    public static final String PUBLISHED = "published";
+
+    public static final String FAILED = "failed";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "payment_reference", nullable = false)
+    private String paymentReference;
+
+    @Column(name = "service_callback_url", nullable = false)
+    private String serviceCallbackUrl;
+
+    @Column(name = "payload", nullable = false)
+    private String payload;
+
+    @Column(name = "idempotency_key", nullable = false, unique = true)
+    private String idempotencyKey;
+
+    @Column(name = "status", nullable = false)
+    private String status;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Date nextAttemptAt;
+
+    @CreationTimestamp
+    @Column(name = "date_created", nullable = false)
+    private Date dateCreated;
+
+    @Column(name = "date_published")
+    private Date datePublished;
+}
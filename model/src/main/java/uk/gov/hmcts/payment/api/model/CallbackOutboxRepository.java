@@ -0,0 +1,32 @@
+package uk.gov.hmcts.payment.api.model;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.TemporalType;
+import java.util.Date;
+import java.util.List;
+
+public interface CallbackOutboxRepository extends CrudRepository<CallbackOutbox, Integer> {
+
+    /**
+     * Locks up to {@code limit} pending callbacks that are due. Only the oldest pending callback of each payment
+     * is eligible, so callbacks for a payment are always published in the order they were recorded. A callback that
+     * has failed holds back the later callbacks of its payment until an operator sets it back to pending to retry it,
+     * or to published to skip it. Rows locked by another relay are skipped.
+     */
+    @Query(value = "SELECT o.* FROM callback_outbox o"
+        + " WHERE o.status = 'pending'"
+        + " AND o.next_attempt_at <= :now"
+        + " AND NOT EXISTS (SELECT 1 FROM callback_outbox e"
+        + "   WHERE e.payment_reference = o.payment_reference AND e.status IN ('pending', 'failed') AND e.id < o.id)"
+        + " ORDER BY o.id"
+        + " LIMIT :limit"
+        + " FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<CallbackOutbox> findPendingToRelay(@Param("now") @Temporal(TemporalType.TIMESTAMP) Date now,
+                                            @Param("limit") int limit);
+
+    List<CallbackOutbox> findByPaymentReferenceOrderById(String paymentReference);
+}
@@ -2,6 +2,7 @@ package uk.gov.hmcts.payment.api.model;
 
 import org.springframework.data.repository.CrudRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +13,8 @@ public interface FeePayApportionRepository extends CrudRepository<FeePayApportio
     Optional<FeePayApportion> findByFeeId(Integer feeId);
 
     Optional<List<FeePayApportion>> findByPaymentId(Integer paymentId);
+
+    List<FeePayApportion> findByPaymentIdIn(Collection<Integer> paymentIds);
+
+    List<FeePayApportion> findByFeeIdIn(Collection<Integer> feeIds);
 }
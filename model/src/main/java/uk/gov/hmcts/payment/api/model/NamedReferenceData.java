@@ -0,0 +1,9 @@
+package uk.gov.hmcts.payment.api.model;
+
+/**
+ * A row of a small reference data table (channels, methods, providers, statuses) whose name is its id.
+ */
+public interface NamedReferenceData {
+
+    String getName();
+}
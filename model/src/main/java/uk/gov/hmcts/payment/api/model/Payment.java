@@ -21,7 +21,10 @@ import java.util.List;
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "payment", indexes = {
     @Index(name = "ix_pay_ccd_case_number", columnList = "ccd_case_number"),
-    @Index(name = "ix_pay_payment_status_provider", columnList = "payment_status, payment_provider")
+    @Index(name = "ix_pay_case_reference", columnList = "case_reference"),
+    @Index(name = "ix_pay_payment_status_provider", columnList = "payment_status, payment_provider"),
+    @Index(name = "ix_pay_date_upd_method_service", columnList = "date_updated, payment_method, service_type"),
+    @Index(name = "ix_pay_duplicate_fingerprint", columnList = "duplicate_fingerprint, date_created")
 })
 public class Payment extends Auditable<String> {
     @Id
@@ -171,6 +174,24 @@ public class Payment extends Auditable<String> {
     @Column(name = "payer_name")
     private String payerName;
 
+    /* Hash of the payer, case, account and fees, see DuplicatePaymentValidator */
+    @ToString.Exclude
+    @Column(name = "duplicate_fingerprint")
+    private String duplicateFingerprint;
+
+    /* Written only by the status update job's claim query */
+    @Column(name = "status_claimed_at", insertable = false, updatable = false)
+    private Date statusClaimedAt;
+
+    @Column(name = "status_poll_attempts", insertable = false, updatable = false)
+    private Integer statusPollAttempts;
+
+    @Column(name = "status_next_poll_at", insertable = false, updatable = false)
+    private Date statusNextPollAt;
+
+    @Column(name = "status_poll_given_up_at", insertable = false, updatable = false)
+    private Date statusPollGivenUpAt;
+
     @Override
     public int hashCode(){
         return super.hashCode();
@@ -1,9 +1,15 @@
 package uk.gov.hmcts.payment.api.model;
 
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.Temporal;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import uk.gov.hmcts.payment.api.dto.Reference;
 
+import javax.persistence.TemporalType;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -19,6 +25,77 @@ public interface Payment2Repository extends CrudRepository<Payment, Integer>, Jp
     List<Reference> findReferencesByPaymentProviderAndPaymentStatusNotInAndDateCreatedLessThan(
         PaymentProvider paymentProvider, List<PaymentStatus> paymentStatuses, Date targetTime);
 
+    /**
+     * Locks up to {@code limit} pending payments that are due a poll and that no other node holds a live claim on.
+     * Rows locked by a concurrent claim are skipped rather than waited for, so parallel callers always get disjoint
+     * slices. Payments that have used up {@code maxAttempts} polls, or that have been given up on, are never returned
+     * again.
+     * Must be called in the same transaction as {@link #claimForStatusUpdate(List, Date, int, int)}.
+     */
+    @Query(value = "SELECT p.id FROM payment p"
+        + " WHERE p.payment_provider = :paymentProvider"
+        + " AND p.payment_status NOT IN (:paymentStatuses)"
+        + " AND p.date_created < :targetTime"
+        + " AND (p.status_claimed_at IS NULL OR p.status_claimed_at <= :claimExpiry)"
+        + " AND (p.status_next_poll_at IS NULL OR p.status_next_poll_at <= :now)"
+        + " AND p.status_poll_attempts < :maxAttempts"
+        + " AND p.status_poll_given_up_at IS NULL"
+        + " ORDER BY p.date_created DESC"
+        + " LIMIT :limit"
+        + " FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Integer> findIdsToClaimForStatusUpdate(@Param("paymentProvider") String paymentProvider,
+                                                @Param("paymentStatuses") List<String> paymentStatuses,
+                                                @Param("targetTime") @Temporal(TemporalType.TIMESTAMP) Date targetTime,
+                                                @Param("claimExpiry") @Temporal(TemporalType.TIMESTAMP) Date claimExpiry,
+                                                @Param("now") @Temporal(TemporalType.TIMESTAMP) Date now,
+                                                @Param("maxAttempts") int maxAttempts,
+                                                @Param("limit") int limit);
+
+    /**
+     * Locks up to {@code limit} pending payments that have used up {@code maxAttempts} polls, whose last poll has
+     * finished and whose next one would be due, and that have not been given up on yet. Must be called in the same
+     * transaction as {@link #giveUpStatusUpdate(List, Date)}.
+     */
+    @Query(value = "SELECT p.id FROM payment p"
+        + " WHERE p.payment_provider = :paymentProvider"
+        + " AND p.payment_status NOT IN (:paymentStatuses)"
+        + " AND (p.status_claimed_at IS NULL OR p.status_claimed_at <= :claimExpiry)"
+        + " AND (p.status_next_poll_at IS NULL OR p.status_next_poll_at <= :now)"
+        + " AND p.status_poll_attempts >= :maxAttempts"
+        + " AND p.status_poll_given_up_at IS NULL"
+        + " LIMIT :limit"
+        + " FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Integer> findIdsToGiveUpStatusUpdate(@Param("paymentProvider") String paymentProvider,
+                                              @Param("paymentStatuses") List<String> paymentStatuses,
+                                              @Param("claimExpiry") @Temporal(TemporalType.TIMESTAMP) Date claimExpiry,
+                                              @Param("now") @Temporal(TemporalType.TIMESTAMP) Date now,
+                                              @Param("maxAttempts") int maxAttempts,
+                                              @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "UPDATE payment SET status_poll_given_up_at = :givenUpAt WHERE id IN (:ids)", nativeQuery = true)
+    int giveUpStatusUpdate(@Param("ids") List<Integer> ids,
+                           @Param("givenUpAt") @Temporal(TemporalType.TIMESTAMP) Date givenUpAt);
+
+    /**
+     * Stamps the claim and schedules the next poll {@code initialBackoffMinutes * 2^attempts} after it,
+     * capped at {@code maxBackoffMinutes}.
+     */
+    @Modifying
+    @Query(value = "UPDATE payment SET status_claimed_at = :claimedAt,"
+        + " status_poll_attempts = status_poll_attempts + 1,"
+        + " status_next_poll_at = :claimedAt"
+        + " + LEAST(:initialBackoffMinutes * POWER(2, status_poll_attempts), :maxBackoffMinutes) * INTERVAL '1 minute'"
+        + " WHERE id IN (:ids)", nativeQuery = true)
+    int claimForStatusUpdate(@Param("ids") List<Integer> ids,
+                             @Param("claimedAt") @Temporal(TemporalType.TIMESTAMP) Date claimedAt,
+                             @Param("initialBackoffMinutes") int initialBackoffMinutes,
+                             @Param("maxBackoffMinutes") int maxBackoffMinutes);
+
+    List<Reference> findReferencesByIdIn(Collection<Integer> ids);
+
+    boolean existsByDuplicateFingerprintAndDateCreatedBetween(String duplicateFingerprint, Date fromDate, Date toDate);
+
     Optional<List<Payment>> findAllByDateCreatedBetween(Date fromDate, Date toDate);
 
     Optional<List<Payment>> findByDocumentControlNumber(String documentControlNumber);
@@ -17,7 +17,7 @@ import javax.persistence.Table;
 @AllArgsConstructor
 @NoArgsConstructor
 @Table(name = "payment_allocation_status")
-public class PaymentAllocationStatus {
+public class PaymentAllocationStatus implements NamedReferenceData {
 
     @Id
     @Column(name = "name", nullable = false)
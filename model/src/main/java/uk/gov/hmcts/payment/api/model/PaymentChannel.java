@@ -13,7 +13,7 @@ import javax.persistence.*;
 @AllArgsConstructor
 @NoArgsConstructor
 @Table(name = "payment_channel")
-public class PaymentChannel {
+public class PaymentChannel implements NamedReferenceData {
 
     public final static PaymentChannel TELEPHONY = new PaymentChannel("telephony","Through the IVR");
 
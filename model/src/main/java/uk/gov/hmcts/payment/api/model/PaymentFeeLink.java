@@ -1,6 +1,7 @@
 package uk.gov.hmcts.payment.api.model;
 
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -34,6 +35,7 @@ public class PaymentFeeLink {
 
     @OneToMany(cascade = CascadeType.ALL)
     @JoinColumn(name = "payment_link_id", referencedColumnName = "id", nullable = false)
+    @BatchSize(size = 50)
     @ToString.Exclude
     private List<Payment> payments;
 
@@ -45,6 +47,7 @@ public class PaymentFeeLink {
 
     @OneToMany(cascade = CascadeType.ALL)
     @JoinColumn(name = "payment_link_id", referencedColumnName = "id", nullable = false)
+    @BatchSize(size = 50)
     @ToString.Exclude
     private List<Remission> remissions;
 
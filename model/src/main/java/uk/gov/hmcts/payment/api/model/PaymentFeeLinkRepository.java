@@ -1,8 +1,14 @@
 package uk.gov.hmcts.payment.api.model;
 
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface PaymentFeeLinkRepository extends CrudRepository<PaymentFeeLink, Integer>, JpaSpecificationExecutor<PaymentFeeLink> {
@@ -11,4 +17,19 @@ public interface PaymentFeeLinkRepository extends CrudRepository<PaymentFeeLink,
 
     Optional<PaymentFeeLink> findByPaymentReference(String id);
 
+    /**
+     * Ids of the payment groups with a payment, fee or remission for the case. Each branch of the union is an
+     * index lookup, and the union removes the groups that match more than one.
+     */
+    @Query(value = "SELECT payment_link_id FROM payment WHERE ccd_case_number = :ccdCaseNumber"
+        + " UNION SELECT payment_link_id FROM payment WHERE case_reference = :ccdCaseNumber"
+        + " UNION SELECT payment_link_id FROM fee WHERE ccd_case_number = :ccdCaseNumber"
+        + " UNION SELECT payment_link_id FROM remission WHERE ccd_case_number = :ccdCaseNumber", nativeQuery = true)
+    List<Integer> findIdsByCcdCaseNumber(@Param("ccdCaseNumber") String ccdCaseNumber);
+
+    /* the fees are eager, so they are fetched here rather than with a select per group */
+    @Query("SELECT DISTINCT l FROM PaymentFeeLink l LEFT JOIN FETCH l.fees WHERE l.id IN (:ids) ORDER BY l.dateUpdated")
+    @QueryHints(@QueryHint(name = "hibernate.query.passDistinctThrough", value = "false"))
+    List<PaymentFeeLink> findAllWithFeesByIdIn(@Param("ids") Collection<Integer> ids);
+
 }
@@ -1,8 +1,11 @@
 package uk.gov.hmcts.payment.api.model;
 
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,4 +19,23 @@ public interface PaymentFeeRepository extends CrudRepository<PaymentFee, Integer
 
     Optional<PaymentFee> findById(Integer id);
 
+    List<PaymentFee> findByIdIn(Collection<Integer> ids);
+
+    /**
+     * Next page, in case number order, of cases with at least one fee that has not been apportioned.
+     */
+    @Query(value = "SELECT DISTINCT f.ccd_case_number FROM fee f"
+        + " WHERE f.ccd_case_number > :after"
+        + " AND NOT EXISTS (SELECT 1 FROM fee_pay_apportion a WHERE a.fee_id = f.id)"
+        + " ORDER BY f.ccd_case_number"
+        + " LIMIT :limit", nativeQuery = true)
+    List<String> findCcdCaseNumbersToApportion(@Param("after") String after, @Param("limit") int limit);
+
+    /**
+     * Serialises fee pay apportionment of a case across instances. Takes a transaction scoped advisory lock on the
+     * case number, so it must be called inside a transaction and is held until that transaction ends.
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock(hashtext(:ccdCaseNumber))) AS case_lock", nativeQuery = true)
+    long lockCaseForApportionment(@Param("ccdCaseNumber") String ccdCaseNumber);
+
 }
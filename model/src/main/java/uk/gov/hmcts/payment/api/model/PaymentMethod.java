@@ -14,7 +14,7 @@ import javax.persistence.*;
 @AllArgsConstructor
 @NoArgsConstructor
 @Table(name = "payment_method")
-public class PaymentMethod {
+public class PaymentMethod implements NamedReferenceData {
 
     @Id
     @Column(name = "name", nullable = false)
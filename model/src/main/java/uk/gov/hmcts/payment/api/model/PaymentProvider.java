@@ -14,7 +14,7 @@ import javax.persistence.*;
 @AllArgsConstructor
 @NoArgsConstructor
 @Table(name = "payment_provider")
-public class PaymentProvider {
+public class PaymentProvider implements NamedReferenceData {
 
     public final static PaymentProvider GOV_PAY = new PaymentProvider("gov pay","Gov pay");
     public final static PaymentProvider PCI_PAL = new PaymentProvider("pci pal","PCI PAL");
@@ -14,7 +14,7 @@ import javax.persistence.*;
 @AllArgsConstructor
 @NoArgsConstructor
 @Table(name = "payment_status")
-public class PaymentStatus {
+public class PaymentStatus implements NamedReferenceData {
 
     public final static PaymentStatus CREATED = new PaymentStatus("created", "created");
     public final static PaymentStatus SUCCESS = new PaymentStatus("success", "success");
@@ -0,0 +1,16 @@
+package uk.gov.hmcts.payment.api.model;
+
+import org.hibernate.EmptyInterceptor;
+
+/**
+ * Tells Hibernate that reference data rows are never new. Payments are linked to the detached copies held by the
+ * {@link ReferenceDataRegistry}; without this, flushing a new payment would select each of them by id to find out
+ * whether it needs inserting.
+ */
+public class ReferenceDataInterceptor extends EmptyInterceptor {
+
+    @Override
+    public Boolean isTransient(Object entity) {
+        return entity instanceof NamedReferenceData ? Boolean.FALSE : null;
+    }
+}
@@ -0,0 +1,69 @@
+package uk.gov.hmcts.payment.api.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Immutable in-memory copy of the reference data tables behind every {@link AbstractRepository} (payment channels,
+ * methods, providers, statuses and allocation statuses). It is loaded at start up and replaced as a whole by
+ * {@link #refresh()}, so lookups never see a partly loaded table.
+ */
+@Component
+public class ReferenceDataRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReferenceDataRegistry.class);
+
+    private final List<AbstractRepository<?, ?>> repositories;
+
+    private volatile Map<String, Map<String, NamedReferenceData>> entitiesByType = Collections.emptyMap();
+
+    @Autowired
+    public ReferenceDataRegistry(List<AbstractRepository<?, ?>> repositories) {
+        this.repositories = repositories;
+    }
+
+    /**
+     * Reloads every reference data table and swaps the new copy in.
+     *
+     * @return the number of rows loaded, by entity name
+     */
+    @PostConstruct
+    public synchronized Map<String, Integer> refresh() {
+        Map<String, Map<String, NamedReferenceData>> loaded = new HashMap<>();
+        for (AbstractRepository<?, ?> repository : repositories) {
+            Map<String, NamedReferenceData> byName = new HashMap<>();
+            for (NamedReferenceData entity : repository.findAll()) {
+                byName.put(entity.getName(), entity);
+            }
+            loaded.put(repository.getEntityName(), Collections.unmodifiableMap(byName));
+        }
+        entitiesByType = Collections.unmodifiableMap(loaded);
+
+        Map<String, Integer> counts = new TreeMap<>();
+        loaded.forEach((entityName, byName) -> counts.put(entityName, byName.size()));
+        LOG.info("Loaded reference data {}", counts);
+        return counts;
+    }
+
+    /**
+     * Looks {@code name} up in the copy of {@code repository}'s table. Empty if it was not there when last loaded.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends NamedReferenceData> Optional<T> find(AbstractRepository<T, ?> repository, String name) {
+        Map<String, NamedReferenceData> byName = entitiesByType.get(repository.getEntityName());
+        if (byName == null || name == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable((T) byName.get(name));
+    }
+}
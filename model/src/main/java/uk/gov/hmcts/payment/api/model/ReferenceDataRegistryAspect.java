@@ -0,0 +1,33 @@
+package uk.gov.hmcts.payment.api.model;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Serves {@link AbstractRepository#findByNameOrThrow} from the {@link ReferenceDataRegistry}. Names missing from the
+ * registry (added since it was last refreshed, or invalid) still go to the database, which keeps the usual
+ * not found error.
+ */
+@Aspect
+@Component
+public class ReferenceDataRegistryAspect {
+
+    private final ReferenceDataRegistry referenceDataRegistry;
+
+    @Autowired
+    public ReferenceDataRegistryAspect(ReferenceDataRegistry referenceDataRegistry) {
+        this.referenceDataRegistry = referenceDataRegistry;
+    }
+
+    @Around("execution(* uk.gov.hmcts.payment.api.model.AbstractRepository+.findByNameOrThrow(String))"
+        + " && this(repository) && args(name)")
+    public Object findByNameOrThrow(ProceedingJoinPoint joinPoint, AbstractRepository<?, ?> repository, String name) throws Throwable {
+        Optional<? extends NamedReferenceData> loaded = referenceDataRegistry.find(repository, name);
+        return loaded.isPresent() ? loaded.get() : joinPoint.proceed();
+    }
+}
@@ -0,0 +1,34 @@
+package uk.gov.hmcts.payment.api.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.util.Date;
+
+/**
+ * A node id slot for reference generation, leased by one running application instance at a time.
+ */
+@Entity
+@Data
+@Builder(builderMethodName = "referenceNodeWith")
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "reference_node")
+public class ReferenceNode {
+
+    @Id
+    @Column(name = "node_id", nullable = false)
+    private Integer nodeId;
+
+    @Column(name = "owner")
+    private String owner;
+
+    @Column(name = "lease_expires_at", nullable = false)
+    private Date leaseExpiresAt;
+}
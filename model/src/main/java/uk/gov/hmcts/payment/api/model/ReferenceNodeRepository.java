@@ -0,0 +1,51 @@
+package uk.gov.hmcts.payment.api.model;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.TemporalType;
+import java.util.Date;
+import java.util.Optional;
+
+public interface ReferenceNodeRepository extends CrudRepository<ReferenceNode, Integer> {
+
+    /**
+     * Leases the lowest numbered node whose previous lease has expired to {@code owner}.
+     *
+     * @return 1 if a node was leased, 0 if every node is taken
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE reference_node SET owner = :owner, lease_expires_at = :expiresAt"
+        + " WHERE node_id = (SELECT n.node_id FROM reference_node n WHERE n.lease_expires_at < :now"
+        + " ORDER BY n.node_id LIMIT 1 FOR UPDATE SKIP LOCKED)", nativeQuery = true)
+    int acquire(@Param("owner") String owner,
+                @Param("now") @Temporal(TemporalType.TIMESTAMP) Date now,
+                @Param("expiresAt") @Temporal(TemporalType.TIMESTAMP) Date expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE reference_node SET lease_expires_at = :expiresAt"
+        + " WHERE node_id = :nodeId AND owner = :owner", nativeQuery = true)
+    int renew(@Param("nodeId") int nodeId,
+              @Param("owner") String owner,
+              @Param("expiresAt") @Temporal(TemporalType.TIMESTAMP) Date expiresAt);
+
+    /**
+     * Gives the node up. It only becomes free again at {@code availableFrom}, once any reference the owner may have
+     * issued ahead of the wall clock is in the past.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE reference_node SET owner = NULL, lease_expires_at = :availableFrom"
+        + " WHERE node_id = :nodeId AND owner = :owner", nativeQuery = true)
+    int release(@Param("nodeId") int nodeId,
+                @Param("owner") String owner,
+                @Param("availableFrom") @Temporal(TemporalType.TIMESTAMP) Date availableFrom);
+
+    Optional<ReferenceNode> findByOwner(String owner);
+}
@@ -2,4 +2,10 @@ package uk.gov.hmcts.payment.api.service;
 
 public interface AccountService<T, I> {
     T retrieve(I id);
+
+    /**
+     * Drops anything remembered about the account, so that the next {@link #retrieve} sees its current balance.
+     */
+    default void invalidate(I id) {
+    }
 }
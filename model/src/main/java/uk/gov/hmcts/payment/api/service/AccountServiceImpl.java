@@ -11,17 +11,35 @@ import uk.gov.hmcts.payment.api.dto.AccountDto;
 import uk.gov.hmcts.payment.api.util.AccountStatus;
 
 import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Looks PBA accounts up in Liberata. Each account is remembered for a short time, and concurrent lookups of the
+ * same account share one call to Liberata. Failed lookups are not remembered.
+ */
 @Service
 @Profile("!liberataMock")
 public class AccountServiceImpl implements AccountService<AccountDto, String> {
 
+    private static final long DEFAULT_CACHE_TTL_SECONDS = 10;
+
+    private static final int MAX_CACHED_ACCOUNTS = 1000;
+
     @Autowired
     private OAuth2RestOperations restTemplate;
 
     @Value("${liberata.api.account.url}")
     private String baseUrl;
 
+    @Value("${liberata.api.account.cache.ttl-seconds:10}")
+    private long cacheTtlSeconds = DEFAULT_CACHE_TTL_SECONDS;
+
+    private final ConcurrentMap<String, CompletableFuture<CachedAccount>> accounts = new ConcurrentHashMap<>();
+
     @Override
      @HystrixCommand(commandKey = "retrievePbaAccount", commandProperties = {
         @HystrixProperty(name = "execution.timeout.enabled", value = "false")
@@ -36,6 +54,86 @@ public class AccountServiceImpl implements AccountService<AccountDto, String> {
                 .status(AccountStatus.ACTIVE)
                 .build();
         }
-        return restTemplate.getForObject(baseUrl + "/" + pbaCode, AccountDto.class);
+
+        while (true) {
+            CompletableFuture<CachedAccount> existing = accounts.get(pbaCode);
+            if (existing != null) {
+                if (!existing.isDone()) {
+                    /* another request is already asking Liberata about this account */
+                    return await(existing).account;
+                }
+                CachedAccount cached = completedValue(existing);
+                if (cached != null && !cached.isExpired(System.nanoTime())) {
+                    return cached.account;
+                }
+                accounts.remove(pbaCode, existing);
+                continue;
+            }
+
+            CompletableFuture<CachedAccount> lookup = new CompletableFuture<>();
+            if (accounts.putIfAbsent(pbaCode, lookup) != null) {
+                continue;
+            }
+            evictExpiredIfFull();
+            try {
+                AccountDto account = restTemplate.getForObject(baseUrl + "/" + pbaCode, AccountDto.class);
+                lookup.complete(new CachedAccount(account, System.nanoTime() + TimeUnit.SECONDS.toNanos(cacheTtlSeconds)));
+                return account;
+            } catch (RuntimeException e) {
+                accounts.remove(pbaCode, lookup);
+                lookup.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void invalidate(String pbaCode) {
+        CompletableFuture<CachedAccount> existing = accounts.get(pbaCode);
+        /* a lookup still in flight may have read the balance before the payment, so it is not reused either */
+        if (existing != null) {
+            accounts.remove(pbaCode, existing);
+        }
+    }
+
+    private static CachedAccount await(CompletableFuture<CachedAccount> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static CachedAccount completedValue(CompletableFuture<CachedAccount> lookup) {
+        return lookup.isDone() && !lookup.isCompletedExceptionally() ? lookup.join() : null;
+    }
+
+    private void evictExpiredIfFull() {
+        if (accounts.size() > MAX_CACHED_ACCOUNTS) {
+            long now = System.nanoTime();
+            accounts.values().removeIf(lookup -> {
+                CachedAccount cached = completedValue(lookup);
+                return cached != null && cached.isExpired(now);
+            });
+        }
+    }
+
+    private static final class CachedAccount {
+
+        private final AccountDto account;
+
+        private final long expiresAt;
+
+        private CachedAccount(AccountDto account, long expiresAt) {
+            this.account = account;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
     }
 }
@@ -3,10 +3,12 @@ package uk.gov.hmcts.payment.api.service;
 import org.apache.commons.validator.routines.checkdigit.CheckDigitException;
 import org.apache.http.MethodNotSupportedException;
 import uk.gov.hmcts.payment.api.dto.PaymentSearchCriteria;
+import uk.gov.hmcts.payment.api.dto.PaymentSearchCursor;
 import uk.gov.hmcts.payment.api.dto.PaymentServiceRequest;
 import uk.gov.hmcts.payment.api.model.Payment;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface DelegatingPaymentService<T, ID> {
 
@@ -28,4 +30,9 @@ public interface DelegatingPaymentService<T, ID> {
 
     List<Payment> searchByCriteria(PaymentSearchCriteria searchCriteria);
 
+    default void streamByCriteria(PaymentSearchCriteria searchCriteria, PaymentSearchCursor after, Integer limit,
+                                  int chunkSize, Consumer<List<Payment>> chunkConsumer) {
+        throw new UnsupportedOperationException();
+    }
+
 }
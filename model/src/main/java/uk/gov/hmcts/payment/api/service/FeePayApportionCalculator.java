@@ -0,0 +1,162 @@
+package uk.gov.hmcts.payment.api.service;
+
+import lombok.Value;
+import uk.gov.hmcts.payment.api.model.FeePayApportion;
+import uk.gov.hmcts.payment.api.model.Payment;
+import uk.gov.hmcts.payment.api.model.PaymentFee;
+import uk.gov.hmcts.payment.api.util.ApportionType;
+import uk.gov.hmcts.payment.api.util.Money;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Works out fee apportionments for a single case in memory. Every method only reads its arguments and returns
+ * the result, so one calculation never sees the state of another and the calculator is safe to share between threads.
+ * Amounts are converted to {@link Money} on the way in and back to {@link BigDecimal} on the way out.
+ */
+public final class FeePayApportionCalculator {
+
+    private FeePayApportionCalculator() {
+    }
+
+    /**
+     * Allocates each payment to the fees in the order given. Any amount left over after the last payment is
+     * recorded as call surplus on the last apportion.
+     *
+     * @return the new apportions, which are not yet persisted
+     */
+    public static List<FeePayApportion> apportion(List<Payment> payments, List<PaymentFee> fees) {
+        List<Payment> paymentsToBeApportioned = getPaymentsToBeApportioned(payments);
+        List<PaymentFee> feesToBeApportioned = getFeesToBeApportioned(fees);
+        List<FeePayApportion> feePayApportions = new ArrayList<>();
+        if (paymentsToBeApportioned.isEmpty() || feesToBeApportioned.isEmpty()) {
+            return feePayApportions;
+        }
+
+        Money[] amountsDue = new Money[feesToBeApportioned.size()];
+        for (int i = 0; i < amountsDue.length; i++) {
+            BigDecimal amountDue = feesToBeApportioned.get(i).getAmountDue();
+            amountsDue[i] = amountDue != null ? Money.of(amountDue) : null;
+        }
+
+        Money callSurplusAmount = Money.ZERO;
+        boolean surplus = false;
+        for (Payment payment : paymentsToBeApportioned) {
+            Money remainingPaymentAmount = Money.of(payment.getAmount());
+
+            for (int i = 0; i < amountsDue.length; i++) {
+                Money amountDue = amountsDue[i];
+                if (amountDue != null && amountDue.isPositive()) {
+                    boolean feeCovered = remainingPaymentAmount.compareTo(amountDue) > 0;
+                    feePayApportions.add(applyFeePayApportion(feesToBeApportioned.get(i), payment,
+                        feeCovered ? amountDue : remainingPaymentAmount));
+
+                    if (feeCovered) {
+                        remainingPaymentAmount = remainingPaymentAmount.subtract(amountDue);
+                    } else {
+                        remainingPaymentAmount = Money.ZERO;
+                        break;
+                    }
+                }
+            }
+
+            surplus = remainingPaymentAmount.isPositive();
+            if (surplus) {
+                callSurplusAmount = remainingPaymentAmount;
+            }
+        }
+
+        if (surplus && !feePayApportions.isEmpty()) {
+            feePayApportions.get(feePayApportions.size() - 1).setCallSurplusAmount(callSurplusAmount.toBigDecimal());
+        }
+        return feePayApportions;
+    }
+
+    /**
+     * Works out the amount due on each fee once the payment's apportions are taken off it. For telephony and online
+     * payments an overpaid fee moves the overpayment into the apportion's call surplus.
+     *
+     * @param amountDueByFeeId the current amount due of every fee the apportions refer to
+     * @return one settlement per apportion, in the same order
+     */
+    public static List<FeeSettlement> settle(Payment payment, List<FeePayApportion> apportions,
+                                             Map<Integer, BigDecimal> amountDueByFeeId) {
+        boolean surplusOnOverpayment = isTelephonyOrOnline(payment);
+        Map<Integer, Money> amountDue = new HashMap<>();
+        amountDueByFeeId.forEach((feeId, amount) -> amountDue.put(feeId, Money.of(amount)));
+        List<FeeSettlement> settlements = new ArrayList<>(apportions.size());
+
+        for (FeePayApportion apportion : apportions) {
+            Money callSurplusAmount = apportion.getCallSurplusAmount() != null ? Money.of(apportion.getCallSurplusAmount()) : Money.ZERO;
+            Money feeAmountDue = amountDue.get(apportion.getFeeId())
+                .subtract(Money.of(apportion.getApportionAmount()).add(callSurplusAmount));
+            amountDue.put(apportion.getFeeId(), feeAmountDue);
+
+            if (surplusOnOverpayment && feeAmountDue.isNegative()) {
+                callSurplusAmount = callSurplusAmount.subtract(feeAmountDue);
+            }
+            settlements.add(new FeeSettlement(apportion, feeAmountDue.toBigDecimal(), callSurplusAmount.toBigDecimal()));
+        }
+        return settlements;
+    }
+
+    private static FeePayApportion applyFeePayApportion(PaymentFee fee, Payment payment, Money apportionAmount) {
+        return FeePayApportion.feePayApportionWith()
+            .feeId(fee.getId())
+            .paymentId(payment.getId())
+            .paymentLink(payment.getPaymentLink())
+            .feeAmount(fee.getNetAmount())
+            .paymentAmount(payment.getAmount())
+            .ccdCaseNumber(payment.getCcdCaseNumber())
+            .createdBy("SYSTEM")
+            .apportionType(ApportionType.AUTO.getName())
+            .dateCreated(payment.getDateCreated())
+            .apportionAmount(apportionAmount.toBigDecimal())
+            .build();
+    }
+
+    private static boolean isTelephonyOrOnline(Payment payment) {
+        return payment.getPaymentChannel() != null && payment.getPaymentChannel().getName() != null &&
+            (payment.getPaymentChannel().getName().equalsIgnoreCase("telephony") ||
+                payment.getPaymentChannel().getName().equalsIgnoreCase("online"));
+    }
+
+    private static List<Payment> getPaymentsToBeApportioned(List<Payment> payments) {
+        return payments.stream()
+            .filter(payment -> payment.getAmount() != null
+                && payment.getAmount().signum() > 0)
+            .collect(Collectors.toList());
+    }
+
+    private static List<PaymentFee> getFeesToBeApportioned(List<PaymentFee> fees) {
+        return fees.stream()
+            .filter(fee -> (fee.getDateCreated() != null)
+                && fee.getNetAmount() != null
+                && fee.getNetAmount().signum() > 0)
+            .collect(Collectors.toList());
+    }
+
+    @Value
+    public static class FeeSettlement {
+
+        FeePayApportion apportion;
+
+        BigDecimal amountDue;
+
+        BigDecimal callSurplusAmount;
+
+        public Integer getFeeId() {
+            return apportion.getFeeId();
+        }
+
+        public boolean isCallSurplusChanged() {
+            return apportion.getCallSurplusAmount() == null
+                || apportion.getCallSurplusAmount().compareTo(callSurplusAmount) != 0;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package uk.gov.hmcts.payment.api.service;
 import uk.gov.hmcts.payment.api.dto.FeePayApportionCCDCase;
 import uk.gov.hmcts.payment.api.model.Payment;
 
+import java.util.List;
+
 public interface FeePayApportionService<T, ID> {
 
     FeePayApportionCCDCase processFeePayApportion(FeePayApportionCCDCase feePayApportionCCDCase);
@@ -11,4 +13,12 @@ public interface FeePayApportionService<T, ID> {
 
     void updateFeeAmountDue(Payment payment);
 
+    /**
+     * Apportions the successful payments of each case that have not been apportioned yet, in the order they were
+     * made, and takes them off the fees' amount due. Runs in a single transaction.
+     *
+     * @return the number of payments apportioned
+     */
+    int processCaseApportions(List<String> ccdCaseNumbers);
+
 }
@@ -4,17 +4,26 @@ import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 import uk.gov.hmcts.payment.api.dto.FeePayApportionCCDCase;
 import uk.gov.hmcts.payment.api.model.*;
-import uk.gov.hmcts.payment.api.util.ApportionType;
 import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentException;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-
-
+import java.util.stream.Stream;
+
+/**
+ * Apportions payments to the fees of a case. The bean holds no per-call state: allocations are worked out by
+ * {@link FeePayApportionCalculator} and only the repositories are shared between concurrent calls.
+ *
+ * <p>Every entry point first takes {@link PaymentFeeRepository#lockCaseForApportionment(String)} for the case, so
+ * the back-fill and payments arriving on the same case are apportioned one after the other. The lock is held until
+ * the caller's transaction ends.
+ */
 @Service
 public class FeePayApportionServiceImpl implements FeePayApportionService {
 
@@ -28,8 +37,6 @@ public class FeePayApportionServiceImpl implements FeePayApportionService {
 
     private final PaymentFeeRepository paymentFeeRepository;
 
-    private Boolean isSurplus = false;
-
     public FeePayApportionServiceImpl(PaymentFeeLinkRepository paymentFeeLinkRepository,
                                       PaymentStatusRepository paymentStatusRepository,
                                       FeePayApportionRepository feePayApportionRepository,
@@ -43,38 +50,104 @@ public class FeePayApportionServiceImpl implements FeePayApportionService {
     @Override
     public void updateFeeAmountDue(Payment payment) {
         try {
+            lockCase(payment.getCcdCaseNumber());
             Optional<List<FeePayApportion>> apportions = feePayApportionRepository.findByPaymentId(payment.getId());
-            if(apportions.isPresent()) {
-                apportions.get().stream()
-                    .forEach(feePayApportion -> {
-                        PaymentFee fee = paymentFeeRepository.findById(feePayApportion.getFeeId()).get();
-                        if(feePayApportion.getCallSurplusAmount() == null) {
-                            feePayApportion.setCallSurplusAmount(BigDecimal.valueOf(0));
-                        }
-                        fee.setAmountDue(fee.getAmountDue().subtract(feePayApportion.getApportionAmount()
-                            .add(feePayApportion.getCallSurplusAmount())));
-
-                        if(payment.getPaymentChannel() != null && payment.getPaymentChannel().getName() != null &&
-                            (payment.getPaymentChannel().getName().equalsIgnoreCase("telephony") ||
-                                payment.getPaymentChannel().getName().equalsIgnoreCase("online"))) {
-                            if(fee.getAmountDue() != null && fee.getAmountDue().compareTo(BigDecimal.valueOf(0)) < 0) {
-                                feePayApportion.setCallSurplusAmount(feePayApportion.getCallSurplusAmount().subtract(fee.getAmountDue()));
-                                feePayApportionRepository.save(feePayApportion);
-                            }
-                        }
-
-                        paymentFeeRepository.save(fee);
-                        LOG.info("Updated FeeId " + fee.getId() + " as PaymentId " + payment.getId() + " Status Changed to " + payment.getPaymentStatus().getName());
-                    });
+            if (apportions.isPresent() && !apportions.get().isEmpty()) {
+                Set<Integer> feeIds = apportions.get().stream()
+                    .map(FeePayApportion::getFeeId)
+                    .collect(Collectors.toSet());
+                Map<Integer, PaymentFee> fees = paymentFeeRepository.findByIdIn(feeIds).stream()
+                    .collect(Collectors.toMap(PaymentFee::getId, Function.identity()));
+                List<FeePayApportion> changedApportions = applySettlements(payment, apportions.get(), fees);
+
+                // saved together so that the updates go out as JDBC batches rather than one round trip per row
+                feePayApportionRepository.saveAll(changedApportions);
+                paymentFeeRepository.saveAll(fees.values());
+                LOG.info("Updated FeeIds {} as PaymentId {} Status Changed to {}", fees.keySet(), payment.getId(), payment.getPaymentStatus().getName());
             }
         } catch (Exception ex) {
             throw new PaymentException("Payment Auto-Apportionment - update Fee AmountDue Failed", ex);
         }
     }
 
+    @Override
+    @Transactional
+    public int processCaseApportions(List<String> ccdCaseNumbers) {
+        int apportioned = 0;
+        for (String ccdCaseNumber : ccdCaseNumbers) {
+            apportioned += processCaseApportion(ccdCaseNumber);
+        }
+        return apportioned;
+    }
+
+    private int processCaseApportion(String ccdCaseNumber) {
+        try {
+            lockCase(ccdCaseNumber);
+            List<PaymentFee> caseFees = paymentFeeRepository.findByCcdCaseNumber(ccdCaseNumber).orElse(Collections.emptyList());
+            List<PaymentFee> fees = caseFees.stream()
+                .filter(fee -> fee.getDateCreated() != null)
+                .sorted(Comparator.comparing(PaymentFee::getDateCreated))
+                .collect(Collectors.toList());
+            List<Payment> payments = fees.stream()
+                .map(PaymentFee::getPaymentLink)
+                .filter(Objects::nonNull)
+                .distinct()
+                .flatMap(paymentFeeLink -> paymentFeeLink.getPayments() != null ? paymentFeeLink.getPayments().stream() : Stream.empty())
+                .filter(payment -> payment.getDateCreated() != null && payment.getPaymentStatus() != null
+                    && "success".equalsIgnoreCase(payment.getPaymentStatus().getName()))
+                .sorted(Comparator.comparing(Payment::getDateCreated))
+                .collect(Collectors.toList());
+            if (payments.isEmpty()) {
+                return 0;
+            }
+
+            /* a fee may already be part apportioned even though its amount due was never set, so whatever is
+               already apportioned to it comes off its net amount before anything more is allocated */
+            List<FeePayApportion> existingApportions = feePayApportionRepository.findByFeeIdIn(caseFees.stream()
+                .map(PaymentFee::getId)
+                .collect(Collectors.toList()));
+            Set<Integer> alreadyApportioned = existingApportions.stream()
+                .map(FeePayApportion::getPaymentId)
+                .collect(Collectors.toSet());
+            Map<Integer, BigDecimal> apportionedByFeeId = existingApportions.stream()
+                .filter(apportion -> apportion.getApportionAmount() != null)
+                .collect(Collectors.groupingBy(FeePayApportion::getFeeId,
+                    Collectors.reducing(BigDecimal.ZERO, FeePayApportion::getApportionAmount, BigDecimal::add)));
+            fees.forEach(fee -> initialiseAmountDue(fee, fee.getPaymentLink() != null ? fee.getPaymentLink().getRemissions() : null,
+                apportionedByFeeId.getOrDefault(fee.getId(), BigDecimal.ZERO)));
+            Map<Integer, PaymentFee> feesById = fees.stream()
+                .collect(Collectors.toMap(PaymentFee::getId, Function.identity()));
+
+            /* Payments are taken one at a time, as they would have been when they arrived, so each one sees the
+               amount due left by the payments before it */
+            int apportioned = 0;
+            for (Payment payment : payments) {
+                if (alreadyApportioned.contains(payment.getId())) {
+                    continue;
+                }
+                List<FeePayApportion> feePayApportions = FeePayApportionCalculator.apportion(Collections.singletonList(payment), fees);
+                if (feePayApportions.isEmpty()) {
+                    continue;
+                }
+                PaymentFeeLink paymentFeeLink = payment.getPaymentLink();
+                if (paymentFeeLink.getApportions() == null) {
+                    paymentFeeLink.setApportions(new ArrayList<>());
+                }
+                paymentFeeLink.getApportions().addAll(feePayApportions);
+                paymentFeeLinkRepository.save(paymentFeeLink);
+                applySettlements(payment, feePayApportions, feesById);
+                apportioned++;
+            }
+            return apportioned;
+        } catch (Exception ex) {
+            throw new PaymentException("Payment Auto-Apportionment failed for case " + ccdCaseNumber, ex);
+        }
+    }
+
     @Override
     public void processApportion(Payment payment) {
         try {
+            lockCase(payment.getCcdCaseNumber());
             Optional<List<PaymentFee>> savedFees = paymentFeeRepository.findByCcdCaseNumber(payment.getCcdCaseNumber());
             if (savedFees.isPresent()) {
 
@@ -83,15 +156,7 @@ public class FeePayApportionServiceImpl implements FeePayApportionService {
                     .filter(fee -> fee.getDateCreated() != null)
                     .sorted(Comparator.comparing(PaymentFee::getDateCreated))
                     .collect(Collectors.toList());
-                sortedFees.stream().forEach(fee -> {
-                    fee.setNetAmount(fee.getNetAmount() != null
-                        ? fee.getNetAmount()
-                        : payment.getPaymentLink() != null ? getFeeCalculatedNetAmount(fee, payment.getPaymentLink().getRemissions())
-                        : getFeeCalculatedNetAmount(fee, null));
-                    if (fee.getAmountDue() == null) {
-                        fee.setAmountDue(fee.getNetAmount());
-                    }
-                });
+                sortedFees.forEach(fee -> initialiseAmountDue(fee, payment.getPaymentLink() != null ? payment.getPaymentLink().getRemissions() : null));
                 this.processFeePayApportion(FeePayApportionCCDCase.feePayApportionCCDCaseWith()
                     .ccdCaseNo(payment.getCcdCaseNumber())
                     .feePayGroups(Collections.singletonList(payment.getPaymentLink()))
@@ -106,57 +171,12 @@ public class FeePayApportionServiceImpl implements FeePayApportionService {
 
     @Override
     public FeePayApportionCCDCase processFeePayApportion(FeePayApportionCCDCase feePayApportionCCDCase) {
-
         try {
-            BigDecimal callSurplusAmount = BigDecimal.valueOf(0);
-            BigDecimal remainingPaymentAmount;
-
-            List<Payment> paymentsToBeApportioned = getPaymentsToBeApportioned(feePayApportionCCDCase.getPayments());
-            List<PaymentFee> feesToBeApportioned = getFeesToBeApportioned(feePayApportionCCDCase.getFees());
-
-            if (!paymentsToBeApportioned.isEmpty() && !feesToBeApportioned.isEmpty()) {
-                List<FeePayApportion> feePayApportions = new ArrayList<>();
-
-                for (Payment payment : paymentsToBeApportioned) {
-                    remainingPaymentAmount = payment.getAmount();
-
-                    for (PaymentFee fee : feesToBeApportioned) {
-                        if (fee.getAmountDue() != null && fee.getAmountDue().compareTo(BigDecimal.valueOf(0)) > 0) {
-
-                            FeePayApportion feePayApportion = applyFeePayApportion(fee, payment, remainingPaymentAmount);
-                            feePayApportions.add(feePayApportion);
-
-                            if (remainingPaymentAmount.compareTo(fee.getAmountDue()) > 0) {
-                                remainingPaymentAmount = remainingPaymentAmount.subtract(fee.getAmountDue());
-                            }else {
-                                remainingPaymentAmount = BigDecimal.valueOf(0);
-                            }
-
-                            if (remainingPaymentAmount.compareTo(BigDecimal.valueOf(0)) > 0) {
-                                continue;
-                            } else {
-                                break;
-                            }
-                        }
-                    }
-                    // End Fee Loop
-                    if (remainingPaymentAmount.compareTo(BigDecimal.valueOf(0)) > 0) {
-                        callSurplusAmount = remainingPaymentAmount;
-                        isSurplus = true;
-                    } else {
-                        isSurplus = false;
-                    }
-                }
-                // End Payment Loop
-                if (feePayApportions != null && !feePayApportions.isEmpty()) {
-                    if (isSurplus) {
-                        findSurplusFee(feePayApportions, callSurplusAmount, feePayApportionCCDCase.getFees());
-                    }
-                    feePayApportionCCDCase.getFeePayGroups().stream()
-                        .forEach(paymentFeeLink -> {
-                            paymentFeeLink.setApportions(feePayApportions);
-                        });
-                }
+            List<FeePayApportion> feePayApportions = FeePayApportionCalculator.apportion(
+                feePayApportionCCDCase.getPayments(), feePayApportionCCDCase.getFees());
+            if (!feePayApportions.isEmpty()) {
+                feePayApportionCCDCase.getFeePayGroups()
+                    .forEach(paymentFeeLink -> paymentFeeLink.setApportions(feePayApportions));
             }
             return feePayApportionCCDCase;
         } catch (Exception ex) {
@@ -164,28 +184,44 @@ public class FeePayApportionServiceImpl implements FeePayApportionService {
         }
     }
 
-    private FeePayApportion applyFeePayApportion(PaymentFee fee, Payment payment, BigDecimal remainingPaymentAmount) {
-
-        // Create a new Record in FeePayApportion Table
-        FeePayApportion feePayApportion = FeePayApportion.feePayApportionWith()
-            .feeId(fee.getId())
-            .paymentId(payment.getId())
-            .paymentLink(payment.getPaymentLink())
-            .feeAmount(fee.getNetAmount())
-            .paymentAmount(payment.getAmount())
-            .ccdCaseNumber(payment.getCcdCaseNumber())
-            .createdBy("SYSTEM")
-            .apportionType(ApportionType.AUTO.getName())
-            .dateCreated(payment.getDateCreated())
-            .build();
-
-        if (remainingPaymentAmount.compareTo(fee.getAmountDue()) > 0) {
-            feePayApportion.setApportionAmount(fee.getAmountDue());
-        } else {
-            feePayApportion.setApportionAmount(remainingPaymentAmount);
+    private void lockCase(String ccdCaseNumber) {
+        if (ccdCaseNumber != null) {
+            paymentFeeRepository.lockCaseForApportionment(ccdCaseNumber);
         }
+    }
+
+    private void initialiseAmountDue(PaymentFee fee, List<Remission> remissions) {
+        initialiseAmountDue(fee, remissions, BigDecimal.ZERO);
+    }
+
+    private void initialiseAmountDue(PaymentFee fee, List<Remission> remissions, BigDecimal alreadyApportioned) {
+        fee.setNetAmount(fee.getNetAmount() != null ? fee.getNetAmount() : getFeeCalculatedNetAmount(fee, remissions));
+        if (fee.getAmountDue() == null) {
+            fee.setAmountDue(fee.getNetAmount().subtract(alreadyApportioned));
+        }
+    }
 
-        return feePayApportion;
+    /**
+     * Takes the payment's apportions off the fees' amount due.
+     *
+     * @return the apportions whose call surplus changed
+     */
+    private List<FeePayApportion> applySettlements(Payment payment, List<FeePayApportion> apportions, Map<Integer, PaymentFee> fees) {
+        Map<Integer, BigDecimal> amountDueByFeeId = new HashMap<>();
+        apportions.forEach(apportion -> {
+            PaymentFee fee = fees.get(apportion.getFeeId());
+            amountDueByFeeId.put(apportion.getFeeId(), fee != null ? fee.getAmountDue() : null);
+        });
+
+        List<FeePayApportion> changedApportions = new ArrayList<>();
+        for (FeePayApportionCalculator.FeeSettlement settlement : FeePayApportionCalculator.settle(payment, apportions, amountDueByFeeId)) {
+            fees.get(settlement.getFeeId()).setAmountDue(settlement.getAmountDue());
+            if (settlement.isCallSurplusChanged()) {
+                settlement.getApportion().setCallSurplusAmount(settlement.getCallSurplusAmount());
+                changedApportions.add(settlement.getApportion());
+            }
+        }
+        return changedApportions;
     }
 
     private BigDecimal getFeeCalculatedNetAmount(PaymentFee fee, List<Remission> remissions) {
@@ -202,25 +238,4 @@ public class FeePayApportionServiceImpl implements FeePayApportionService {
         fee.setVolume(fee.getVolume() > 0 ? fee.getVolume() : 1);
         return fee.getFeeAmount() != null ? fee.getFeeAmount().multiply(new BigDecimal(fee.getVolume())) : new BigDecimal(0);
     }
-
-
-    private List<Payment> getPaymentsToBeApportioned(List<Payment> payments) {
-        return payments.stream()
-            .filter(payment -> payment.getAmount() != null
-                && payment.getAmount().compareTo(BigDecimal.valueOf(0)) > 0)
-            .collect(Collectors.toList());
-    }
-
-    private List<PaymentFee> getFeesToBeApportioned(List<PaymentFee> fees) {
-        return fees.stream()
-            .filter(fee -> (fee.getDateCreated() != null)
-                && fee.getNetAmount() != null
-                && fee.getNetAmount().compareTo(BigDecimal.valueOf(0)) > 0)
-            .collect(Collectors.toList());
-    }
-
-    private void findSurplusFee(List<FeePayApportion> feePayApportions, BigDecimal callSurplusAmount, List<PaymentFee> fees) {
-        FeePayApportion lastFeePayApportion = (FeePayApportion) feePayApportions.toArray()[feePayApportions.size() - 1];
-        lastFeePayApportion.setCallSurplusAmount(callSurplusAmount);
-    }
 }
@@ -8,12 +8,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import uk.gov.hmcts.payment.api.dto.PaymentSearchCriteria;
+import uk.gov.hmcts.payment.api.dto.PaymentSearchCursor;
 import uk.gov.hmcts.payment.api.dto.PaymentServiceRequest;
 import uk.gov.hmcts.payment.api.model.Payment;
 import uk.gov.hmcts.payment.api.model.PaymentFeeLink;
 import uk.gov.hmcts.payment.api.v1.model.UserIdSupplier;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 @Component
 public class LoggingPaymentService implements DelegatingPaymentService<PaymentFeeLink, String> {
@@ -102,6 +104,16 @@ public class LoggingPaymentService implements DelegatingPaymentService<PaymentFe
         return payments;
     }
 
+    @Override
+    public void streamByCriteria(PaymentSearchCriteria searchCriteria, PaymentSearchCursor after, Integer limit,
+                                 int chunkSize, Consumer<List<Payment>> chunkConsumer) {
+        if (searchCriteria.getStartDate() != null || searchCriteria.getEndDate() != null) {
+            LOG.info("Streaming payments between {} and {}", searchCriteria.getStartDate(), searchCriteria.getEndDate());
+        }
+
+        delegate.streamByCriteria(searchCriteria, after, limit, chunkSize, chunkConsumer);
+    }
+
     @Override
     public void cancel(String paymentReference) {
         LOG.info("Cancel payment for supplied payment reference : {}", paymentReference);
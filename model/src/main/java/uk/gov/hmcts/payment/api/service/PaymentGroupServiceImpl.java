@@ -3,24 +3,20 @@ package uk.gov.hmcts.payment.api.service;
 import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import uk.gov.hmcts.payment.api.model.*;
 import uk.gov.hmcts.payment.api.util.PayStatusToPayHubStatus;
 import uk.gov.hmcts.payment.api.v1.model.exceptions.InvalidPaymentGroupReferenceException;
 
-import javax.persistence.criteria.*;
-import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 @Service
 public class PaymentGroupServiceImpl implements PaymentGroupService<PaymentFeeLink, String> {
     private static final Logger LOG = LoggerFactory.getLogger(PaymentGroupServiceImpl.class);
 
-    private static final Predicate[] REF = new Predicate[0];
-
     private final PaymentFeeLinkRepository paymentFeeLinkRepository;
 
     private final PaymentStatusRepository paymentStatusRepository;
@@ -63,7 +59,7 @@ public class PaymentGroupServiceImpl implements PaymentGroupService<PaymentFeeLi
         payment.setPaymentStatus(paymentStatusRepository.findByNameOrThrow(payment.getPaymentStatus().getName()));
         payment.setStatus(PayStatusToPayHubStatus.valueOf(payment.getPaymentStatus().getName()).getMappedStatus());
         payment.setStatusHistories(Arrays.asList(StatusHistory.statusHistoryWith()
-            .status(paymentStatusRepository.findByNameOrThrow(payment.getPaymentStatus().getName()).getName())
+            .status(payment.getPaymentStatus().getName())
             .build()));
         payment.setPaymentLink(paymentFeeLink);
 
@@ -83,7 +79,7 @@ public class PaymentGroupServiceImpl implements PaymentGroupService<PaymentFeeLi
         payment.setPaymentStatus(paymentStatusRepository.findByNameOrThrow(payment.getPaymentStatus().getName()));
         payment.setStatus(PayStatusToPayHubStatus.valueOf(payment.getPaymentStatus().getName()).getMappedStatus());
         payment.setStatusHistories(Arrays.asList(StatusHistory.statusHistoryWith()
-            .status(paymentStatusRepository.findByNameOrThrow(payment.getPaymentStatus().getName()).getName())
+            .status(payment.getPaymentStatus().getName())
             .build()));
 
         PaymentFeeLink paymentFeeLink = PaymentFeeLink.paymentFeeLinkWith()
@@ -97,50 +93,11 @@ public class PaymentGroupServiceImpl implements PaymentGroupService<PaymentFeeLi
 
     @Override
     public List<PaymentFeeLink> search(String ccdCaseNumber) {
-
-        List<PaymentFeeLink> paymentFeeLinkWithMatchingPayments
-            = paymentFeeLinkRepository.findAll(findPaymentGroupsWithMatchingCriteria(ccdCaseNumber, "payments"));
-
-        List<PaymentFeeLink> paymentFeeLinkWithMatchingFees
-            = paymentFeeLinkRepository.findAll(findPaymentGroupsWithMatchingCriteria(ccdCaseNumber, "fees"));
-
-        List<PaymentFeeLink> paymentFeeLinkWithMatchingRemissions
-            = paymentFeeLinkRepository.findAll(findPaymentGroupsWithMatchingCriteria(ccdCaseNumber, "remissions"));
-
-        List<PaymentFeeLink> paymentFeeLinks = Stream.of(paymentFeeLinkWithMatchingPayments, paymentFeeLinkWithMatchingFees,
-            paymentFeeLinkWithMatchingRemissions)
-            .flatMap(Collection::stream)
-            .distinct()
-            .collect(Collectors.toList());
-
-        paymentFeeLinks.sort(Comparator.comparing(PaymentFeeLink::getDateUpdated));
-
-        return paymentFeeLinks;
-
-    }
-
-    private static Specification findPaymentGroupsWithMatchingCriteria(String ccdCaseNumber, String table) {
-        return ((root, query, cb) -> getPredicate(root, cb, ccdCaseNumber, table));
-    }
-
-    private static Predicate getPredicate(
-        Root<PaymentFeeLink> root,
-        CriteriaBuilder cb,
-        String ccdCaseNumber, String tablejoin) {
-        List<Predicate> predicates = new ArrayList<>();
-
-        if (ccdCaseNumber != null & tablejoin.equals("payments")) {
-            Join<PaymentFeeLink, Payment> paymentJoin = root.join(tablejoin, JoinType.LEFT);
-            predicates.add(cb.or(cb.equal(paymentJoin.get("ccdCaseNumber"), ccdCaseNumber),(cb.equal(paymentJoin.get("caseReference"), ccdCaseNumber))));
-        } else if (ccdCaseNumber != null & tablejoin.equals("fees")){
-            Join<PaymentFeeLink, PaymentFee> paymentFeeJoin = root.join(tablejoin, JoinType.LEFT);
-            predicates.add(cb.equal(paymentFeeJoin.get("ccdCaseNumber"), ccdCaseNumber));
-        } else if (ccdCaseNumber != null & tablejoin.equals("remissions")){
-            Join<PaymentFeeLink, Remission> remissionJoin = root.join(tablejoin, JoinType.LEFT);
-            predicates.add(cb.equal(remissionJoin.get("ccdCaseNumber"), ccdCaseNumber));
+        List<Integer> paymentFeeLinkIds = paymentFeeLinkRepository.findIdsByCcdCaseNumber(ccdCaseNumber);
+        if (paymentFeeLinkIds.isEmpty()) {
+            return Collections.emptyList();
         }
-
-        return cb.and(predicates.toArray(REF));
+        return paymentFeeLinkRepository.findAllWithFeesByIdIn(paymentFeeLinkIds);
     }
 
 }
@@ -4,16 +4,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import uk.gov.hmcts.payment.api.dto.PaymentSearchCriteria;
+import uk.gov.hmcts.payment.api.dto.PaymentSearchCursor;
 import uk.gov.hmcts.payment.api.dto.Reference;
 import uk.gov.hmcts.payment.api.model.FeePayApportion;
 import uk.gov.hmcts.payment.api.model.Payment;
 import uk.gov.hmcts.payment.api.model.Payment2Repository;
 import uk.gov.hmcts.payment.api.model.PaymentMethod;
+import uk.gov.hmcts.payment.api.util.DateUtil;
 
 import javax.persistence.criteria.*;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class PaymentOperationsService implements PaymentService<Payment, String>{
@@ -55,6 +58,11 @@ public class PaymentOperationsService implements PaymentService<Payment, String>
         return null;
     }
 
+    @Override
+    public List<FeePayApportion> findByPaymentIdIn(List<Integer> paymentIds) {
+        return null;
+    }
+
     @Override
     public String getServiceNameByCode(String serviceCode) {
         return null;
@@ -65,6 +73,12 @@ public class PaymentOperationsService implements PaymentService<Payment, String>
         return null;
     }
 
+    @Override
+    public void streamByCriteria(PaymentSearchCriteria searchCriteria, PaymentSearchCursor after, Integer limit,
+                                 int chunkSize, Consumer<List<Payment>> chunkConsumer) {
+        throw new UnsupportedOperationException();
+    }
+
     private static final Specification constructPaymentSpecification(final PaymentSearchCriteria searchCriteria) {
         return ((root, query, cb) -> constructPredicate(root, cb, searchCriteria, query));
     }
@@ -74,13 +88,13 @@ public class PaymentOperationsService implements PaymentService<Payment, String>
                                                 final PaymentSearchCriteria searchCriteria,
                                                 final CriteriaQuery<?> query) {
         final List<Predicate> predicates = new ArrayList<>();
-        final Expression<Date> dateUpdatedExpr = cb.function("date_trunc", Date.class, cb.literal("seconds"), root.get("dateUpdated"));
+        final Path<Date> dateUpdated = root.get("dateUpdated");
 
         if (searchCriteria.getCcdCaseNumber() != null) {
             predicates.add(cb.equal(root.get("ccdCaseNumber"), searchCriteria.getCcdCaseNumber()));
         }
         if (searchCriteria.getStartDate() != null) {
-            predicates.add(cb.greaterThanOrEqualTo(dateUpdatedExpr, searchCriteria.getStartDate()));
+            predicates.add(cb.greaterThanOrEqualTo(dateUpdated, DateUtil.ceilToSecond(searchCriteria.getStartDate())));
         }
         if (searchCriteria.getPaymentMethod() != null) {
             predicates.add(cb.equal(root.get("paymentMethod"), PaymentMethod.paymentMethodWith().name(searchCriteria.getPaymentMethod()).build()));
@@ -92,7 +106,7 @@ public class PaymentOperationsService implements PaymentService<Payment, String>
             predicates.add(cb.equal(root.get("pbaNumber"), searchCriteria.getPbaNumber()));
         }
         if (searchCriteria.getEndDate() != null) {
-            predicates.add(cb.lessThanOrEqualTo(dateUpdatedExpr, searchCriteria.getEndDate()));
+            predicates.add(cb.lessThan(dateUpdated, DateUtil.startOfNextSecond(searchCriteria.getEndDate())));
         }
         return cb.and(predicates.toArray(new Predicate[0]));
     }
@@ -1,17 +1,24 @@
 package uk.gov.hmcts.payment.api.service;
 
 import uk.gov.hmcts.payment.api.dto.PaymentSearchCriteria;
+import uk.gov.hmcts.payment.api.dto.PaymentSearchCursor;
 import uk.gov.hmcts.payment.api.dto.Reference;
 import uk.gov.hmcts.payment.api.model.FeePayApportion;
 import uk.gov.hmcts.payment.api.model.Payment;
 
 import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface PaymentService<T, ID> {
 
     T retrieve(ID id);
 
+    /**
+     * Claims a slice of pending gov pay payments that are due a poll and returns their references.
+     * Claimed payments are not returned to any other caller until their lease expires, and each claim
+     * pushes the payment's next poll further out until it is given up on.
+     */
     List<Reference> listInitiatedStatusPaymentsReferences();
 
     List<T> search(PaymentSearchCriteria searchCriteria);
@@ -22,8 +29,13 @@ public interface PaymentService<T, ID> {
 
     List<FeePayApportion> findByPaymentId(Integer paymentId);
 
+    List<FeePayApportion> findByPaymentIdIn(List<Integer> paymentIds);
+
     String getServiceNameByCode(String serviceCode);
     
     List<Payment> searchByCriteria(PaymentSearchCriteria searchCriteria);
 
+    void streamByCriteria(PaymentSearchCriteria searchCriteria, PaymentSearchCursor after, Integer limit,
+                          int chunkSize, Consumer<List<Payment>> chunkConsumer);
+
 }
@@ -13,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 import uk.gov.hmcts.payment.api.audit.AuditRepository;
 import uk.gov.hmcts.payment.api.configuration.LaunchDarklyFeatureToggler;
 import uk.gov.hmcts.payment.api.dto.PaymentSearchCriteria;
+import uk.gov.hmcts.payment.api.dto.PaymentSearchCursor;
 import uk.gov.hmcts.payment.api.dto.Reference;
 import uk.gov.hmcts.payment.api.model.*;
 import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentException;
@@ -20,6 +21,7 @@ import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentNotFoundException;
 
 import javax.validation.constraints.NotNull;
 import java.util.*;
+import java.util.function.Consumer;
 
 
 @Service
@@ -48,6 +50,21 @@ public class PaymentServiceImpl implements PaymentService<PaymentFeeLink, String
     @Value("${callback.payments.cutoff.time.in.minutes:2}")
     private int paymentsCutOffTime;
 
+    @Value("${card.payments.status.update.claim.limit:1000}")
+    private int statusUpdateClaimLimit;
+
+    @Value("${card.payments.status.update.claim.lease.minutes:10}")
+    private int statusUpdateClaimLeaseMinutes;
+
+    @Value("${card.payments.status.update.backoff.initial.minutes:5}")
+    private int statusUpdateInitialBackoffMinutes;
+
+    @Value("${card.payments.status.update.backoff.max.minutes:1440}")
+    private int statusUpdateMaxBackoffMinutes;
+
+    @Value("${card.payments.status.update.max.attempts:15}")
+    private int statusUpdateMaxAttempts;
+
     @Autowired
     public PaymentServiceImpl(@Qualifier("loggingPaymentService") DelegatingPaymentService<PaymentFeeLink, String> delegatingPaymentService,
                               Payment2Repository paymentRepository, CallbackService callbackService, PaymentStatusRepository paymentStatusRepository,
@@ -131,12 +148,45 @@ public class PaymentServiceImpl implements PaymentService<PaymentFeeLink, String
     }
 
     @Override
+    @Transactional
     public List<Reference> listInitiatedStatusPaymentsReferences() {
-        Date targetTime = DateUtils.addMinutes(new Date(), -1 * paymentsCutOffTime);
-        return paymentRepository.findReferencesByPaymentProviderAndPaymentStatusNotInAndDateCreatedLessThan(
-            PaymentProvider.GOV_PAY,
-            Lists.newArrayList(SUCCESS, FAILED, ERROR, CANCELLED), targetTime
-        );
+        Date now = new Date();
+        Date targetTime = DateUtils.addMinutes(now, -1 * paymentsCutOffTime);
+        Date claimExpiry = DateUtils.addMinutes(now, -1 * statusUpdateClaimLeaseMinutes);
+
+        List<String> finalStatuses = Lists.newArrayList(SUCCESS.getName(), FAILED.getName(), ERROR.getName(), CANCELLED.getName());
+
+        giveUpStatusUpdates(finalStatuses, claimExpiry, now);
+
+        List<Integer> claimedIds = paymentRepository.findIdsToClaimForStatusUpdate(
+            PaymentProvider.GOV_PAY.getName(), finalStatuses,
+            targetTime, claimExpiry, now, statusUpdateMaxAttempts, statusUpdateClaimLimit);
+
+        if (claimedIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        paymentRepository.claimForStatusUpdate(claimedIds, now, statusUpdateInitialBackoffMinutes, statusUpdateMaxBackoffMinutes);
+        return paymentRepository.findReferencesByIdIn(claimedIds);
+    }
+
+    /* payments that are still pending after their last poll are marked, so giving up on them is recorded once */
+    private void giveUpStatusUpdates(List<String> finalStatuses, Date claimExpiry, Date now) {
+        List<Integer> givenUpIds = paymentRepository.findIdsToGiveUpStatusUpdate(
+            PaymentProvider.GOV_PAY.getName(), finalStatuses, claimExpiry, now, statusUpdateMaxAttempts, statusUpdateClaimLimit);
+
+        if (givenUpIds.isEmpty()) {
+            return;
+        }
+
+        paymentRepository.giveUpStatusUpdate(givenUpIds, now);
+        for (Reference reference : paymentRepository.findReferencesByIdIn(givenUpIds)) {
+            LOG.warn("Giving up on status updates for payment {} after {} polls", reference.getReference(), statusUpdateMaxAttempts);
+            paymentAuditRepository.trackEvent("PAYMENT_STATUS_POLLING_GIVEN_UP", new ImmutableMap.Builder<String, String>()
+                .put("PaymentReference", reference.getReference())
+                .put("MaxAttempts", String.valueOf(statusUpdateMaxAttempts))
+                .build());
+        }
     }
 
     @Override
@@ -149,6 +199,12 @@ public class PaymentServiceImpl implements PaymentService<PaymentFeeLink, String
         return delegatingPaymentService.searchByCriteria(searchCriteria);
     }
 
+    @Override
+    public void streamByCriteria(PaymentSearchCriteria searchCriteria, PaymentSearchCursor after, Integer limit,
+                                 int chunkSize, Consumer<List<Payment>> chunkConsumer) {
+        delegatingPaymentService.streamByCriteria(searchCriteria, after, limit, chunkSize, chunkConsumer);
+    }
+
 
     @Override
     public List<FeePayApportion> findByPaymentId(Integer paymentId)
@@ -156,6 +212,14 @@ public class PaymentServiceImpl implements PaymentService<PaymentFeeLink, String
         return feePayApportionRepository.findByPaymentId(paymentId).orElse(Collections.EMPTY_LIST);
     }
 
+    @Override
+    public List<FeePayApportion> findByPaymentIdIn(List<Integer> paymentIds) {
+        if (paymentIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return feePayApportionRepository.findByPaymentIdIn(paymentIds);
+    }
+
     @Override
     public String getServiceNameByCode(String serviceCode) {
         if(serviceNameMap.containsKey(serviceCode))
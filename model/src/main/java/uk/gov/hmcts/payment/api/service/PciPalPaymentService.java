@@ -29,6 +29,8 @@ import uk.gov.hmcts.payment.api.external.client.dto.TelephonyProviderLinkIdReque
 import uk.gov.hmcts.payment.api.external.client.dto.TelephonyProviderLinkIdResponse;
 import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentException;
 import uk.gov.hmcts.payment.api.model.Payment;
+
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.URISyntaxException;
@@ -36,6 +38,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.apache.http.HttpHeaders.CONTENT_TYPE;
 import static org.apache.http.entity.ContentType.APPLICATION_JSON;
@@ -97,11 +104,29 @@ public class PciPalPaymentService implements DelegatingPaymentService<PciPalPaym
     @Value("${pci-pal.antenna.financial.remedy.flow.id}")
     private String financialRemedyFlowId;
 
+    @Value("${pci-pal.antenna.token.expiry-margin-seconds:60}")
+    private long tokenExpiryMarginSeconds = 60;
+
+    @Value("${pci-pal.antenna.token.refresh-ahead-seconds:300}")
+    private long tokenRefreshAheadSeconds = 300;
+
+    @Value("${pci-pal.antenna.token.default-lifetime-seconds:600}")
+    private long tokenDefaultLifetimeSeconds = 600;
+
     private final String callbackUrl;
     private final String url;
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
 
+    private final Object tokensLock = new Object();
+    private final AtomicBoolean refreshingTokens = new AtomicBoolean();
+    private final ExecutorService tokenRefreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pci-pal-token-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile CachedTokens cachedTokens;
+
     @Autowired
     public PciPalPaymentService(@Value("${pci-pal.api.url}") String url,
                                 @Value("${pci-pal.callback-url}") String callbackUrl, HttpClient httpClient, ObjectMapper objectMapper) {
@@ -211,16 +236,120 @@ public class PciPalPaymentService implements DelegatingPaymentService<PciPalPaym
         return flowId;
     }
 
+    /**
+     * Returns Antenna tokens for a telephony payment. The tokens are shared between payments until shortly before
+     * they expire. Once they are close to expiry they are renewed on a background thread, using the refresh token
+     * where there is one, while callers keep getting the current ones. Each caller gets its own copy, as
+     * {@link #getTelephonyProviderLink} writes the next URL into it.
+     */
     public TelephonyProviderAuthorisationResponse getPaymentProviderAutorisationTokens() {
+        CachedTokens cached = cachedTokens;
+        long now = System.currentTimeMillis();
+        if (cached != null && cached.isUsableAt(now)) {
+            if (cached.needsRefreshAt(now)) {
+                refreshTokensInBackground();
+            }
+            return cached.copy();
+        }
+
+        synchronized (tokensLock) {
+            cached = cachedTokens;
+            if (cached != null && cached.isUsableAt(System.currentTimeMillis())) {
+                return cached.copy();
+            }
+            return renewTokens(cached).copy();
+        }
+    }
+
+    private void refreshTokensInBackground() {
+        if (!refreshingTokens.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            tokenRefreshExecutor.execute(() -> {
+                try {
+                    synchronized (tokensLock) {
+                        CachedTokens cached = cachedTokens;
+                        if (cached != null && cached.needsRefreshAt(System.currentTimeMillis())) {
+                            renewTokens(cached);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    LOG.error("Unable to refresh PCI PAL Antenna tokens in the background", e);
+                } finally {
+                    refreshingTokens.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingTokens.set(false);
+        }
+    }
+
+    /**
+     * Gets new tokens, with the refresh token of {@code previous} if it has one, falling back to the configured
+     * grant. Must be called holding {@code tokensLock}.
+     */
+    private CachedTokens renewTokens(CachedTokens previous) {
+        TelephonyProviderAuthorisationResponse tokens = null;
+        if (previous != null && previous.tokens.getRefreshToken() != null) {
+            try {
+                tokens = requestTokens(refreshTokenGrant(previous.tokens.getRefreshToken()));
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to refresh PCI PAL Antenna tokens with the refresh token: {}", e.getMessage());
+            }
+        }
+        if (tokens == null || tokens.getAccessToken() == null) {
+            tokens = requestTokens(configuredGrant());
+        }
+
+        CachedTokens renewed = new CachedTokens(tokens, System.currentTimeMillis(), TimeUnit.SECONDS.toMillis(lifetimeSeconds(tokens)),
+            TimeUnit.SECONDS.toMillis(tokenExpiryMarginSeconds), TimeUnit.SECONDS.toMillis(tokenRefreshAheadSeconds));
+        /* a response without an access token is handed back as it is, but not kept */
+        cachedTokens = tokens.getAccessToken() != null ? renewed : null;
+        return renewed;
+    }
+
+    /*
+     * Tokens without a usable expires_in are kept for the configured default lifetime. Otherwise they would never be
+     * reusable, and every caller would queue on tokensLock for new ones.
+     */
+    private long lifetimeSeconds(TelephonyProviderAuthorisationResponse tokens) {
+        long expiresIn;
+        try {
+            expiresIn = tokens.getExpiresIn() == null ? 0 : Long.parseLong(tokens.getExpiresIn().trim());
+        } catch (NumberFormatException e) {
+            expiresIn = 0;
+        }
+        if (expiresIn <= 0 && tokens.getAccessToken() != null) {
+            LOG.warn("PCI PAL Antenna tokens came with expires_in {}, keeping them for {}s", tokens.getExpiresIn(), tokenDefaultLifetimeSeconds);
+            return tokenDefaultLifetimeSeconds;
+        }
+        return expiresIn;
+    }
+
+    private List<NameValuePair> configuredGrant() {
+        List<NameValuePair> params = new ArrayList<>();
+        params.add(new BasicNameValuePair("grant_type", grantType));
+        params.add(new BasicNameValuePair("tenantname", tenantName));
+        params.add(new BasicNameValuePair("username", userName));
+        params.add(new BasicNameValuePair("client_id", clientId));
+        params.add(new BasicNameValuePair("client_secret", clientSecret));
+        return params;
+    }
+
+    private List<NameValuePair> refreshTokenGrant(String refreshToken) {
+        List<NameValuePair> params = new ArrayList<>();
+        params.add(new BasicNameValuePair("grant_type", "refresh_token"));
+        params.add(new BasicNameValuePair("refresh_token", refreshToken));
+        params.add(new BasicNameValuePair("tenantname", tenantName));
+        params.add(new BasicNameValuePair("client_id", clientId));
+        params.add(new BasicNameValuePair("client_secret", clientSecret));
+        return params;
+    }
+
+    private TelephonyProviderAuthorisationResponse requestTokens(List<NameValuePair> params) {
         return withIOExceptionHandling(() -> {
             LOG.info("tokensURL: {}", tokensURL);
-            List<NameValuePair> params = new ArrayList<>();
-            params.add(new BasicNameValuePair("grant_type", grantType));
-            params.add(new BasicNameValuePair("tenantname", tenantName));
-            params.add(new BasicNameValuePair("username", userName));
-            params.add(new BasicNameValuePair("client_id", clientId));
-            params.add(new BasicNameValuePair("client_secret", clientSecret));
-
             HttpPost httpPost = new HttpPost(tokensURL);
             httpPost.setEntity(new UrlEncodedFormEntity(params));
             HttpResponse response1 = httpClient.execute(httpPost);
@@ -228,6 +357,12 @@ public class PciPalPaymentService implements DelegatingPaymentService<PciPalPaym
             return objectMapper.readValue(response1.getEntity().getContent(), TelephonyProviderAuthorisationResponse.class);
         });
     }
+
+    @PreDestroy
+    public void close() {
+        tokenRefreshExecutor.shutdownNow();
+    }
+
     private Header authorizationHeader(String authorizationKey) {
         return new BasicHeader(HttpHeaders.AUTHORIZATION, "Bearer " + authorizationKey);
 
@@ -269,6 +404,36 @@ public class PciPalPaymentService implements DelegatingPaymentService<PciPalPaym
         return null;
     }
 
+    private static final class CachedTokens {
+
+        private final TelephonyProviderAuthorisationResponse tokens;
+
+        private final long usableUntil;
+
+        private final long refreshFrom;
+
+        private CachedTokens(TelephonyProviderAuthorisationResponse tokens, long issuedAt, long lifetime, long expiryMargin, long refreshAhead) {
+            this.tokens = tokens;
+            long expiresAt = issuedAt + lifetime;
+            this.usableUntil = expiresAt - expiryMargin;
+            this.refreshFrom = expiresAt - Math.max(expiryMargin, refreshAhead);
+        }
+
+        private boolean isUsableAt(long now) {
+            return now < usableUntil;
+        }
+
+        private boolean needsRefreshAt(long now) {
+            return now >= refreshFrom;
+        }
+
+        private TelephonyProviderAuthorisationResponse copy() {
+            return new TelephonyProviderAuthorisationResponse(tokens.getAccessToken(), tokens.getTokenType(),
+                tokens.getExpiresIn(), tokens.getRefreshToken(), tokens.getClientId(), tokens.getTenantName(),
+                tokens.getIssued(), tokens.getExpires(), null);
+        }
+    }
+
     private interface CheckedExceptionProvider<T> {
         T get() throws IOException, URISyntaxException;
     }
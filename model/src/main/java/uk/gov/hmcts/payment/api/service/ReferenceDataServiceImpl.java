@@ -9,6 +9,7 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
@@ -27,7 +28,16 @@ import uk.gov.hmcts.reform.authorisation.generators.AuthTokenGenerator;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Maps case types to organisational services using location reference data. The answer for each case type,
+ * including "no such service", is remembered for a while. If reference data fails once an answer has expired, the
+ * old answer keeps being used for up to the max-stale period, and reference data is asked again at most once per
+ * retry interval.
+ */
 @Service
 public class ReferenceDataServiceImpl implements ReferenceDataService<SiteDTO> {
 
@@ -48,6 +58,22 @@ public class ReferenceDataServiceImpl implements ReferenceDataService<SiteDTO> {
 
     private static final String RD_ENDPOINT = "/refdata/location/orgServices";
 
+    private static final int MAX_CACHED_CASE_TYPES = 1000;
+
+    @Value("${rd.location.cache.ttl-seconds:3600}")
+    private long cacheTtlSeconds;
+
+    @Value("${rd.location.cache.negative-ttl-seconds:60}")
+    private long negativeCacheTtlSeconds;
+
+    @Value("${rd.location.cache.max-stale-seconds:86400}")
+    private long maxStaleSeconds;
+
+    @Value("${rd.location.cache.retry-after-seconds:30}")
+    private long retryAfterSeconds;
+
+    private final ConcurrentMap<String, CachedOrganisationalService> organisationalServices = new ConcurrentHashMap<>();
+
     @Override
     public List<SiteDTO> getSiteIDs() {
         return SiteDTO.fromSiteList(siteService.getAllSites());
@@ -55,17 +81,60 @@ public class ReferenceDataServiceImpl implements ReferenceDataService<SiteDTO> {
 
     @Override
     public OrganisationalServiceDto getOrganisationalDetail(String caseType, MultiValueMap<String, String> headers) {
+        if (caseType == null || cacheTtlSeconds <= 0) {
+            return toOrganisationalService(lookUpOrganisationalDetail(caseType, headers));
+        }
+
+        long now = System.nanoTime();
+        CachedOrganisationalService cached = organisationalServices.get(caseType);
+        if (cached != null && !cached.isExpired(now)) {
+            return toOrganisationalService(cached.service);
+        }
+
+        OrganisationalServiceDto service;
+        try {
+            service = lookUpOrganisationalDetail(caseType, headers);
+        } catch (GatewayTimeoutException e) {
+            if (cached != null && cached.service != null && !cached.isTooStale(now)) {
+                LOG.warn("Using cached organisational service for case type {} as reference data is unavailable", caseType);
+                organisationalServices.replace(caseType, cached,
+                    cached.retryAt(now + TimeUnit.SECONDS.toNanos(retryAfterSeconds)));
+                return cached.service;
+            }
+            throw e;
+        }
+
+        evictExpiredIfFull(now);
+        if (service == null) {
+            long expiresAt = now + TimeUnit.SECONDS.toNanos(negativeCacheTtlSeconds);
+            organisationalServices.put(caseType, new CachedOrganisationalService(null, expiresAt, expiresAt));
+        } else {
+            long expiresAt = now + TimeUnit.SECONDS.toNanos(cacheTtlSeconds);
+            organisationalServices.put(caseType, new CachedOrganisationalService(service, expiresAt,
+                expiresAt + TimeUnit.SECONDS.toNanos(maxStaleSeconds)));
+        }
+        return toOrganisationalService(service);
+    }
+
+    /**
+     * @return the service for the case type, or {@code null} if reference data does not know the case type
+     */
+    private OrganisationalServiceDto lookUpOrganisationalDetail(String caseType, MultiValueMap<String, String> headers) {
 
         List<OrganisationalServiceDto> orgServiceResponse;
         try {
             ResponseEntity<List<OrganisationalServiceDto>> responseEntity = getResponseEntity(caseType,headers);
             orgServiceResponse = responseEntity.hasBody() ? responseEntity.getBody() : null;
             if (orgServiceResponse == null || orgServiceResponse.isEmpty()) {
-                throw new NoServiceFoundException("No Service found for given CaseType");
+                return null;
             }
             return orgServiceResponse.get(0);
         } catch (HttpClientErrorException e) {
             LOG.error("client err ", e);
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return null;
+            }
+            /* other client errors, such as a rejected token, say nothing about the case type so are not cached */
             throw new NoServiceFoundException("No Service found for given CaseType");
         } catch (HttpServerErrorException e) {
             LOG.error("server err ", e);
@@ -73,6 +142,19 @@ public class ReferenceDataServiceImpl implements ReferenceDataService<SiteDTO> {
         }
     }
 
+    private static OrganisationalServiceDto toOrganisationalService(OrganisationalServiceDto service) {
+        if (service == null) {
+            throw new NoServiceFoundException("No Service found for given CaseType");
+        }
+        return service;
+    }
+
+    private void evictExpiredIfFull(long now) {
+        if (organisationalServices.size() > MAX_CACHED_CASE_TYPES) {
+            organisationalServices.values().removeIf(cached -> cached.isTooStale(now));
+        }
+    }
+
     private ResponseEntity<List<OrganisationalServiceDto>> getResponseEntity(String caseType,MultiValueMap<String, String> headers){
         UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(rdBaseUrl + RD_ENDPOINT)
             .queryParam("ccdCaseType", caseType);
@@ -94,4 +176,31 @@ public class ReferenceDataServiceImpl implements ReferenceDataService<SiteDTO> {
         return new HttpEntity<>(httpHeaders);
     }
 
+    private static final class CachedOrganisationalService {
+
+        /* null when reference data does not know the case type */
+        private final OrganisationalServiceDto service;
+
+        private final long expiresAt;
+
+        private final long staleUntil;
+
+        private CachedOrganisationalService(OrganisationalServiceDto service, long expiresAt, long staleUntil) {
+            this.service = service;
+            this.expiresAt = expiresAt;
+            this.staleUntil = staleUntil;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+        private boolean isTooStale(long now) {
+            return now - staleUntil >= 0;
+        }
+
+        private CachedOrganisationalService retryAt(long retryAt) {
+            return new CachedOrganisationalService(service, retryAt, staleUntil);
+        }
+    }
 }
@@ -61,6 +61,8 @@ public class UserAwareDelegatingCreditAccountPaymentService implements CreditAcc
     public PaymentFeeLink create(Payment creditAccount, List<PaymentFee> fees, String paymentGroupRef) throws CheckDigitException {
         LOG.debug("Create credit account payment with PaymentGroupReference: {}", paymentGroupRef);
 
+        PaymentStatus paymentStatus = paymentStatusRepository.findByNameOrThrow(creditAccount.getPaymentStatus().getName());
+
         Payment payment = null;
         try {
             payment = Payment.paymentWith()
@@ -77,12 +79,13 @@ public class UserAwareDelegatingCreditAccountPaymentService implements CreditAcc
                 .customerReference(creditAccount.getCustomerReference())
                 .organisationName(creditAccount.getOrganisationName())
                 .pbaNumber(creditAccount.getPbaNumber())
+                .duplicateFingerprint(creditAccount.getDuplicateFingerprint())
                 .paymentChannel(paymentChannelRepository.findByNameOrThrow(PAYMENT_CHANNEL_ONLINE))
                 .paymentMethod(paymentMethodRepository.findByNameOrThrow(PAYMENT_METHOD_BY_ACCOUNT))
-                .paymentStatus(paymentStatusRepository.findByNameOrThrow(creditAccount.getPaymentStatus().getName()))
+                .paymentStatus(paymentStatus)
                 .reference(referenceUtil.getNext("RC"))
                 .statusHistories(creditAccount.getStatusHistories() == null ? Arrays.asList(StatusHistory.statusHistoryWith()
-                    .status(paymentStatusRepository.findByNameOrThrow(creditAccount.getPaymentStatus().getName()).getName())
+                    .status(paymentStatus.getName())
                     .build())
                     : creditAccount.getStatusHistories())
                 .build();
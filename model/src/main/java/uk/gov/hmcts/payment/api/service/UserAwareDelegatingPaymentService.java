@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import org.apache.commons.validator.routines.checkdigit.CheckDigitException;
 import org.apache.http.MethodNotSupportedException;
+import org.hibernate.jpa.QueryHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,12 +16,14 @@ import org.springframework.transaction.annotation.Transactional;
 import uk.gov.hmcts.payment.api.audit.AuditRepository;
 import uk.gov.hmcts.payment.api.configuration.LaunchDarklyFeatureToggler;
 import uk.gov.hmcts.payment.api.dto.PaymentSearchCriteria;
+import uk.gov.hmcts.payment.api.dto.PaymentSearchCursor;
 import uk.gov.hmcts.payment.api.dto.PaymentServiceRequest;
 import uk.gov.hmcts.payment.api.dto.PciPalPayment;
 import uk.gov.hmcts.payment.api.external.client.dto.GovPayPayment;
 import uk.gov.hmcts.payment.api.external.client.dto.Link;
 import uk.gov.hmcts.payment.api.external.client.exceptions.GovPayPaymentNotFoundException;
 import uk.gov.hmcts.payment.api.model.*;
+import uk.gov.hmcts.payment.api.util.DateUtil;
 import uk.gov.hmcts.payment.api.util.PayStatusToPayHubStatus;
 import uk.gov.hmcts.payment.api.util.ReferenceUtil;
 import uk.gov.hmcts.payment.api.v1.model.ServiceIdSupplier;
@@ -29,6 +32,9 @@ import uk.gov.hmcts.payment.api.v1.model.exceptions.InvalidPaymentGroupReference
 import uk.gov.hmcts.payment.api.v1.model.exceptions.PaymentNotFoundException;
 import uk.gov.hmcts.payment.api.v1.model.govpay.GovPayAuthUtil;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
@@ -36,6 +42,8 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Primary
@@ -71,6 +79,9 @@ public class UserAwareDelegatingPaymentService implements DelegatingPaymentServi
 
     @Value("${gov.pay.url}") String govpayUrl;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Autowired
     public UserAwareDelegatingPaymentService(UserIdSupplier userIdSupplier,
                                              PaymentFeeLinkRepository paymentFeeLinkRepository,
@@ -238,7 +249,7 @@ public class UserAwareDelegatingPaymentService implements DelegatingPaymentServi
 
                 //1. Update Fee Amount Due as Payment Status received from GovPAY as SUCCESS
                 boolean apportionFeature = featureToggler.getBooleanValue("apportion-feature",false);
-                LOG.info("ApportionFeature Flag Value in UserAwareDelegatingPaymentService : {}", apportionFeature);
+                LOG.debug("ApportionFeature Flag Value in UserAwareDelegatingPaymentService : {}", apportionFeature);
                 if(apportionFeature) {
                     if(govPayPayment.getState().getStatus().toLowerCase().equalsIgnoreCase("success")) {
                         LOG.info("Update Fee Amount Due as Payment Status received from GovPAY as SUCCESS!!!");
@@ -285,6 +296,56 @@ public class UserAwareDelegatingPaymentService implements DelegatingPaymentServi
         return paymentRespository.findAll(constructPaymentSpecification(searchCriteria));
     }
 
+    /**
+     * Reads matching payments in (date_updated, id) order through a forward-only cursor and hands them to the
+     * consumer in chunks. The persistence context is cleared after every chunk so that memory use does not grow
+     * with the size of the date range.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamByCriteria(PaymentSearchCriteria searchCriteria, PaymentSearchCursor after, Integer limit,
+                                 int chunkSize, Consumer<List<Payment>> chunkConsumer) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Payment> query = cb.createQuery(Payment.class);
+        Root<Payment> root = query.from(Payment.class);
+
+        List<Predicate> predicates = constructPredicates(root, cb, searchCriteria);
+        if (after != null) {
+            Path<Date> dateUpdated = root.get("dateUpdated");
+            predicates.add(cb.or(
+                cb.greaterThan(dateUpdated, after.getDateUpdated()),
+                cb.and(cb.equal(dateUpdated, after.getDateUpdated()), cb.greaterThan(root.get("id"), after.getId()))
+            ));
+        }
+        query.select(root)
+            .where(predicates.toArray(REF))
+            .orderBy(cb.asc(root.get("dateUpdated")), cb.asc(root.get("id")));
+
+        TypedQuery<Payment> typedQuery = entityManager.createQuery(query)
+            .setHint(QueryHints.HINT_FETCH_SIZE, chunkSize)
+            .setHint(QueryHints.HINT_READONLY, true);
+        if (limit != null) {
+            typedQuery.setMaxResults(limit);
+        }
+
+        List<Payment> chunk = new ArrayList<>(chunkSize);
+        try (Stream<Payment> payments = typedQuery.getResultStream()) {
+            Iterator<Payment> iterator = payments.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == chunkSize) {
+                    chunkConsumer.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                    entityManager.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                chunkConsumer.accept(chunk);
+                entityManager.clear();
+            }
+        }
+    }
+
     private static final Specification constructPaymentSpecification(final PaymentSearchCriteria searchCriteria) {
         return ((root, query, cb) -> constructPredicate(root, cb, searchCriteria, query));
     }
@@ -293,19 +354,21 @@ public class UserAwareDelegatingPaymentService implements DelegatingPaymentServi
                                                 final CriteriaBuilder cb,
                                                 final PaymentSearchCriteria searchCriteria,
                                                 final CriteriaQuery<?> query) {
+        final List<Predicate> predicates = constructPredicates(root, cb, searchCriteria);
+
+        query.groupBy(root.get("id"));
+        return cb.and(predicates.toArray(REF));
+    }
+
+    private static List<Predicate> constructPredicates(final Root<Payment> root,
+                                                       final CriteriaBuilder cb,
+                                                       final PaymentSearchCriteria searchCriteria) {
         final List<Predicate> predicates = new ArrayList<>();
-        final Expression<Date> dateUpdatedExpr = cb.function("date_trunc", Date.class, cb.literal("seconds"), root.get("dateUpdated"));
 
         if (searchCriteria.getCcdCaseNumber() != null) {
             predicates.add(cb.equal(root.get("ccdCaseNumber"), searchCriteria.getCcdCaseNumber()));
         }
-        if (searchCriteria.getStartDate() != null && searchCriteria.getEndDate() != null) {
-            predicates.add(cb.between(dateUpdatedExpr, searchCriteria.getStartDate(), searchCriteria.getEndDate()));
-        } else if (searchCriteria.getStartDate() != null) {
-            predicates.add(cb.greaterThanOrEqualTo(dateUpdatedExpr, searchCriteria.getStartDate()));
-        } else if (searchCriteria.getEndDate() != null) {
-            predicates.add(cb.lessThanOrEqualTo(dateUpdatedExpr, searchCriteria.getEndDate()));
-        }
+        predicates.addAll(dateUpdatedPredicates(cb, root.get("dateUpdated"), searchCriteria));
         if (searchCriteria.getPaymentMethod() != null) {
             if(searchCriteria.getPaymentMethod().equalsIgnoreCase("all"))
             {
@@ -331,9 +394,7 @@ public class UserAwareDelegatingPaymentService implements DelegatingPaymentServi
         if (searchCriteria.getPbaNumber() != null) {
             predicates.add(cb.equal(root.get("pbaNumber"), searchCriteria.getPbaNumber()));
         }
-
-        query.groupBy(root.get("id"));
-        return cb.and(predicates.toArray(REF));
+        return predicates;
     }
 
 
@@ -382,15 +443,7 @@ public class UserAwareDelegatingPaymentService implements DelegatingPaymentServi
 
         }
 
-        Expression<Date> dateUpdatedExpr = cb.function("date_trunc", Date.class, cb.literal("seconds"), paymentJoin.get("dateUpdated"));
-
-        if (searchCriteria.getStartDate() != null && searchCriteria.getEndDate() != null) {
-            predicates.add(cb.between(dateUpdatedExpr, searchCriteria.getStartDate(), searchCriteria.getEndDate()));
-        } else if (searchCriteria.getStartDate() != null) {
-            predicates.add(cb.greaterThanOrEqualTo(dateUpdatedExpr, searchCriteria.getStartDate()));
-        } else if (searchCriteria.getEndDate() != null) {
-            predicates.add(cb.lessThanOrEqualTo(dateUpdatedExpr, searchCriteria.getEndDate()));
-        }
+        predicates.addAll(dateUpdatedPredicates(cb, paymentJoin.get("dateUpdated"), searchCriteria));
 
         if (searchCriteria.getCcdCaseNumber() != null) {
             predicates.add(cb.equal(paymentJoin.get("ccdCaseNumber"), searchCriteria.getCcdCaseNumber()));
@@ -407,6 +460,21 @@ public class UserAwareDelegatingPaymentService implements DelegatingPaymentServi
         return cb.and(predicates.toArray(REF));
     }
 
+    /**
+     * Compares the raw date_updated column against bounds rounded to whole seconds, which matches the previous
+     * date_trunc('seconds', ...) semantics while still letting PostgreSQL use an index on the column.
+     */
+    private static List<Predicate> dateUpdatedPredicates(CriteriaBuilder cb, Path<Date> dateUpdated, PaymentSearchCriteria searchCriteria) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (searchCriteria.getStartDate() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(dateUpdated, DateUtil.ceilToSecond(searchCriteria.getStartDate())));
+        }
+        if (searchCriteria.getEndDate() != null) {
+            predicates.add(cb.lessThan(dateUpdated, DateUtil.startOfNextSecond(searchCriteria.getEndDate())));
+        }
+        return predicates;
+    }
+
     private Payment findSavedPayment(@NotNull String paymentReference) {
         return paymentRespository.findByReference(paymentReference).orElseThrow(PaymentNotFoundException::new);
     }
@@ -57,4 +57,20 @@ public class DateUtil {
     public static Date localDateTimeToDate(LocalDateTime ldt) {
         return ldt == null ? null : Date.from(ldt.atZone(ZoneId.systemDefault()).toInstant());
     }
+
+    /**
+     * Inclusive lower bound on a raw timestamp column equivalent to {@code date_trunc('seconds', column) >= date}.
+     */
+    public static Date ceilToSecond(Date date) {
+        long millis = date.getTime();
+        long floor = Math.floorDiv(millis, 1000L) * 1000L;
+        return new Date(floor == millis ? millis : floor + 1000L);
+    }
+
+    /**
+     * Exclusive upper bound on a raw timestamp column equivalent to {@code date_trunc('seconds', column) <= date}.
+     */
+    public static Date startOfNextSecond(Date date) {
+        return new Date(Math.floorDiv(date.getTime(), 1000L) * 1000L + 1000L);
+    }
 }
@@ -0,0 +1,102 @@
+package uk.gov.hmcts.payment.api.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money held as a {@code long} number of pence, for arithmetic in loops where chains of
+ * {@link BigDecimal} operations would allocate on every step. Conversion in either direction is exact: an amount
+ * finer than a penny is rejected, unless it is converted with an explicit {@link RoundingMode}.
+ *
+ * <p>The scale of the amounts an instance was built from is carried along, following the {@link BigDecimal} rules
+ * for add and subtract, so that {@link #toBigDecimal()} returns what the equivalent {@link BigDecimal} arithmetic
+ * would have. Equality and ordering only look at the number of pence.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0, 0);
+
+    private static final int PENCE_SCALE = 2;
+
+    private final long pence;
+
+    private final int scale;
+
+    private Money(long pence, int scale) {
+        this.pence = pence;
+        this.scale = scale;
+    }
+
+    /**
+     * @throws ArithmeticException if the amount has a fraction of a penny or does not fit in a {@code long}
+     */
+    public static Money of(BigDecimal amount) {
+        return new Money(amount.movePointRight(PENCE_SCALE).longValueExact(), Math.max(amount.scale(), 0));
+    }
+
+    /**
+     * Like {@link #of(BigDecimal)}, but an amount with a fraction of a penny is rounded to whole pence with
+     * {@code roundingMode} instead of being rejected.
+     *
+     * @throws ArithmeticException if the amount does not fit in a {@code long}
+     */
+    public static Money of(BigDecimal amount, RoundingMode roundingMode) {
+        if (amount.scale() <= PENCE_SCALE || amount.stripTrailingZeros().scale() <= PENCE_SCALE) {
+            return of(amount);
+        }
+        return new Money(amount.setScale(PENCE_SCALE, roundingMode).movePointRight(PENCE_SCALE).longValueExact(), PENCE_SCALE);
+    }
+
+    public static Money ofPence(long pence) {
+        return new Money(pence, PENCE_SCALE);
+    }
+
+    public long getPence() {
+        return pence;
+    }
+
+    public Money add(Money other) {
+        return new Money(Math.addExact(pence, other.pence), Math.max(scale, other.scale));
+    }
+
+    public Money subtract(Money other) {
+        return new Money(Math.subtractExact(pence, other.pence), Math.max(scale, other.scale));
+    }
+
+    public int signum() {
+        return Long.signum(pence);
+    }
+
+    public boolean isPositive() {
+        return pence > 0;
+    }
+
+    public boolean isNegative() {
+        return pence < 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        BigDecimal amount = BigDecimal.valueOf(pence, PENCE_SCALE);
+        return scale == PENCE_SCALE ? amount : amount.setScale(scale);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(pence, other.pence);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof Money && pence == ((Money) other).pence;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(pence);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
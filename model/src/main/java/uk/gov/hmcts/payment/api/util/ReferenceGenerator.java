@@ -0,0 +1,233 @@
+package uk.gov.hmcts.payment.api.util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates payment (RC/RM) and payment group references. One instance is shared by all callers: it is
+ * thread-safe, and each reference is built digit by digit into a single char array rather than through
+ * formatting or regex splitting.
+ *
+ * <p>References are unique without a database round trip. Each one is made of a tick (tenths of a second),
+ * the id of the node that issued it and a sequence number within that tick. The node id is leased by
+ * {@code ReferenceNodeAllocator}, so no two running nodes share it. Within a node, the tick and sequence come from
+ * one atomic counter. When a tick's sequence is used up, the counter moves on to the next tick, even if the wall
+ * clock has not got there yet. It is never allowed to run more than {@link #DEFAULT_MAX_AHEAD_MILLIS} ahead.
+ */
+public final class ReferenceGenerator {
+
+    public static final long DEFAULT_MAX_AHEAD_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    public static final int MAX_NODE_ID = 9;
+
+    private static final ReferenceGenerator INSTANCE = new ReferenceGenerator(System::currentTimeMillis, DEFAULT_MAX_AHEAD_MILLIS);
+
+    private static final long MILLIS_PER_TICK = 100;
+
+    private static final int DIGIT_GROUP_SIZE = 4;
+
+    /* payment reference: tick, 1 node digit, 3 sequence digits, check digit */
+    private static final int PAYMENT_SEQUENCE_DIGITS = 3;
+
+    private static final long PAYMENT_SEQUENCE_LIMIT = 1000;
+
+    /* group reference: tick (at least 10 digits), 1 node digit, 1 sequence digit */
+    private static final int GROUP_REFERENCE_TIMESTAMP_WIDTH = 10;
+
+    private static final int GROUP_SEQUENCE_DIGITS = 1;
+
+    private static final long GROUP_SEQUENCE_LIMIT = 10;
+
+    private final LongSupplier clock;
+
+    private final long maxAheadTicks;
+
+    private final AtomicLong paymentCounter = new AtomicLong();
+
+    private final AtomicLong groupCounter = new AtomicLong();
+
+    private volatile int nodeId;
+
+    private volatile long leaseValidUntil = Long.MAX_VALUE;
+
+    private volatile YearWindow yearWindow;
+
+    ReferenceGenerator(LongSupplier clock, long maxAheadMillis) {
+        this.clock = clock;
+        this.maxAheadTicks = maxAheadMillis / MILLIS_PER_TICK;
+    }
+
+    public static ReferenceGenerator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the node id written into every reference. {@code leaseValidUntil} is the time (epoch millis) after which
+     * the node id may belong to another node; generating a reference after it fails rather than risk a duplicate.
+     */
+    public void assignNode(int nodeId, long leaseValidUntil) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Reference node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.leaseValidUntil = leaseValidUntil;
+    }
+
+    /**
+     * Stops references being generated until a node is assigned again, for when the node id may already belong to
+     * another node.
+     */
+    public void revokeNode() {
+        this.leaseValidUntil = Long.MIN_VALUE;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Returns a reference such as {@code RC-1602-9504-0012-3452}: the tick, the node id, a three digit sequence and
+     * a Luhn check digit, split into groups of four.
+     */
+    public String nextPaymentReference(String prefix) {
+        long next = nextValue(paymentCounter, PAYMENT_SEQUENCE_LIMIT);
+        long tick = next / PAYMENT_SEQUENCE_LIMIT;
+
+        int tickDigits = digitCount(tick);
+        int digitCount = tickDigits + 1 + PAYMENT_SEQUENCE_DIGITS + 1;
+        char[] digits = new char[digitCount];
+        writeDigits(digits, tickDigits, tick, tickDigits);
+        digits[tickDigits] = (char) ('0' + nodeId);
+        writeDigits(digits, digitCount - 1, next % PAYMENT_SEQUENCE_LIMIT, PAYMENT_SEQUENCE_DIGITS);
+        digits[digitCount - 1] = luhnCheckDigit(digits, digitCount - 1);
+
+        int prefixLength = prefix.length();
+        char[] reference = new char[prefixLength + 1 + digitCount + (digitCount - 1) / DIGIT_GROUP_SIZE];
+        prefix.getChars(0, prefixLength, reference, 0);
+        int pos = prefixLength;
+        for (int i = 0; i < digitCount; i++) {
+            if (i % DIGIT_GROUP_SIZE == 0) {
+                reference[pos++] = '-';
+            }
+            reference[pos++] = digits[i];
+        }
+        return new String(reference);
+    }
+
+    /**
+     * Returns a payment group reference such as {@code 2020-160295040031}: the current year, the tick (at least ten
+     * digits), the node id and a one digit sequence.
+     */
+    public String nextGroupReference() {
+        long next = nextValue(groupCounter, GROUP_SEQUENCE_LIMIT);
+        long tick = next / GROUP_SEQUENCE_LIMIT;
+
+        int tickWidth = Math.max(GROUP_REFERENCE_TIMESTAMP_WIDTH, digitCount(tick));
+        char[] reference = new char[5 + tickWidth + 1 + GROUP_SEQUENCE_DIGITS];
+        writeDigits(reference, 4, currentYear(clock.getAsLong()), 4);
+        reference[4] = '-';
+        writeDigits(reference, 5 + tickWidth, tick, tickWidth);
+        reference[5 + tickWidth] = (char) ('0' + nodeId);
+        writeDigits(reference, reference.length, next % GROUP_SEQUENCE_LIMIT, GROUP_SEQUENCE_DIGITS);
+        return new String(reference);
+    }
+
+    /**
+     * Atomically advances {@code counter}, which holds {@code tick * sequenceLimit + sequence}, to the first value
+     * of the current tick or, if that has already been used, to the value after the last one handed out.
+     */
+    private long nextValue(AtomicLong counter, long sequenceLimit) {
+        while (true) {
+            long now = clock.getAsLong();
+            if (now > leaseValidUntil) {
+                throw new IllegalStateException("Reference node lease for node " + nodeId + " has expired");
+            }
+            long nowTick = now / MILLIS_PER_TICK;
+            long current = counter.get();
+            long next = Math.max(nowTick * sequenceLimit, current + 1);
+            if (next / sequenceLimit - nowTick > maxAheadTicks) {
+                /* sustained burst: wait for the wall clock to catch up rather than run further ahead */
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            if (counter.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    static char luhnCheckDigit(char[] digits, int length) {
+        int sum = 0;
+        boolean doubleDigit = true;
+        for (int i = length - 1; i >= 0; i--) {
+            int digit = digits[i] - '0';
+            if (doubleDigit) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubleDigit = !doubleDigit;
+        }
+        return (char) ('0' + (10 - sum % 10) % 10);
+    }
+
+    private static void writeDigits(char[] buffer, int end, long value, int width) {
+        for (int i = end - 1; i >= end - width; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private int currentYear(long now) {
+        YearWindow window = yearWindow;
+        if (window == null || !window.contains(now)) {
+            window = YearWindow.containing(now);
+            yearWindow = window;
+        }
+        return window.year;
+    }
+
+    private static final class YearWindow {
+
+        private final int year;
+
+        private final long start;
+
+        private final long end;
+
+        private YearWindow(int year, long start, long end) {
+            this.year = year;
+            this.start = start;
+            this.end = end;
+        }
+
+        private boolean contains(long millis) {
+            return millis >= start && millis < end;
+        }
+
+        private static YearWindow containing(long millis) {
+            ZoneId zone = ZoneId.systemDefault();
+            int year = Instant.ofEpochMilli(millis).atZone(zone).getYear();
+            LocalDate startOfYear = LocalDate.of(year, 1, 1);
+            return new YearWindow(year,
+                startOfYear.atStartOfDay(zone).toInstant().toEpochMilli(),
+                startOfYear.plusYears(1).atStartOfDay(zone).toInstant().toEpochMilli());
+        }
+    }
+}
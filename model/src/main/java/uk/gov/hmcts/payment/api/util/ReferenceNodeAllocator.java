@@ -0,0 +1,177 @@
+package uk.gov.hmcts.payment.api.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import uk.gov.hmcts.payment.api.model.ReferenceNode;
+import uk.gov.hmcts.payment.api.model.ReferenceNodeRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leases a node id for {@link ReferenceGenerator} from the reference_node table at start up and keeps the lease
+ * alive, so that no two running instances put the same node id into references. A fixed node id can be configured
+ * instead with {@code reference.node.id}.
+ *
+ * <p>References carry the node id as a single digit, so at most {@link ReferenceGenerator#MAX_NODE_ID} + 1
+ * instances can generate references at once. An instance that cannot lease a node id, at start up or after losing
+ * its lease, keeps trying on every renewal and reports itself as down through {@link #hasLease()} until it gets one.
+ */
+@Component
+public class ReferenceNodeAllocator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReferenceNodeAllocator.class);
+
+    private final ReferenceNodeRepository referenceNodeRepository;
+
+    private final ReferenceGenerator referenceGenerator;
+
+    private final String owner;
+
+    @Value("${reference.node.id:-1}")
+    private int configuredNodeId = -1;
+
+    @Value("${reference.node.lease-seconds:60}")
+    private int leaseSeconds = 60;
+
+    private volatile Integer nodeId;
+
+    /* epoch millis until which the generator may use nodeId */
+    private volatile long usableUntil;
+
+    @Autowired
+    public ReferenceNodeAllocator(ReferenceNodeRepository referenceNodeRepository) {
+        this(referenceNodeRepository, ReferenceGenerator.getInstance());
+    }
+
+    ReferenceNodeAllocator(ReferenceNodeRepository referenceNodeRepository, ReferenceGenerator referenceGenerator) {
+        this.referenceNodeRepository = referenceNodeRepository;
+        this.referenceGenerator = referenceGenerator;
+        this.owner = hostName() + "-" + UUID.randomUUID();
+    }
+
+    @PostConstruct
+    public void acquire() {
+        if (configuredNodeId >= 0) {
+            referenceGenerator.assignNode(configuredNodeId, Long.MAX_VALUE);
+            nodeId = configuredNodeId;
+            usableUntil = Long.MAX_VALUE;
+            LOG.info("Using configured reference node id {}", configuredNodeId);
+            return;
+        }
+
+        /* nothing may be generated under the generator's default node id before a lease is held */
+        referenceGenerator.revokeNode();
+        tryAcquire();
+    }
+
+    @Scheduled(fixedDelayString = "${reference.node.renew-interval-ms:20000}")
+    public void renew() {
+        if (configuredNodeId >= 0) {
+            return;
+        }
+
+        Integer current = nodeId;
+        if (current == null) {
+            tryAcquire();
+            return;
+        }
+
+        try {
+            Date expiresAt = new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(leaseSeconds));
+            if (referenceNodeRepository.renew(current, owner, expiresAt) == 1) {
+                assign(current, expiresAt);
+                return;
+            }
+        } catch (RuntimeException e) {
+            /* the generator stops issuing references once the current lease can no longer be trusted */
+            LOG.error("Error renewing the lease on reference node id {}", current, e);
+            return;
+        }
+
+        LOG.error("Lost the lease on reference node id {}, leasing a new one", current);
+        nodeId = null;
+        referenceGenerator.revokeNode();
+        tryAcquire();
+    }
+
+    /**
+     * Whether references can be generated, that is whether a node id is configured or leased and the lease has
+     * not run out.
+     */
+    public boolean hasLease() {
+        return nodeId != null && System.currentTimeMillis() <= usableUntil;
+    }
+
+    public Integer getNodeId() {
+        return nodeId;
+    }
+
+    public long getUsableUntil() {
+        return usableUntil;
+    }
+
+    @PreDestroy
+    public void release() {
+        Integer current = nodeId;
+        if (current == null || configuredNodeId >= 0) {
+            return;
+        }
+
+        nodeId = null;
+        referenceNodeRepository.release(current, owner,
+            new Date(System.currentTimeMillis() + ReferenceGenerator.DEFAULT_MAX_AHEAD_MILLIS));
+    }
+
+    private void tryAcquire() {
+        try {
+            long now = System.currentTimeMillis();
+            Date expiresAt = new Date(now + TimeUnit.SECONDS.toMillis(leaseSeconds));
+            if (referenceNodeRepository.acquire(owner, new Date(now), expiresAt) == 0) {
+                LOG.error("No reference node id is free, at most {} instances can generate references; retrying",
+                    ReferenceGenerator.MAX_NODE_ID + 1);
+                return;
+            }
+
+            int acquired = referenceNodeRepository.findByOwner(owner)
+                .map(ReferenceNode::getNodeId)
+                .orElseThrow(() -> new IllegalStateException("Reference node lease not found for " + owner));
+            assign(acquired, expiresAt);
+            LOG.info("Leased reference node id {} until {}", acquired, expiresAt);
+        } catch (RuntimeException e) {
+            LOG.error("Error leasing a reference node id; retrying", e);
+        }
+    }
+
+    private void assign(int leased, Date expiresAt) {
+        long until = usableUntil(expiresAt);
+        referenceGenerator.assignNode(leased, until);
+        usableUntil = until;
+        nodeId = leased;
+    }
+
+    /**
+     * References may be issued up to {@link ReferenceGenerator#DEFAULT_MAX_AHEAD_MILLIS} ahead of the wall clock,
+     * so stop issuing them that long before the lease runs out.
+     */
+    private static long usableUntil(Date expiresAt) {
+        return expiresAt.getTime() - ReferenceGenerator.DEFAULT_MAX_AHEAD_MILLIS;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
@@ -1,15 +1,29 @@
 package uk.gov.hmcts.payment.api.configuration;
 
 import com.launchdarkly.sdk.LDUser;
+import com.launchdarkly.sdk.server.interfaces.FlagChangeEvent;
+import com.launchdarkly.sdk.server.interfaces.FlagChangeListener;
+import com.launchdarkly.sdk.server.interfaces.FlagTracker;
 import com.launchdarkly.sdk.server.interfaces.LDClientInterface;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -20,6 +34,9 @@ public class LaunchDarklyFeatureTogglerTest {
     @Mock
     LDClientInterface ldClient;
 
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     LaunchDarklyFeatureToggler launchDarklyFeatureToggler;
 
@@ -31,4 +48,49 @@ public class LaunchDarklyFeatureTogglerTest {
         assertEquals(false,response);
     }
 
+    @Test
+    public void flagIsEvaluatedOnceClientHasFlagData() {
+        when(ldClient.isInitialized()).thenReturn(true);
+        when(ldClient.boolVariation(eq("apportion-feature"), any(LDUser.class), eq(false))).thenReturn(true);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(launchDarklyFeatureToggler.getBooleanValue("apportion-feature", false));
+        }
+
+        verify(ldClient, times(1)).boolVariation(eq("apportion-feature"), any(LDUser.class), eq(false));
+    }
+
+    @Test
+    public void changedFlagIsEvaluatedAgainAndChangeIsPublished() {
+        FlagTracker flagTracker = mock(FlagTracker.class);
+        when(ldClient.getFlagTracker()).thenReturn(flagTracker);
+        when(ldClient.isInitialized()).thenReturn(true);
+        when(ldClient.boolVariation(eq("apportion-feature"), any(LDUser.class), eq(false))).thenReturn(false, true);
+        launchDarklyFeatureToggler.registerFlagChangeListener();
+        ArgumentCaptor<FlagChangeListener> listener = ArgumentCaptor.forClass(FlagChangeListener.class);
+        verify(flagTracker).addFlagChangeListener(listener.capture());
+
+        assertEquals(false, launchDarklyFeatureToggler.getBooleanValue("apportion-feature", false));
+        listener.getValue().onFlagChange(new FlagChangeEvent("apportion-feature"));
+
+        assertEquals(true, launchDarklyFeatureToggler.getBooleanValue("apportion-feature", false));
+        ArgumentCaptor<ApplicationEvent> event = ArgumentCaptor.forClass(ApplicationEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals("apportion-feature", ((FeatureFlagChangedEvent) event.getValue()).getKey());
+    }
+
+    @Test
+    public void flagKeepsItsValueForTheRestOfTheRequest() {
+        when(ldClient.boolVariation(eq("apportion-feature"), any(LDUser.class), eq(false))).thenReturn(true, false);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            assertTrue(launchDarklyFeatureToggler.getBooleanValue("apportion-feature", false));
+            assertTrue(launchDarklyFeatureToggler.getBooleanValue("apportion-feature", false));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        assertEquals(false, launchDarklyFeatureToggler.getBooleanValue("apportion-feature", false));
+    }
+
 }
@@ -0,0 +1,83 @@
+package uk.gov.hmcts.payment.api.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReferenceDataRegistryTest {
+
+    @Mock
+    private PaymentStatusRepository paymentStatusRepository;
+
+    @Mock
+    private PaymentChannelRepository paymentChannelRepository;
+
+    private ReferenceDataRegistry referenceDataRegistry;
+
+    private PaymentStatusRepository advisedPaymentStatusRepository;
+
+    @Before
+    public void setUp() {
+        when(paymentStatusRepository.getEntityName()).thenReturn(PaymentStatus.class.getName());
+        when(paymentChannelRepository.getEntityName()).thenReturn(PaymentChannel.class.getName());
+        when(paymentStatusRepository.findAll()).thenReturn(Arrays.asList(PaymentStatus.CREATED, PaymentStatus.SUCCESS));
+        when(paymentChannelRepository.findAll()).thenReturn(Collections.singletonList(PaymentChannel.TELEPHONY));
+
+        referenceDataRegistry = new ReferenceDataRegistry(Arrays.asList(paymentStatusRepository, paymentChannelRepository));
+        referenceDataRegistry.refresh();
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(paymentStatusRepository);
+        proxyFactory.addAspect(new ReferenceDataRegistryAspect(referenceDataRegistry));
+        advisedPaymentStatusRepository = proxyFactory.getProxy();
+    }
+
+    @Test
+    public void registryIsKeyedByEntityTypeAndName() {
+        assertSame(PaymentStatus.SUCCESS, referenceDataRegistry.find(paymentStatusRepository, "success").get());
+        assertSame(PaymentChannel.TELEPHONY, referenceDataRegistry.find(paymentChannelRepository, "telephony").get());
+        assertFalse(referenceDataRegistry.find(paymentChannelRepository, "success").isPresent());
+    }
+
+    @Test
+    public void refreshReplacesTheLoadedCopy() {
+        PaymentStatus pending = new PaymentStatus("pending", "pending");
+        when(paymentStatusRepository.findAll()).thenReturn(Arrays.asList(PaymentStatus.CREATED, pending));
+
+        Map<String, Integer> counts = referenceDataRegistry.refresh();
+
+        assertEquals(Integer.valueOf(2), counts.get(PaymentStatus.class.getName()));
+        assertSame(pending, referenceDataRegistry.find(paymentStatusRepository, "pending").get());
+        assertFalse(referenceDataRegistry.find(paymentStatusRepository, "success").isPresent());
+    }
+
+    @Test
+    public void findByNameOrThrowIsServedFromTheRegistry() {
+        assertSame(PaymentStatus.CREATED, advisedPaymentStatusRepository.findByNameOrThrow("created"));
+
+        verify(paymentStatusRepository, never()).findByNameOrThrow(anyString());
+    }
+
+    @Test
+    public void findByNameOrThrowFallsBackToTheDatabaseForUnknownNames() {
+        PaymentStatus pending = new PaymentStatus("pending", "pending");
+        when(paymentStatusRepository.findByNameOrThrow("pending")).thenReturn(pending);
+
+        assertSame(pending, advisedPaymentStatusRepository.findByNameOrThrow("pending"));
+    }
+}
@@ -0,0 +1,191 @@
+package uk.gov.hmcts.payment.api.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import uk.gov.hmcts.payment.api.dto.FeePayApportionCCDCase;
+import uk.gov.hmcts.payment.api.model.*;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.*;
+
+public class FeePayApportionServiceImplTest {
+
+    @InjectMocks
+    private FeePayApportionServiceImpl feePayApportionService;
+
+    @Mock
+    private PaymentFeeLinkRepository paymentFeeLinkRepository;
+
+    @Mock
+    private PaymentStatusRepository paymentStatusRepository;
+
+    @Mock
+    private FeePayApportionRepository feePayApportionRepository;
+
+    @Mock
+    private PaymentFeeRepository paymentFeeRepository;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void processFeePayApportionPutsTheSurplusOnTheLastApportion() {
+        FeePayApportionCCDCase ccdCase = ccdCase(1, new BigDecimal("350.00"));
+
+        feePayApportionService.processFeePayApportion(ccdCase);
+
+        List<FeePayApportion> apportions = ccdCase.getFeePayGroups().get(0).getApportions();
+        assertThat(apportions).extracting(FeePayApportion::getApportionAmount)
+            .containsExactly(new BigDecimal("100.00"), new BigDecimal("200.00"));
+        assertThat(apportions.get(0).getCallSurplusAmount()).isNull();
+        assertThat(apportions.get(1).getCallSurplusAmount()).isEqualByComparingTo("50.00");
+    }
+
+    @Test
+    public void concurrentApportionmentsDoNotShareSurplusState() throws Exception {
+        int cases = 400;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            /* even cases overpay by 50, odd cases pay exactly what is due */
+            List<CompletableFuture<FeePayApportionCCDCase>> futures = IntStream.range(0, cases)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> {
+                    FeePayApportionCCDCase ccdCase = ccdCase(i, i % 2 == 0 ? new BigDecimal("350.00") : new BigDecimal("300.00"));
+                    awaitQuietly(start);
+                    return feePayApportionService.processFeePayApportion(ccdCase);
+                }, executor))
+                .collect(Collectors.toList());
+            start.countDown();
+
+            for (int i = 0; i < cases; i++) {
+                int paymentId = 1000 + i;
+                List<FeePayApportion> apportions = futures.get(i).get().getFeePayGroups().get(0).getApportions();
+                assertThat(apportions).hasSize(2);
+                assertThat(apportions).allMatch(apportion -> apportion.getPaymentId() == paymentId);
+                if (i % 2 == 0) {
+                    assertThat(apportions.get(1).getCallSurplusAmount()).isEqualByComparingTo("50.00");
+                } else {
+                    assertThat(apportions.get(1).getCallSurplusAmount()).isNull();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void updateFeeAmountDueLoadsFeesInOneQueryAndSavesThemTogether() {
+        Payment payment = Payment.paymentWith().id(1).amount(new BigDecimal("350.00"))
+            .paymentChannel(PaymentChannel.TELEPHONY)
+            .paymentStatus(PaymentStatus.SUCCESS)
+            .build();
+        PaymentFee first = PaymentFee.feeWith().id(1).amountDue(new BigDecimal("100.00")).build();
+        PaymentFee second = PaymentFee.feeWith().id(2).amountDue(new BigDecimal("200.00")).build();
+        FeePayApportion firstApportion = FeePayApportion.feePayApportionWith().feeId(1).paymentId(1)
+            .apportionAmount(new BigDecimal("100.00")).callSurplusAmount(BigDecimal.ZERO).build();
+        FeePayApportion secondApportion = FeePayApportion.feePayApportionWith().feeId(2).paymentId(1)
+            .apportionAmount(new BigDecimal("200.00")).callSurplusAmount(new BigDecimal("50.00")).build();
+        when(feePayApportionRepository.findByPaymentId(1)).thenReturn(Optional.of(Arrays.asList(firstApportion, secondApportion)));
+        when(paymentFeeRepository.findByIdIn(anyCollection())).thenReturn(Arrays.asList(first, second));
+
+        feePayApportionService.updateFeeAmountDue(payment);
+
+        assertThat(first.getAmountDue()).isEqualByComparingTo("0.00");
+        assertThat(second.getAmountDue()).isEqualByComparingTo("-50.00");
+        assertThat(secondApportion.getCallSurplusAmount()).isEqualByComparingTo("100.00");
+        verify(paymentFeeRepository, times(1)).findByIdIn(anyCollection());
+        verify(paymentFeeRepository, never()).findById(anyInt());
+        verify(paymentFeeRepository, never()).save(any(PaymentFee.class));
+        verify(paymentFeeRepository).saveAll(anyIterable());
+        verify(feePayApportionRepository).saveAll(Collections.singletonList(secondApportion));
+    }
+
+    @Test
+    public void processCaseApportionsApportionsUnapportionedPaymentsInOrder() {
+        PaymentFee first = fee(1, new BigDecimal("100.00"));
+        PaymentFee second = fee(2, new BigDecimal("200.00"));
+        first.setDateCreated(new Timestamp(100));
+        second.setDateCreated(new Timestamp(200));
+        /* fees from before apportionment have no amount due, even when a payment was apportioned to them */
+        first.setAmountDue(null);
+        second.setAmountDue(null);
+        Payment earlier = Payment.paymentWith().id(10).amount(new BigDecimal("150.00")).ccdCaseNumber("ccd")
+            .paymentStatus(PaymentStatus.SUCCESS).dateCreated(new Timestamp(1000)).build();
+        Payment later = Payment.paymentWith().id(11).amount(new BigDecimal("100.00")).ccdCaseNumber("ccd")
+            .paymentStatus(PaymentStatus.SUCCESS).dateCreated(new Timestamp(2000)).build();
+        Payment alreadyApportioned = Payment.paymentWith().id(12).amount(new BigDecimal("50.00")).ccdCaseNumber("ccd")
+            .paymentStatus(PaymentStatus.SUCCESS).dateCreated(new Timestamp(500)).build();
+        PaymentFeeLink paymentFeeLink = PaymentFeeLink.paymentFeeLinkWith()
+            .fees(Arrays.asList(first, second))
+            .payments(Arrays.asList(later, earlier, alreadyApportioned))
+            .remissions(Collections.emptyList())
+            .build();
+        Arrays.asList(first, second).forEach(fee -> fee.setPaymentLink(paymentFeeLink));
+        Arrays.asList(earlier, later, alreadyApportioned).forEach(payment -> payment.setPaymentLink(paymentFeeLink));
+        when(paymentFeeRepository.findByCcdCaseNumber("ccd")).thenReturn(Optional.of(Arrays.asList(second, first)));
+        when(feePayApportionRepository.findByFeeIdIn(anyCollection())).thenReturn(Collections.singletonList(
+            FeePayApportion.feePayApportionWith().paymentId(12).feeId(1).apportionAmount(new BigDecimal("50.00")).build()));
+
+        int apportioned = feePayApportionService.processCaseApportions(Collections.singletonList("ccd"));
+
+        assertThat(apportioned).isEqualTo(2);
+        /* only the 50.00 left on the first fee is apportioned to it */
+        assertThat(paymentFeeLink.getApportions())
+            .extracting(FeePayApportion::getPaymentId, FeePayApportion::getFeeId, FeePayApportion::getApportionAmount)
+            .containsExactly(
+                tuple(10, 1, new BigDecimal("50.00")),
+                tuple(10, 2, new BigDecimal("100.00")),
+                tuple(11, 2, new BigDecimal("100.00")));
+        assertThat(first.getAmountDue()).isEqualByComparingTo("0.00");
+        assertThat(second.getAmountDue()).isEqualByComparingTo("0.00");
+        verify(paymentFeeLinkRepository, times(2)).save(paymentFeeLink);
+        verify(paymentFeeRepository).lockCaseForApportionment("ccd");
+    }
+
+    private static FeePayApportionCCDCase ccdCase(int i, BigDecimal paymentAmount) {
+        List<PaymentFee> fees = new ArrayList<>();
+        fees.add(fee(i * 10 + 1, new BigDecimal("100.00")));
+        fees.add(fee(i * 10 + 2, new BigDecimal("200.00")));
+        Payment payment = Payment.paymentWith().id(1000 + i).amount(paymentAmount).ccdCaseNumber("ccd" + i).build();
+        return FeePayApportionCCDCase.feePayApportionCCDCaseWith()
+            .ccdCaseNo("ccd" + i)
+            .feePayGroups(Collections.singletonList(PaymentFeeLink.paymentFeeLinkWith().fees(fees).build()))
+            .fees(fees)
+            .payments(Collections.singletonList(payment))
+            .build();
+    }
+
+    private static PaymentFee fee(int id, BigDecimal amount) {
+        return PaymentFee.feeWith().id(id).netAmount(amount).amountDue(amount)
+            .dateCreated(new Timestamp(System.currentTimeMillis()))
+            .build();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
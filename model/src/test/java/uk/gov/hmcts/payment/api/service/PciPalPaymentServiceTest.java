@@ -5,14 +5,20 @@ import com.github.tomakehurst.wiremock.matching.EqualToPattern;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.HttpClients;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 import uk.gov.hmcts.payment.api.dto.PciPalPaymentRequest;
+import uk.gov.hmcts.payment.api.external.client.dto.TelephonyProviderAuthorisationResponse;
 
 import java.net.URISyntaxException;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
@@ -71,4 +77,90 @@ public class PciPalPaymentServiceTest {
         HttpGet getRequest = new HttpGet(uriBuilder.build());
         assertThat(response).isEqualTo(getRequest.getURI().toString());
     }
+
+    @Test
+    public void antennaTokensAreReusedUntilShortlyBeforeTheyExpire() {
+        PciPalPaymentService tokenService = antennaTokenService();
+        stubFor(post(urlEqualTo("/tokens"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{\"access_token\":\"access-1\",\"expires_in\":\"3600\",\"refresh_token\":\"refresh-1\"}")));
+
+        TelephonyProviderAuthorisationResponse first = tokenService.getPaymentProviderAutorisationTokens();
+        first.setNextUrl("next-url");
+        TelephonyProviderAuthorisationResponse second = tokenService.getPaymentProviderAutorisationTokens();
+
+        assertThat(second.getAccessToken()).isEqualTo("access-1");
+        assertThat(second.getNextUrl()).isNull();
+        verify(1, postRequestedFor(urlEqualTo("/tokens")));
+    }
+
+    @Test
+    public void expiredAntennaTokensAreRenewedWithTheRefreshToken() {
+        PciPalPaymentService tokenService = antennaTokenService();
+        stubFor(post(urlEqualTo("/tokens"))
+            .withRequestBody(containing("grant_type=client_credentials"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{\"access_token\":\"access-1\",\"expires_in\":\"30\",\"refresh_token\":\"refresh-1\"}")));
+        stubFor(post(urlEqualTo("/tokens"))
+            .withRequestBody(containing("grant_type=refresh_token"))
+            .withRequestBody(containing("refresh_token=refresh-1"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{\"access_token\":\"access-2\",\"expires_in\":\"3600\",\"refresh_token\":\"refresh-2\"}")));
+
+        assertThat(tokenService.getPaymentProviderAutorisationTokens().getAccessToken()).isEqualTo("access-1");
+        /* 30 seconds is inside the default 60 second expiry margin, so the first tokens are not reused */
+        assertThat(tokenService.getPaymentProviderAutorisationTokens().getAccessToken()).isEqualTo("access-2");
+        assertThat(tokenService.getPaymentProviderAutorisationTokens().getAccessToken()).isEqualTo("access-2");
+
+        verify(1, postRequestedFor(urlEqualTo("/tokens")).withRequestBody(containing("grant_type=client_credentials")));
+        verify(1, postRequestedFor(urlEqualTo("/tokens")).withRequestBody(containing("grant_type=refresh_token")));
+    }
+
+    @Test
+    public void antennaTokensWithoutAnExpiryAreKeptForTheDefaultLifetime() {
+        PciPalPaymentService tokenService = antennaTokenService();
+        stubFor(post(urlEqualTo("/tokens"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{\"access_token\":\"access-1\",\"expires_in\":\"0\",\"refresh_token\":\"refresh-1\"}")));
+
+        assertThat(tokenService.getPaymentProviderAutorisationTokens().getAccessToken()).isEqualTo("access-1");
+        assertThat(tokenService.getPaymentProviderAutorisationTokens().getAccessToken()).isEqualTo("access-1");
+        assertThat(tokenService.getPaymentProviderAutorisationTokens().getAccessToken()).isEqualTo("access-1");
+
+        verify(1, postRequestedFor(urlEqualTo("/tokens")));
+    }
+
+    @Test
+    public void antennaTokensWithAnUnreadableExpiryAreKeptForTheDefaultLifetime() {
+        PciPalPaymentService tokenService = antennaTokenService();
+        stubFor(post(urlEqualTo("/tokens"))
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{\"access_token\":\"access-1\",\"expires_in\":\"soon\"}")));
+
+        assertThat(tokenService.getPaymentProviderAutorisationTokens().getAccessToken()).isEqualTo("access-1");
+        assertThat(tokenService.getPaymentProviderAutorisationTokens().getAccessToken()).isEqualTo("access-1");
+
+        verify(1, postRequestedFor(urlEqualTo("/tokens")));
+    }
+
+    private PciPalPaymentService antennaTokenService() {
+        PciPalPaymentService tokenService = new PciPalPaymentService(url, callbackUrl, HttpClients.createDefault(), new ObjectMapper());
+        ReflectionTestUtils.setField(tokenService, "tokensURL", url + "/tokens");
+        ReflectionTestUtils.setField(tokenService, "grantType", "client_credentials");
+        ReflectionTestUtils.setField(tokenService, "tenantName", "tenant");
+        ReflectionTestUtils.setField(tokenService, "userName", "user");
+        ReflectionTestUtils.setField(tokenService, "clientId", "client");
+        ReflectionTestUtils.setField(tokenService, "clientSecret", "secret");
+        return tokenService;
+    }
 }
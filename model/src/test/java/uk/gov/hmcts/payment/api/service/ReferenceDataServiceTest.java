@@ -4,13 +4,34 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+import uk.gov.hmcts.payment.api.dto.OrganisationalServiceDto;
+import uk.gov.hmcts.payment.api.v1.model.exceptions.GatewayTimeoutException;
+import uk.gov.hmcts.payment.api.v1.model.exceptions.NoServiceFoundException;
 import uk.gov.hmcts.payment.referencedata.model.Site;
 import uk.gov.hmcts.payment.referencedata.service.SiteService;
+import uk.gov.hmcts.reform.authorisation.generators.AuthTokenGenerator;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -20,6 +41,12 @@ public class ReferenceDataServiceTest {
     @Mock
     SiteService<Site, String> siteService;
 
+    @Mock
+    RestTemplate restTemplatePaymentGroup;
+
+    @Mock
+    AuthTokenGenerator authTokenGenerator;
+
     @InjectMocks
     ReferenceDataServiceImpl referenceDataService;
 
@@ -35,4 +62,101 @@ public class ReferenceDataServiceTest {
         verify(siteService).getAllSites();
     }
 
+    @Test
+    public void organisationalDetailIsLookedUpOncePerCaseType() {
+        enableCache(0);
+        when(authTokenGenerator.generate()).thenReturn("test-token");
+        when(restTemplatePaymentGroup.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class),
+            eq(new ParameterizedTypeReference<List<OrganisationalServiceDto>>() {})))
+            .thenReturn(new ResponseEntity<>(Collections.singletonList(organisationalService()), HttpStatus.OK));
+
+        assertEquals("AA07", referenceDataService.getOrganisationalDetail("DIVORCE", headers()).getServiceCode());
+        assertEquals("AA07", referenceDataService.getOrganisationalDetail("DIVORCE", headers()).getServiceCode());
+
+        verify(restTemplatePaymentGroup, times(1)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class),
+            eq(new ParameterizedTypeReference<List<OrganisationalServiceDto>>() {}));
+    }
+
+    @Test
+    public void unknownCaseTypeIsRemembered() {
+        enableCache(0);
+        when(authTokenGenerator.generate()).thenReturn("test-token");
+        when(restTemplatePaymentGroup.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class),
+            eq(new ParameterizedTypeReference<List<OrganisationalServiceDto>>() {})))
+            .thenReturn(new ResponseEntity<>(Collections.emptyList(), HttpStatus.OK));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                referenceDataService.getOrganisationalDetail("UNKNOWN", headers());
+                fail("Expected NoServiceFoundException");
+            } catch (NoServiceFoundException expected) {
+            }
+        }
+
+        verify(restTemplatePaymentGroup, times(1)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class),
+            eq(new ParameterizedTypeReference<List<OrganisationalServiceDto>>() {}));
+    }
+
+    @Test
+    public void expiredOrganisationalDetailIsUsedWhileReferenceDataIsFailing() {
+        enableCache(60);
+        ReflectionTestUtils.setField(referenceDataService, "cacheTtlSeconds", 1L);
+        when(authTokenGenerator.generate()).thenReturn("test-token");
+        when(restTemplatePaymentGroup.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class),
+            eq(new ParameterizedTypeReference<List<OrganisationalServiceDto>>() {})))
+            .thenReturn(new ResponseEntity<>(Collections.singletonList(organisationalService()), HttpStatus.OK))
+            .thenThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+
+        referenceDataService.getOrganisationalDetail("DIVORCE", headers());
+        expireCachedEntries();
+
+        assertEquals("AA07", referenceDataService.getOrganisationalDetail("DIVORCE", headers()).getServiceCode());
+        /* the failure is not retried until the retry interval has passed */
+        assertEquals("AA07", referenceDataService.getOrganisationalDetail("DIVORCE", headers()).getServiceCode());
+        verify(restTemplatePaymentGroup, times(2)).exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class),
+            eq(new ParameterizedTypeReference<List<OrganisationalServiceDto>>() {}));
+    }
+
+    @Test(expected = GatewayTimeoutException.class)
+    public void failingReferenceDataIsReportedWhenNothingIsCached() {
+        enableCache(0);
+        when(authTokenGenerator.generate()).thenReturn("test-token");
+        when(restTemplatePaymentGroup.exchange(anyString(), any(HttpMethod.class), any(HttpEntity.class),
+            eq(new ParameterizedTypeReference<List<OrganisationalServiceDto>>() {})))
+            .thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        referenceDataService.getOrganisationalDetail("DIVORCE", headers());
+    }
+
+    private void enableCache(long retryAfterSeconds) {
+        ReflectionTestUtils.setField(referenceDataService, "rdBaseUrl", "http://rd.location");
+        ReflectionTestUtils.setField(referenceDataService, "cacheTtlSeconds", 3600L);
+        ReflectionTestUtils.setField(referenceDataService, "negativeCacheTtlSeconds", 60L);
+        ReflectionTestUtils.setField(referenceDataService, "maxStaleSeconds", 3600L);
+        ReflectionTestUtils.setField(referenceDataService, "retryAfterSeconds", retryAfterSeconds);
+    }
+
+    private void expireCachedEntries() {
+        try {
+            Thread.sleep(1100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static OrganisationalServiceDto organisationalService() {
+        return OrganisationalServiceDto.orgServiceDtoWith()
+            .serviceCode("AA07")
+            .serviceDescription("DIVORCE")
+            .ccdCaseTypes(Collections.singletonList("DIVORCE"))
+            .build();
+    }
+
+    private static MultiValueMap<String, String> headers() {
+        MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
+        headers.put("Authorization", Collections.singletonList("Bearer 131313"));
+        headers.put("Content-Type", Collections.singletonList("application/json"));
+        return headers;
+    }
+
 }
@@ -0,0 +1,26 @@
+package uk.gov.hmcts.payment.api.util;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DateUtilTest {
+
+    @Test
+    public void testCeilToSecondKeepsWholeSeconds() {
+        assertEquals(new Date(1_600_000_000_000L), DateUtil.ceilToSecond(new Date(1_600_000_000_000L)));
+    }
+
+    @Test
+    public void testCeilToSecondRoundsFractionUp() {
+        assertEquals(new Date(1_600_000_001_000L), DateUtil.ceilToSecond(new Date(1_600_000_000_001L)));
+    }
+
+    @Test
+    public void testStartOfNextSecond() {
+        assertEquals(new Date(1_600_000_001_000L), DateUtil.startOfNextSecond(new Date(1_600_000_000_000L)));
+        assertEquals(new Date(1_600_000_001_000L), DateUtil.startOfNextSecond(new Date(1_600_000_000_999L)));
+    }
+}
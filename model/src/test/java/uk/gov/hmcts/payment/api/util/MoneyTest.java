@@ -0,0 +1,56 @@
+package uk.gov.hmcts.payment.api.util;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MoneyTest {
+
+    @Test
+    public void convertsToAndFromPenceExactly() {
+        Money money = Money.of(new BigDecimal("123.45"));
+
+        assertThat(money.getPence()).isEqualTo(12345L);
+        assertThat(money.toBigDecimal()).isEqualTo(new BigDecimal("123.45"));
+        assertThat(Money.ofPence(-5).toBigDecimal()).isEqualTo(new BigDecimal("-0.05"));
+    }
+
+    @Test
+    public void keepsTheScaleBigDecimalArithmeticWouldGive() {
+        Money sum = Money.of(new BigDecimal("10")).add(Money.of(new BigDecimal("2.5")));
+        Money difference = Money.of(new BigDecimal("10")).subtract(Money.of(new BigDecimal("10")));
+
+        assertThat(sum.toBigDecimal()).isEqualTo(new BigDecimal("10").add(new BigDecimal("2.5")));
+        assertThat(difference.toBigDecimal()).isEqualTo(new BigDecimal(0));
+        assertThat(Money.of(new BigDecimal("1.500")).toBigDecimal()).isEqualTo(new BigDecimal("1.500"));
+    }
+
+    @Test
+    public void comparesByValueOnly() {
+        assertThat(Money.of(new BigDecimal("5"))).isEqualTo(Money.of(new BigDecimal("5.00")));
+        assertThat(Money.of(new BigDecimal("5")).compareTo(Money.of(new BigDecimal("4.99")))).isPositive();
+        assertThat(Money.ZERO.signum()).isZero();
+        assertThat(Money.ofPence(1).isPositive()).isTrue();
+        assertThat(Money.ofPence(-1).isNegative()).isTrue();
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void rejectsFractionsOfAPenny() {
+        Money.of(new BigDecimal("0.005"));
+    }
+
+    @Test
+    public void roundsFractionsOfAPennyOnlyWhenAskedTo() {
+        assertThat(Money.of(new BigDecimal("10.005"), RoundingMode.HALF_UP).toBigDecimal()).isEqualTo(new BigDecimal("10.01"));
+        assertThat(Money.of(new BigDecimal("10.004"), RoundingMode.HALF_UP).toBigDecimal()).isEqualTo(new BigDecimal("10.00"));
+        assertThat(Money.of(new BigDecimal("1.500"), RoundingMode.HALF_UP).toBigDecimal()).isEqualTo(new BigDecimal("1.500"));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void rejectsOverflow() {
+        Money.ofPence(Long.MAX_VALUE).add(Money.ofPence(1));
+    }
+}
@@ -0,0 +1,191 @@
+package uk.gov.hmcts.payment.api.util;
+
+import org.apache.commons.validator.routines.checkdigit.CheckDigit;
+import org.apache.commons.validator.routines.checkdigit.LuhnCheckDigit;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReferenceGeneratorTest {
+
+    private static final String PAYMENT_REFERENCE_REGEX = "^RC(-\\d{4}){4}$";
+
+    private final ReferenceGenerator referenceGenerator = ReferenceGenerator.getInstance();
+
+    private final CheckDigit checkDigit = new LuhnCheckDigit();
+
+    @Test
+    public void paymentReferenceHasFourGroupsOfFourDigitsWithValidCheckDigit() {
+        for (int i = 0; i < 1000; i++) {
+            String reference = referenceGenerator.nextPaymentReference("RC");
+
+            assertTrue(reference, reference.matches(PAYMENT_REFERENCE_REGEX));
+            assertTrue(reference, checkDigit.isValid(reference.substring(3).replace("-", "")));
+        }
+    }
+
+    @Test
+    public void luhnCheckDigitMatchesCommonsValidator() throws Exception {
+        for (long value = 1; value < 100000; value += 7) {
+            char[] digits = Long.toString(value).toCharArray();
+
+            assertEquals(checkDigit.calculate(new String(digits)).charAt(0),
+                ReferenceGenerator.luhnCheckDigit(digits, digits.length));
+        }
+    }
+
+    @Test
+    public void groupReferenceStartsWithCurrentYear() {
+        String reference = referenceGenerator.nextGroupReference();
+
+        assertTrue(reference, reference.matches("^\\d{4}-\\d{12,}$"));
+        assertTrue(reference, reference.startsWith(LocalDate.now().getYear() + "-"));
+        assertEquals(Character.forDigit(referenceGenerator.getNodeId(), 10), reference.charAt(reference.length() - 2));
+    }
+
+    @Test
+    public void generatorIsSafeToShareBetweenThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                tasks.add(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        String reference = referenceGenerator.nextPaymentReference("RM");
+                        if (!checkDigit.isValid(reference.substring(3).replace("-", ""))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                });
+            }
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void millionsOfReferencesFromConcurrentNodesAreUnique() throws Exception {
+        int nodes = 4;
+        int threadsPerNode = 2;
+        int paymentReferencesPerThread = 250_000;
+        int groupReferencesPerThread = 25_000;
+
+        List<ReferenceGenerator> generators = new ArrayList<>();
+        for (int node = 0; node < nodes; node++) {
+            /* no look-ahead limit, so the test is bound by the generators rather than the wall clock */
+            ReferenceGenerator generator = new ReferenceGenerator(System::currentTimeMillis, Long.MAX_VALUE);
+            generator.assignNode(node, Long.MAX_VALUE);
+            generators.add(generator);
+        }
+
+        long[] paymentReferences = generateConcurrently(generators, threadsPerNode, paymentReferencesPerThread,
+            generator -> digitsOf(generator.nextPaymentReference("RC").substring(3)));
+        long[] groupReferences = generateConcurrently(generators, threadsPerNode, groupReferencesPerThread,
+            generator -> digitsOf(generator.nextGroupReference().substring(5)));
+
+        assertEquals(nodes * threadsPerNode * paymentReferencesPerThread, paymentReferences.length);
+        assertNoDuplicates(paymentReferences);
+        assertNoDuplicates(groupReferences);
+    }
+
+    @Test
+    public void generatorWaitsForClockOnceMaxLookAheadIsUsedUp() throws Exception {
+        AtomicLong clock = new AtomicLong(1_600_000_000_000L);
+        ReferenceGenerator generator = new ReferenceGenerator(clock::get, 100);
+
+        /* the current tick and one tick ahead */
+        for (int i = 0; i < 2000; i++) {
+            generator.nextPaymentReference("RC");
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> blocked = executor.submit(() -> generator.nextPaymentReference("RC"));
+            try {
+                blocked.get(100, TimeUnit.MILLISECONDS);
+                fail("Reference generated more than the maximum look-ahead in front of the clock");
+            } catch (TimeoutException expected) {
+                clock.addAndGet(100);
+            }
+
+            String reference = blocked.get(5, TimeUnit.SECONDS);
+            assertTrue(reference, reference.replace("-", "").startsWith("RC" + (clock.get() / 100 + 1)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void generatorRefusesToIssueReferencesAfterNodeLeaseExpires() {
+        AtomicLong clock = new AtomicLong(1_600_000_000_000L);
+        ReferenceGenerator generator = new ReferenceGenerator(clock::get, 100);
+        generator.assignNode(3, clock.get() - 1);
+
+        generator.nextPaymentReference("RC");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nodeIdMustBeASingleDigit() {
+        new ReferenceGenerator(System::currentTimeMillis, 100).assignNode(ReferenceGenerator.MAX_NODE_ID + 1, Long.MAX_VALUE);
+    }
+
+    private static long[] generateConcurrently(List<ReferenceGenerator> generators, int threadsPerGenerator, int perThread,
+                                               Function<ReferenceGenerator, Long> next) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(generators.size() * threadsPerGenerator);
+        try {
+            List<Callable<long[]>> tasks = new ArrayList<>();
+            for (ReferenceGenerator generator : generators) {
+                for (int t = 0; t < threadsPerGenerator; t++) {
+                    tasks.add(() -> {
+                        long[] references = new long[perThread];
+                        for (int i = 0; i < perThread; i++) {
+                            references[i] = next.apply(generator);
+                        }
+                        return references;
+                    });
+                }
+            }
+
+            long[] all = new long[tasks.size() * perThread];
+            int offset = 0;
+            for (Future<long[]> result : executor.invokeAll(tasks)) {
+                System.arraycopy(result.get(), 0, all, offset, perThread);
+                offset += perThread;
+            }
+            return all;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long digitsOf(String reference) {
+        return Long.parseLong(reference.replace("-", ""));
+    }
+
+    private static void assertNoDuplicates(long[] references) {
+        Arrays.sort(references);
+        for (int i = 1; i < references.length; i++) {
+            assertNotEquals("Duplicate reference", references[i - 1], references[i]);
+        }
+    }
+}
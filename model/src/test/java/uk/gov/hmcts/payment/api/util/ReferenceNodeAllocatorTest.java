@@ -0,0 +1,94 @@
+package uk.gov.hmcts.payment.api.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.hmcts.payment.api.model.ReferenceNode;
+import uk.gov.hmcts.payment.api.model.ReferenceNodeRepository;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReferenceNodeAllocatorTest {
+
+    @Mock
+    private ReferenceNodeRepository referenceNodeRepository;
+
+    private ReferenceGenerator referenceGenerator;
+
+    private ReferenceNodeAllocator allocator;
+
+    @Before
+    public void setUp() {
+        referenceGenerator = new ReferenceGenerator(System::currentTimeMillis, ReferenceGenerator.DEFAULT_MAX_AHEAD_MILLIS);
+        allocator = new ReferenceNodeAllocator(referenceNodeRepository, referenceGenerator);
+    }
+
+    @Test
+    public void keepsTryingToLeaseANodeWhenNoneIsFreeAtStartUp() {
+        when(referenceNodeRepository.acquire(anyString(), any(), any())).thenReturn(0, 1);
+        when(referenceNodeRepository.findByOwner(anyString())).thenReturn(Optional.of(node(3)));
+
+        allocator.acquire();
+
+        assertFalse(allocator.hasLease());
+        assertNoReferenceCanBeGenerated();
+
+        allocator.renew();
+
+        assertTrue(allocator.hasLease());
+        assertEquals(Integer.valueOf(3), allocator.getNodeId());
+        String reference = referenceGenerator.nextGroupReference();
+        assertEquals('3', reference.charAt(reference.length() - 2));
+    }
+
+    @Test
+    public void keepsTryingToLeaseANodeAfterLosingItsLease() {
+        when(referenceNodeRepository.acquire(anyString(), any(), any()))
+            .thenReturn(1)
+            .thenThrow(new IllegalStateException("database unavailable"))
+            .thenReturn(1);
+        when(referenceNodeRepository.findByOwner(anyString())).thenReturn(Optional.of(node(2)), Optional.of(node(5)));
+        when(referenceNodeRepository.renew(anyInt(), anyString(), any())).thenReturn(0);
+
+        allocator.acquire();
+        assertEquals(Integer.valueOf(2), allocator.getNodeId());
+
+        /* the lease was taken over and a new one cannot be had yet */
+        allocator.renew();
+
+        assertFalse(allocator.hasLease());
+        assertNull(allocator.getNodeId());
+        assertNoReferenceCanBeGenerated();
+
+        allocator.renew();
+
+        assertTrue(allocator.hasLease());
+        assertEquals(Integer.valueOf(5), allocator.getNodeId());
+    }
+
+    private void assertNoReferenceCanBeGenerated() {
+        try {
+            referenceGenerator.nextPaymentReference("RC");
+            fail("a reference was generated without a leased node id");
+        } catch (IllegalStateException expected) {
+            // no lease, no reference
+        }
+    }
+
+    private static ReferenceNode node(int nodeId) {
+        return ReferenceNode.referenceNodeWith().nodeId(nodeId).build();
+    }
+}